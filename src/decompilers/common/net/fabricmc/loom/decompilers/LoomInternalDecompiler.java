@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 // This is an internal interface to loom, DO NOT USE this in your own plugins.
 public interface LoomInternalDecompiler {
@@ -51,6 +52,24 @@ public interface LoomInternalDecompiler {
 		Map<String, String> options();
 
 		byte[] unpackZip(Path zip, String path) throws IOException;
+
+		// May be null, when present each decompiled class is passed to it instead of being written to the sources and line map destinations.
+		ClassConsumer classConsumer();
+
+		// May be null, when present only these classes of the compiled jar are decompiled and the others are read as libraries.
+		Set<String> classes();
+
+		// May be null, when present each class to decompile is passed through it as it is read from the compiled jar.
+		ClassTransformer classTransformer();
+	}
+
+	interface ClassTransformer {
+		byte[] transform(String className, byte[] bytes) throws IOException;
+	}
+
+	interface ClassConsumer {
+		// lineMapping contains pairs of original and decompiled line numbers, and may be null.
+		void accept(String className, String sources, int[] lineMapping) throws IOException;
 	}
 
 	interface Logger {
@@ -58,7 +58,7 @@ public final class FabricFernFlowerDecompiler implements LoomInternalDecompiler
 
 		options.putAll(context.options());
 
-		IResultSaver saver = new ThreadSafeResultSaver(sourcesDestination::toFile, linemapDestination::toFile);
+		IResultSaver saver = new ThreadSafeResultSaver(sourcesDestination::toFile, linemapDestination::toFile, context.classConsumer());
 		Fernflower ff = new Fernflower((externalPath, internalPath) -> FabricFernFlowerDecompiler.this.getBytecode(externalPath, internalPath, context), saver, options, new FernflowerLogger(context.logger()));
 
 		for (Path library : context.libraries()) {
@@ -79,8 +79,17 @@ public final class FabricFernFlowerDecompiler implements LoomInternalDecompiler
 
 		if (internalPath == null) {
 			return InterpreterUtil.getBytes(file);
-		} else {
-			return context.unpackZip(file.toPath(), internalPath);
 		}
+
+		final byte[] bytes = context.unpackZip(file.toPath(), internalPath);
+		final ClassTransformer transformer = context.classTransformer();
+		// Only the classes of the compiled jar are transformed, not those of the libraries
+		final boolean compiledClass = internalPath.endsWith(".class") && file.toPath().toAbsolutePath().equals(context.compiledJar().toAbsolutePath());
+
+		if (transformer != null && compiledClass) {
+			return transformer.transform(internalPath.substring(0, internalPath.length() - ".class".length()), bytes);
+		}
+
+		return bytes;
 	}
 }
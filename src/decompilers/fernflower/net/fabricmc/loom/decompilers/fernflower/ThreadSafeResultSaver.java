@@ -29,6 +29,7 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -46,6 +47,7 @@ import org.jetbrains.java.decompiler.main.DecompilerContext;
 import org.jetbrains.java.decompiler.main.extern.IResultSaver;
 
 import net.fabricmc.fernflower.api.IFabricResultSaver;
+import net.fabricmc.loom.decompilers.LoomInternalDecompiler;
 
 /**
  * Created by covers1624 on 18/02/19.
@@ -53,18 +55,31 @@ import net.fabricmc.fernflower.api.IFabricResultSaver;
 public class ThreadSafeResultSaver implements IResultSaver, IFabricResultSaver {
 	private final Supplier<File> output;
 	private final Supplier<File> lineMapFile;
+	// When present the classes are only passed to the consumer, which is responsible for writing them
+	private final LoomInternalDecompiler.ClassConsumer classConsumer;
 
 	public Map<String, ZipOutputStream> outputStreams = new HashMap<>();
 	public Map<String, ExecutorService> saveExecutors = new HashMap<>();
 	public PrintWriter lineMapWriter;
+	// The first class that could not be passed on to the consumer, later failures are added as suppressed exceptions
+	private RuntimeException classConsumerFailure;
 
 	public ThreadSafeResultSaver(Supplier<File> output, Supplier<File> lineMapFile) {
+		this(output, lineMapFile, null);
+	}
+
+	public ThreadSafeResultSaver(Supplier<File> output, Supplier<File> lineMapFile, LoomInternalDecompiler.ClassConsumer classConsumer) {
 		this.output = output;
 		this.lineMapFile = lineMapFile;
+		this.classConsumer = classConsumer;
 	}
 
 	@Override
 	public void createArchive(String path, String archiveName, Manifest manifest) {
+		if (classConsumer != null) {
+			return;
+		}
+
 		String key = path + "/" + archiveName;
 		File file = output.get();
 
@@ -93,6 +108,22 @@ public class ThreadSafeResultSaver implements IResultSaver, IFabricResultSaver {
 
 	@Override
 	public void saveClassEntry(String path, String archiveName, String qualifiedName, String entryName, String content, int[] mapping) {
+		if (classConsumer != null) {
+			if (content == null) {
+				return;
+			}
+
+			// Called on the decompiler thread, so the consumer runs in parallel with the other classes
+			try {
+				classConsumer.accept(qualifiedName, content, mapping);
+			} catch (IOException | RuntimeException e) {
+				DecompilerContext.getLogger().writeMessage("Cannot pass on entry " + entryName, e);
+				recordClassConsumerFailure(entryName, e);
+			}
+
+			return;
+		}
+
 		String key = path + "/" + archiveName;
 		ExecutorService executor = saveExecutors.get(key);
 		executor.submit(() -> {
@@ -127,6 +158,17 @@ public class ThreadSafeResultSaver implements IResultSaver, IFabricResultSaver {
 
 	@Override
 	public void closeArchive(String path, String archiveName) {
+		if (classConsumer != null) {
+			// Fail once every class has been decompiled, rather than leaving the consumer without some of the classes
+			synchronized (this) {
+				if (classConsumerFailure != null) {
+					throw classConsumerFailure;
+				}
+			}
+
+			return;
+		}
+
 		String key = path + "/" + archiveName;
 		ExecutorService executor = saveExecutors.get(key);
 		Future<?> closeFuture = executor.submit(() -> {
@@ -155,6 +197,16 @@ public class ThreadSafeResultSaver implements IResultSaver, IFabricResultSaver {
 		}
 	}
 
+	private synchronized void recordClassConsumerFailure(String entryName, Exception e) {
+		RuntimeException failure = e instanceof IOException ioException ? new UncheckedIOException("Cannot pass on entry " + entryName, ioException) : new RuntimeException("Cannot pass on entry " + entryName, e);
+
+		if (classConsumerFailure == null) {
+			classConsumerFailure = failure;
+		} else {
+			classConsumerFailure.addSuppressed(failure);
+		}
+	}
+
 	@Override
 	public void saveFolder(String path) {
 	}
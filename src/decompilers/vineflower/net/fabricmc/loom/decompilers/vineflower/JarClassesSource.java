@@ -0,0 +1,143 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.vineflower;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.java.decompiler.main.extern.IContextSource;
+import org.jetbrains.java.decompiler.main.extern.IResultSaver;
+
+import net.fabricmc.loom.decompilers.LoomInternalDecompiler;
+
+/**
+ * A read-only view over some of the classes of a jar, each class is read from the jar when the decompiler needs it.
+ * This allows a jar to be decompiled in part, with its other classes as libraries, without splitting it.
+ * The classes may also be transformed as they are read, without writing a transformed copy of the jar.
+ */
+public final class JarClassesSource implements IContextSource {
+	private static final String CLASS_SUFFIX = ".class";
+
+	private final ZipFile zipFile;
+	private final String name;
+	private final Predicate<String> filter;
+	private final LoomInternalDecompiler.ClassTransformer transformer;
+
+	/**
+	 * @param filter Tests the internal name of a class, returning true when it is part of this view
+	 * @param transformer May be null, when present each class is passed through it as it is read
+	 */
+	public JarClassesSource(ZipFile zipFile, String name, Predicate<String> filter, LoomInternalDecompiler.ClassTransformer transformer) {
+		this.zipFile = zipFile;
+		this.name = name;
+		this.filter = filter;
+		this.transformer = transformer;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Entries getEntries() {
+		final List<Entry> classes = new ArrayList<>();
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+		while (entries.hasMoreElements()) {
+			final String className = getClassName(entries.nextElement().getName());
+
+			if (className != null && filter.test(className)) {
+				classes.add(Entry.atBase(className));
+			}
+		}
+
+		return new Entries(classes, List.of(), List.of());
+	}
+
+	@Override
+	public InputStream getInputStream(String resource) throws IOException {
+		final String className = getClassName(resource);
+
+		if (className == null || !filter.test(className)) {
+			return null;
+		}
+
+		final ZipEntry entry = zipFile.getEntry(resource);
+
+		if (entry == null) {
+			return null;
+		}
+
+		if (transformer == null) {
+			return zipFile.getInputStream(entry);
+		}
+
+		try (InputStream is = zipFile.getInputStream(entry)) {
+			return new ByteArrayInputStream(transformer.transform(className, is.readAllBytes()));
+		}
+	}
+
+	@Override
+	public IOutputSink createOutputSink(IResultSaver saver) {
+		return new IOutputSink() {
+			@Override
+			public void begin() {
+				saver.createArchive("", name, null);
+			}
+
+			@Override
+			public void acceptClass(String qualifiedName, String fileName, String content, int[] mapping) {
+				saver.saveClassEntry("", name, qualifiedName, fileName, content, mapping);
+			}
+
+			@Override
+			public void acceptDirectory(String directory) {
+				saver.saveDirEntry("", name, directory);
+			}
+
+			@Override
+			public void acceptOther(String path) {
+				// Only classes are part of the view
+			}
+
+			@Override
+			public void close() {
+				saver.closeArchive("", name);
+			}
+		};
+	}
+
+	private static String getClassName(String entryName) {
+		return entryName.endsWith(CLASS_SUFFIX) ? entryName.substring(0, entryName.length() - CLASS_SUFFIX.length()) : null;
+	}
+}
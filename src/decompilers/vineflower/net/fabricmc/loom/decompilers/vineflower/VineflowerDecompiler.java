@@ -24,9 +24,13 @@
 
 package net.fabricmc.loom.decompilers.vineflower;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
 
 import org.jetbrains.java.decompiler.main.Fernflower;
 import org.jetbrains.java.decompiler.main.extern.IFernflowerPreferences;
@@ -55,15 +59,39 @@ public final class VineflowerDecompiler implements LoomInternalDecompiler {
 
 		options.putAll(context.options());
 
-		IResultSaver saver = new ThreadSafeResultSaver(sourcesDestination::toFile, linemapDestination::toFile);
+		IResultSaver saver = new ThreadSafeResultSaver(sourcesDestination::toFile, linemapDestination::toFile, context.classConsumer());
 		Fernflower ff = new Fernflower(saver, options, new VineflowerLogger(context.logger()));
 
 		for (Path library : context.libraries()) {
 			ff.addLibrary(library.toFile());
 		}
 
-		ff.addSource(context.compiledJar().toFile());
+		final Set<String> classes = context.classes();
+		final ClassTransformer transformer = context.classTransformer();
 
+		if (classes == null && transformer == null) {
+			ff.addSource(context.compiledJar().toFile());
+			decompile(ff);
+			return;
+		}
+
+		// The compiled jar is read through views, only the given classes are decompiled and transformed as they are read.
+		// The other classes of the same jar are read as libraries.
+		try (ZipFile compiledJar = new ZipFile(context.compiledJar().toFile())) {
+			final String name = context.compiledJar().getFileName().toString();
+
+			if (classes != null) {
+				ff.addLibrary(new JarClassesSource(compiledJar, name, className -> !classes.contains(className), null));
+			}
+
+			ff.addSource(new JarClassesSource(compiledJar, name, className -> classes == null || classes.contains(className), transformer));
+			decompile(ff);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read " + context.compiledJar(), e);
+		}
+	}
+
+	private static void decompile(Fernflower ff) {
 		try {
 			ff.decompileContext();
 		} finally {
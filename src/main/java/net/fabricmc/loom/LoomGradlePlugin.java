@@ -51,6 +51,8 @@ import net.fabricmc.loom.task.LoomTasks;
 import net.fabricmc.loom.task.RemapTaskConfiguration;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.LibraryLocationLogger;
+import net.fabricmc.loom.util.gradle.JarFileSystemPoolBuildService;
+import net.fabricmc.loom.util.gradle.SharedExecutorsBuildService;
 
 public class LoomGradlePlugin implements BootstrappedPlugin {
 	public static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
@@ -95,6 +97,8 @@ public class LoomGradlePlugin implements BootstrappedPlugin {
 		}
 
 		LibraryLocationLogger.logLibraryVersions();
+		SharedExecutorsBuildService.register(project);
+		JarFileSystemPoolBuildService.register(project);
 
 		// Apply default plugins
 		project.apply(ImmutableMap.of("plugin", "java-library"));
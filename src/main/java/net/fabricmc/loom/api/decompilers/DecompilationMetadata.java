@@ -27,8 +27,33 @@ package net.fabricmc.loom.api.decompilers;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.util.IOStringConsumer;
 
-public record DecompilationMetadata(int numberOfThreads, Path javaDocs, Collection<Path> libraries, IOStringConsumer logger, Map<String, String> options) {
+/**
+ * @param classConsumer When present, each decompiled class must be passed to it as soon as it has been decompiled,
+ *                      instead of being written to the sources jar and the line map file.
+ *                      Loom only passes a consumer to the decompilers that are known to support it.
+ * @param classes When present, only these classes of the compiled jar must be decompiled. The other classes of the
+ *                compiled jar are read as libraries, so that the jar does not have to be split.
+ *                Contains the internal names of the classes, including the inner classes.
+ *                Loom only passes the classes to the decompilers that are known to support it.
+ * @param classTransformer When present, each class to decompile must be passed through it before being decompiled.
+ *                         Loom only passes a transformer to the decompilers that are known to support it.
+ */
+public record DecompilationMetadata(int numberOfThreads, Path javaDocs, Collection<Path> libraries, IOStringConsumer logger, Map<String, String> options, @Nullable DecompiledClassConsumer classConsumer, @Nullable Set<String> classes, @Nullable ClassTransformer classTransformer) {
+	public DecompilationMetadata(int numberOfThreads, Path javaDocs, Collection<Path> libraries, IOStringConsumer logger, Map<String, String> options) {
+		this(numberOfThreads, javaDocs, libraries, logger, options, null, null, null);
+	}
+
+	public DecompilationMetadata(int numberOfThreads, Path javaDocs, Collection<Path> libraries, IOStringConsumer logger, Map<String, String> options, @Nullable DecompiledClassConsumer classConsumer) {
+		this(numberOfThreads, javaDocs, libraries, logger, options, classConsumer, null, null);
+	}
+
+	public DecompilationMetadata(int numberOfThreads, Path javaDocs, Collection<Path> libraries, IOStringConsumer logger, Map<String, String> options, @Nullable DecompiledClassConsumer classConsumer, @Nullable Set<String> classes) {
+		this(numberOfThreads, javaDocs, libraries, logger, options, classConsumer, classes, null);
+	}
 }
@@ -26,23 +26,21 @@ package net.fabricmc.loom.build.nesting;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.google.common.base.Preconditions;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import org.gradle.api.UncheckedIOException;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import net.fabricmc.loom.LoomGradlePlugin;
 import net.fabricmc.loom.util.ModPlatform;
 import net.fabricmc.loom.util.Pair;
+import net.fabricmc.loom.util.ZipTransaction;
 import net.fabricmc.loom.util.ZipUtils;
 import net.fabricmc.loom.util.fmj.FabricModJsonFactory;
 
@@ -58,21 +56,19 @@ public class JarNester {
 		// Ensure deterministic ordering of entries in fabric.mod.json
 		Collection<File> sortedJars = jars.stream().sorted(Comparator.comparing(File::getName)).toList();
 
-		try {
-			ZipUtils.add(modJar.toPath(), sortedJars.stream().map(file -> {
-				try {
-					return new Pair<>("META-INF/jars/" + file.getName(), Files.readAllBytes(file.toPath()));
-				} catch (IOException e) {
-					throw new UncheckedIOException(e);
-				}
-			}).collect(Collectors.toList()));
+		// All changes are made in a single rewrite of the mod jar, the nested jars are streamed in from disk.
+		try (ZipTransaction transaction = ZipTransaction.open(modJar.toPath())) {
+			for (File file : sortedJars) {
+				transaction.add("META-INF/jars/" + file.getName(), file.toPath());
+			}
 
 			if (platform.isForgeLike()) {
-				handleForgeJarJar(jars, modJar, logger);
+				handleForgeJarJar(jars, modJar, transaction, logger);
+				transaction.commit();
 				return;
 			}
 
-			int count = ZipUtils.transformJson(JsonObject.class, modJar.toPath(), Stream.of(platform == ModPlatform.FABRIC ? new Pair<>("fabric.mod.json", json -> {
+			Pair<String, ZipUtils.UnsafeUnaryOperator<JsonObject>> transform = platform == ModPlatform.FABRIC ? new Pair<>("fabric.mod.json", json -> {
 				JsonArray nestedJars = json.getAsJsonArray("jars");
 
 				if (nestedJars == null || !json.has("jars")) {
@@ -136,11 +132,13 @@ public class JarNester {
 				loader.add("jars", nestedJars);
 
 				return json;
-			}) : null));
+			}) : null;
 
-			Preconditions.checkState(count > 0, "Failed to transform fabric.mod.json");
+			boolean transformed = transform != null && transaction.transformJson(JsonObject.class, transform.left(), transform.right());
+			Preconditions.checkState(transformed, "Failed to transform fabric.mod.json");
+			transaction.commit();
 		} catch (IOException e) {
-			throw new java.io.UncheckedIOException("Failed to nest jars into " + modJar.getName(), e);
+			throw new UncheckedIOException("Failed to nest jars into " + modJar.getName(), e);
 		}
 	}
 
@@ -153,7 +151,7 @@ public class JarNester {
 		}
 	}
 
-	private static void handleForgeJarJar(Collection<File> jars, File modJar, Logger logger) throws IOException {
+	private static void handleForgeJarJar(Collection<File> jars, File modJar, ZipTransaction transaction, Logger logger) {
 		JsonObject json = new JsonObject();
 		JsonArray nestedJars = new JsonArray();
 
@@ -192,6 +190,6 @@ public class JarNester {
 
 		json.add("jars", nestedJars);
 
-		ZipUtils.add(modJar.toPath(), "META-INF/jarjar/metadata.json", LoomGradlePlugin.GSON.toJson(json));
+		transaction.add("META-INF/jarjar/metadata.json", LoomGradlePlugin.GSON.toJson(json));
 	}
 }
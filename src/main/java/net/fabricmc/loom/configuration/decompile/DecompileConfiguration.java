@@ -24,8 +24,6 @@
 
 package net.fabricmc.loom.configuration.decompile;
 
-import java.io.File;
-
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ConfigurationContainer;
 
@@ -56,11 +54,10 @@ public abstract class DecompileConfiguration<T extends MappedMinecraftProvider>
 
 	public abstract void afterEvaluation();
 
-	protected final void configureUnpick(GenerateSourcesTask task, File unpickOutputJar) {
+	protected final void configureUnpick(GenerateSourcesTask task) {
 		final ConfigurationContainer configurations = task.getProject().getConfigurations();
 
 		task.getUnpickDefinitions().set(mappingConfiguration.getUnpickDefinitionsFile());
-		task.getUnpickOutputJar().set(unpickOutputJar);
 		task.getUnpickConstantJar().setFrom(configurations.getByName(Constants.Configurations.MAPPING_CONSTANTS));
 		task.getUnpickClasspath().setFrom(configurations.getByName(Constants.Configurations.MINECRAFT_COMPILE_LIBRARIES));
 		task.getUnpickClasspath().from(configurations.getByName(Constants.Configurations.MOD_COMPILE_CLASSPATH_MAPPED));
@@ -24,7 +24,6 @@
 
 package net.fabricmc.loom.configuration.decompile;
 
-import java.io.File;
 import java.util.List;
 
 import org.gradle.api.Project;
@@ -68,8 +67,7 @@ public class SingleJarDecompileConfiguration extends DecompileConfiguration<Mapp
 				task.setGroup(Constants.TaskGroup.FABRIC);
 
 				if (mappingConfiguration.hasUnpickDefinitions()) {
-					final File outputJar = new File(extension.getMappingConfiguration().mappingsWorkingDir().toFile(), "minecraft-unpicked.jar");
-					configureUnpick(task, outputJar);
+					configureUnpick(task);
 				}
 			});
 		});
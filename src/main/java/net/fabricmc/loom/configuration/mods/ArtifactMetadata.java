@@ -72,7 +72,7 @@ public record ArtifactMetadata(boolean isFabricMod, RemapRequirements remapRequi
 			remapRequirements = RemapRequirements.OPT_IN;
 		}
 
-		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(artifact.path())) {
+		try (FileSystemUtil.Delegate fs = FileSystemUtil.getReadOnlyJarFileSystem(artifact.path())) {
 			isFabricMod = FabricModJsonFactory.containsMod(fs, platform);
 			final Path manifestPath = fs.getPath(Constants.Manifest.PATH);
 
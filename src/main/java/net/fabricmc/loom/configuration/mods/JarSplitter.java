@@ -24,27 +24,32 @@
 
 package net.fabricmc.loom.configuration.mods;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
-import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 
 import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.util.Constants;
-import net.fabricmc.loom.util.FileSystemUtil;
+import net.fabricmc.loom.util.RawZipFile;
 
 public class JarSplitter {
 	private static final Attributes.Name MANIFEST_SPLIT_ENV_NAME = new Attributes.Name(Constants.Manifest.SPLIT_ENV);
@@ -58,141 +63,171 @@ public class JarSplitter {
 
 	@Nullable
 	public Target analyseTarget() {
-		try (FileSystemUtil.Delegate input = FileSystemUtil.getJarFileSystem(inputJar)) {
-			final Manifest manifest = input.fromInputStream(Manifest::new, Constants.Manifest.PATH);
+		try (RawZipFile zipFile = openInput()) {
+			final Analysis analysis = analyse(zipFile);
+			return analysis != null ? analysis.target() : null;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read jar", e);
+		}
+	}
 
-			if (!Boolean.parseBoolean(manifest.getMainAttributes().getValue(Constants.Manifest.SPLIT_ENV))) {
-				// Jar was not built with splitting enabled.
-				return null;
-			}
+	/**
+	 * Analyse the jar and split it when it contains both common and client entries, reading the jar only once.
+	 *
+	 * @return The target of the jar, the output jars are only written when this is {@link Target#SPLIT}
+	 */
+	@Nullable
+	public Target analyseAndSplit(Path commonOutputJar, Path clientOutputJar) throws IOException {
+		Files.deleteIfExists(commonOutputJar);
+		Files.deleteIfExists(clientOutputJar);
 
-			final HashSet<String> clientEntries = new HashSet<>(readClientEntries(manifest));
+		try (RawZipFile zipFile = openInput()) {
+			final Analysis analysis = analyse(zipFile);
 
-			if (clientEntries.isEmpty()) {
-				// No client entries.
-				return Target.COMMON_ONLY;
+			if (analysis == null) {
+				return null;
 			}
 
-			final List<String> entries = new LinkedList<>();
+			if (analysis.target() == Target.SPLIT) {
+				split(zipFile, analysis, commonOutputJar, clientOutputJar);
+			}
 
-			// Must collect all the input entries to see if this might be a client only jar.
-			try (Stream<Path> walk = Files.walk(input.get().getPath("/"))) {
-				final Iterator<Path> iterator = walk.iterator();
+			return analysis.target();
+		}
+	}
 
-				while (iterator.hasNext()) {
-					final Path entry = iterator.next();
+	public boolean split(Path commonOutputJar, Path clientOutputJar) throws IOException {
+		Files.deleteIfExists(commonOutputJar);
+		Files.deleteIfExists(clientOutputJar);
 
-					if (!Files.isRegularFile(entry)) {
-						continue;
-					}
+		try (RawZipFile zipFile = openInput()) {
+			final Analysis analysis = analyse(zipFile);
 
-					final Path relativePath = input.get().getPath("/").relativize(entry);
+			if (analysis == null) {
+				throw new UnsupportedOperationException("Cannot split jar that has not been built with a split env");
+			}
 
-					if (relativePath.startsWith("META-INF")) {
-						if (isSignatureData(relativePath)) {
-							// Ignore any signature data
-							continue;
-						}
+			if (analysis.clientEntries().isEmpty()) {
+				throw new IllegalStateException("Expected to split jar with no client entries");
+			}
 
-						if (relativePath.endsWith("MANIFEST.MF")) {
-							// Ignore the manifest
-							continue;
-						}
-					}
+			split(zipFile, analysis, commonOutputJar, clientOutputJar);
+		}
 
-					entries.add(relativePath.toString());
-				}
-			}
+		return true;
+	}
 
-			for (String entry : entries) {
-				if (!clientEntries.contains(entry)) {
-					// Found a common entry, we need to split,.
-					return Target.SPLIT;
-				}
-			}
+	private RawZipFile openInput() throws IOException {
+		final RawZipFile zipFile = RawZipFile.open(inputJar);
 
-			// All input entries are client only entries.
-			return Target.CLIENT_ONLY;
-		} catch (IOException e) {
-			throw new UncheckedIOException("Failed to read jar", e);
+		if (zipFile == null) {
+			throw new ZipException("Cannot split %s, split or encrypted jars are not supported".formatted(inputJar));
 		}
+
+		return zipFile;
 	}
 
-	public boolean split(Path commonOutputJar, Path clientOutputJar) throws IOException {
-		Files.deleteIfExists(commonOutputJar);
-		Files.deleteIfExists(clientOutputJar);
+	/**
+	 * @return The analysis of the jar, or null when the jar was not built with splitting enabled
+	 */
+	@Nullable
+	private Analysis analyse(RawZipFile zipFile) throws IOException {
+		final RawZipFile.Entry manifestEntry = zipFile.entries().stream()
+				.filter(entry -> entry.name().equals(Constants.Manifest.PATH))
+				.findFirst()
+				.orElseThrow(() -> new NoSuchFileException(Constants.Manifest.PATH));
+		final Manifest manifest = new Manifest(new ByteArrayInputStream(zipFile.readAllBytes(manifestEntry)));
+
+		if (!Boolean.parseBoolean(manifest.getMainAttributes().getValue(Constants.Manifest.SPLIT_ENV))) {
+			// Jar was not built with splitting enabled.
+			return null;
+		}
 
-		try (FileSystemUtil.Delegate input = FileSystemUtil.getJarFileSystem(inputJar)) {
-			final Manifest manifest = input.fromInputStream(Manifest::new, Constants.Manifest.PATH);
+		final Set<String> clientEntries = new HashSet<>(readClientEntries(manifest));
 
-			if (!Boolean.parseBoolean(manifest.getMainAttributes().getValue(Constants.Manifest.SPLIT_ENV))) {
-				throw new UnsupportedOperationException("Cannot split jar that has not been built with a split env");
-			}
+		if (clientEntries.isEmpty()) {
+			// No client entries.
+			return new Analysis(manifest, manifestEntry, clientEntries, Target.COMMON_ONLY);
+		}
 
-			final List<String> clientEntries = readClientEntries(manifest);
+		// Must check all the input entries to see if this might be a client only jar.
+		for (RawZipFile.Entry entry : zipFile.entries()) {
+			final String name = entry.name();
 
-			if (clientEntries.isEmpty()) {
-				throw new IllegalStateException("Expected to split jar with no client entries");
+			if (name.endsWith("/")) {
+				continue;
 			}
 
-			try (FileSystemUtil.Delegate commonOutput = FileSystemUtil.getJarFileSystem(commonOutputJar, true);
-					FileSystemUtil.Delegate clientOutput = FileSystemUtil.getJarFileSystem(clientOutputJar, true);
-					Stream<Path> walk = Files.walk(input.get().getPath("/"))) {
-				final Iterator<Path> iterator = walk.iterator();
-
-				while (iterator.hasNext()) {
-					final Path entry = iterator.next();
+			if (name.startsWith("META-INF/")) {
+				if (isSignatureData(name)) {
+					// Ignore any signature data
+					continue;
+				}
 
-					if (!Files.isRegularFile(entry)) {
-						continue;
-					}
+				if (name.endsWith("/MANIFEST.MF")) {
+					// Ignore the manifest
+					continue;
+				}
+			}
 
-					final Path relativePath = input.get().getPath("/").relativize(entry);
+			if (!clientEntries.contains(name)) {
+				// Found a common entry, we need to split.
+				return new Analysis(manifest, manifestEntry, clientEntries, Target.SPLIT);
+			}
+		}
 
-					if (relativePath.startsWith("META-INF")) {
-						if (isSignatureData(relativePath)) {
-							// Strip any signature data
-							continue;
-						}
-					}
+		// All input entries are client only entries.
+		return new Analysis(manifest, manifestEntry, clientEntries, Target.CLIENT_ONLY);
+	}
 
-					final String entryPath = relativePath.toString();
+	/**
+	 * Copy the entries into the two output jars, without inflating and deflating them again.
+	 */
+	private void split(RawZipFile zipFile, Analysis analysis, Path commonOutputJar, Path clientOutputJar) throws IOException {
+		final Manifest outManifest = createOutputManifest(analysis.manifest());
+		final int manifestTime = analysis.manifestEntry().dosTime();
 
-					if (entryPath.equals(Constants.Manifest.PATH)) {
-						continue;
-					}
+		try (SplitOutput commonOutput = new SplitOutput(commonOutputJar);
+				SplitOutput clientOutput = new SplitOutput(clientOutputJar)) {
+			// The manifest is written first, as expected by JarInputStream
+			commonOutput.write(Constants.Manifest.PATH, manifestTime, writeWithEnvironment(outManifest, "common"));
+			clientOutput.write(Constants.Manifest.PATH, manifestTime, writeWithEnvironment(outManifest, "client"));
 
-					final FileSystemUtil.Delegate target = clientEntries.contains(entryPath) ? clientOutput : commonOutput;
-					final Path outputEntry = target.getPath(entryPath);
-					final Path outputParent = outputEntry.getParent();
+			for (RawZipFile.Entry entry : zipFile.entries()) {
+				final String name = entry.name();
 
-					if (outputParent != null) {
-						Files.createDirectories(outputParent);
-					}
+				if (name.endsWith("/") || name.equals(Constants.Manifest.PATH)) {
+					continue;
+				}
 
-					Files.copy(entry, outputEntry, StandardCopyOption.COPY_ATTRIBUTES);
+				if (name.startsWith("META-INF/") && isSignatureData(name)) {
+					// Strip any signature data
+					continue;
 				}
 
-				/*
-				Write the manifest to both jars
-				- Remove signature data
-				- Remove split data as its already been split.
-				- Add env name.
-				 */
-				final Manifest outManifest = new Manifest(manifest);
-				final Attributes attributes = outManifest.getMainAttributes();
-				stripSignatureData(outManifest);
-
-				attributes.remove(Attributes.Name.SIGNATURE_VERSION);
-				Objects.requireNonNull(attributes.remove(MANIFEST_SPLIT_ENV_NAME));
-				Objects.requireNonNull(attributes.remove(MANIFEST_CLIENT_ENTRIES_NAME));
-
-				writeBytes(writeWithEnvironment(outManifest, "common"), commonOutput.getPath(Constants.Manifest.PATH));
-				writeBytes(writeWithEnvironment(outManifest, "client"), clientOutput.getPath(Constants.Manifest.PATH));
+				final SplitOutput target = analysis.clientEntries().contains(name) ? clientOutput : commonOutput;
+				target.copy(zipFile, entry);
 			}
+
+			commonOutput.finish();
+			clientOutput.finish();
 		}
+	}
 
-		return true;
+	/*
+	Create the manifest for both jars
+	- Remove signature data
+	- Remove split data as its already been split.
+	 */
+	private static Manifest createOutputManifest(Manifest manifest) {
+		final Manifest outManifest = new Manifest(manifest);
+		final Attributes attributes = outManifest.getMainAttributes();
+		stripSignatureData(outManifest);
+
+		attributes.remove(Attributes.Name.SIGNATURE_VERSION);
+		Objects.requireNonNull(attributes.remove(MANIFEST_SPLIT_ENV_NAME));
+		Objects.requireNonNull(attributes.remove(MANIFEST_CLIENT_ENTRIES_NAME));
+		return outManifest;
 	}
 
 	private byte[] writeWithEnvironment(Manifest in, String value) throws IOException {
@@ -216,8 +251,8 @@ public class JarSplitter {
 		return Arrays.stream(clientEntriesValue.split(";")).toList();
 	}
 
-	private boolean isSignatureData(Path path) {
-		final String fileName = path.getFileName().toString();
+	private boolean isSignatureData(String name) {
+		final String fileName = name.substring(name.lastIndexOf('/') + 1);
 		return fileName.endsWith(".SF")
 				|| fileName.endsWith(".DSA")
 				|| fileName.endsWith(".RSA")
@@ -242,14 +277,48 @@ public class JarSplitter {
 		}
 	}
 
-	private static void writeBytes(byte[] bytes, Path path) throws IOException {
-		final Path parent = path.getParent();
+	private record Analysis(Manifest manifest, RawZipFile.Entry manifestEntry, Set<String> clientEntries, Target target) {
+	}
+
+	/**
+	 * An output jar, including the directory entries for the files copied into it.
+	 */
+	private static final class SplitOutput implements Closeable {
+		private final RawZipFile.Writer writer;
+		private final Set<String> directories = new HashSet<>();
+
+		SplitOutput(Path jar) throws IOException {
+			this.writer = new RawZipFile.Writer(FileChannel.open(jar, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+		}
+
+		void write(String name, int dosTime, byte[] data) throws IOException {
+			writeParentDirectories(name, dosTime);
+			writer.write(name, ZipEntry.DEFLATED, dosTime, data);
+		}
+
+		void copy(RawZipFile zipFile, RawZipFile.Entry entry) throws IOException {
+			writeParentDirectories(entry.name(), entry.dosTime());
+			writer.copy(zipFile, entry, entry.dosTime(), zipFile.readLocalExtra(entry), entry.extra());
+		}
+
+		private void writeParentDirectories(String name, int dosTime) throws IOException {
+			for (int i = name.indexOf('/'); i != -1; i = name.indexOf('/', i + 1)) {
+				final String directory = name.substring(0, i + 1);
+
+				if (directories.add(directory)) {
+					writer.write(directory, ZipEntry.DEFLATED, dosTime, new byte[0]);
+				}
+			}
+		}
 
-		if (parent != null) {
-			Files.createDirectories(parent);
+		void finish() throws IOException {
+			writer.finish();
 		}
 
-		Files.write(path, bytes);
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
 	}
 
 	public enum Target {
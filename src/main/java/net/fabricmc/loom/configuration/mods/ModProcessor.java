@@ -28,7 +28,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -61,7 +60,7 @@ import net.fabricmc.loom.util.LoggerFilter;
 import net.fabricmc.loom.util.ModPlatform;
 import net.fabricmc.loom.util.Pair;
 import net.fabricmc.loom.util.TinyRemapperHelper;
-import net.fabricmc.loom.util.ZipUtils;
+import net.fabricmc.loom.util.ZipTransaction;
 import net.fabricmc.loom.util.kotlin.KotlinClasspathService;
 import net.fabricmc.loom.util.kotlin.KotlinRemapperClassloader;
 import net.fabricmc.loom.util.service.ServiceFactory;
@@ -125,41 +124,27 @@ public class ModProcessor {
 		return description;
 	}
 
-	private void stripNestedJars(Path path) {
-		try {
-			ZipUtils.deleteIfExists(path, "META-INF/jarjar/metadata.json");
-		} catch (IOException e) {
-			throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(path), e);
-		}
+	private void stripNestedJars(ZipTransaction zip) {
+		zip.deleteIfExists("META-INF/jarjar/metadata.json");
 
-		if (!ZipUtils.contains(path, "fabric.mod.json")) {
-			if (ZipUtils.contains(path, "quilt.mod.json")) {
-				// Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
-				try {
-					ZipUtils.transformJson(JsonObject.class, path, Map.of("quilt.mod.json", json -> {
-						if (json.has("quilt_loader")) {
-							json.getAsJsonObject("quilt_loader").remove("jars");
-						}
-
-						return json;
-					}));
-				} catch (IOException e) {
-					throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(path), e);
+		if (!zip.contains("fabric.mod.json")) {
+			// Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
+			zip.transformJson(JsonObject.class, "quilt.mod.json", json -> {
+				if (json.has("quilt_loader")) {
+					json.getAsJsonObject("quilt_loader").remove("jars");
 				}
-			}
+
+				return json;
+			});
 
 			return;
 		}
 
 		// Strip out all contained jar info as we dont want loader to try and load the jars contained in dev.
-		try {
-			ZipUtils.transformJson(JsonObject.class, path, Map.of("fabric.mod.json", json -> {
-				json.remove("jars");
-				return json;
-			}));
-		} catch (IOException e) {
-			throw new UncheckedIOException("Failed to strip nested jars from %s".formatted(path), e);
-		}
+		zip.transformJson(JsonObject.class, "fabric.mod.json", json -> {
+			json.remove("jars");
+			return json;
+		});
 	}
 
 	private void remapJars(List<ModDependency> remapList) throws IOException {
@@ -283,12 +268,15 @@ public class ModProcessor {
 			final Path output = getRemappedOutput(dependency);
 			final Pair<byte[], String> accessWidener = accessWidenerMap.get(dependency);
 
-			if (accessWidener != null) {
-				ZipUtils.replace(output, accessWidener.right(), accessWidener.left());
-			}
+			try (ZipTransaction zip = ZipTransaction.open(output)) {
+				if (accessWidener != null) {
+					zip.replace(accessWidener.right(), accessWidener.left());
+				}
 
-			stripNestedJars(output);
-			remapJarManifestEntries(output);
+				stripNestedJars(zip);
+				remapJarManifestEntries(zip);
+				zip.commit();
+			}
 
 			if (extension.isForgeLike()) {
 				if (extension.isNeoForge()) {
@@ -310,8 +298,8 @@ public class ModProcessor {
 		return dependency.getWorkingFile(null);
 	}
 
-	private void remapJarManifestEntries(Path jar) throws IOException {
-		ZipUtils.transform(jar, Map.of(Constants.Manifest.PATH, bytes -> {
+	private void remapJarManifestEntries(ZipTransaction zip) {
+		zip.transform(Constants.Manifest.PATH, bytes -> {
 			var manifest = new Manifest(new ByteArrayInputStream(bytes));
 
 			manifest.getMainAttributes().putValue(Constants.Manifest.MAPPING_NAMESPACE, toM);
@@ -319,6 +307,6 @@ public class ModProcessor {
 			ByteArrayOutputStream out = new ByteArrayOutputStream();
 			manifest.write(out);
 			return out.toByteArray();
-		}));
+		});
 	}
 }
@@ -70,18 +70,6 @@ public final class SplitModDependency extends ModDependency {
 
 	@Override
 	public void copyToCache(Project project, Path path, @Nullable String variant) throws IOException {
-		// Split dependencies build with loom 0.12 do not contain the required data to split the sources
-		if (target == JarSplitter.Target.SPLIT && variant != null) {
-			final JarSplitter.Target artifactTarget = new JarSplitter(path).analyseTarget();
-
-			if (artifactTarget != target) {
-				// Found a broken artifact, copy it to both locations without splitting.
-				getCommonMaven().copyToMaven(path, variant);
-				getClientMaven().copyToMaven(path, variant);
-				return;
-			}
-		}
-
 		switch (target) {
 		// Split the jar into 2
 		case SPLIT -> {
@@ -90,7 +78,16 @@ public final class SplitModDependency extends ModDependency {
 			final Path clientTempJar = getWorkingFile("client" + suffix);
 
 			final JarSplitter splitter = new JarSplitter(path);
-			splitter.split(commonTempJar, clientTempJar);
+
+			if (variant == null) {
+				splitter.split(commonTempJar, clientTempJar);
+			} else if (splitter.analyseAndSplit(commonTempJar, clientTempJar) != JarSplitter.Target.SPLIT) {
+				// Split dependencies build with loom 0.12 do not contain the required data to split the sources
+				// Found a broken artifact, copy it to both locations without splitting.
+				getCommonMaven().copyToMaven(path, variant);
+				getClientMaven().copyToMaven(path, variant);
+				return;
+			}
 
 			getCommonMaven().copyToMaven(commonTempJar, variant);
 			getClientMaven().copyToMaven(clientTempJar, variant);
@@ -0,0 +1,198 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.configuration.providers.minecraft.assets;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the asset objects that have been downloaded and verified, so that a later build can check them with a single
+ * stat call instead of reading a hash attribute from each file or hashing it again.
+ *
+ * <p>There is one manifest per asset index for the shared object store, keyed by the hash of each object, and one
+ * for each resources directory that objects are copied into, keyed by the path of each asset. Each manifest is stored
+ * as a small binary file that is replaced atomically. An object is considered intact while its file has the same size
+ * and last modified time as when it was verified.
+ *
+ * <p>Entries that are not looked up before the manifest is written are dropped, so that it only ever contains the
+ * assets of its index.
+ */
+public final class AssetVerificationManifest {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AssetVerificationManifest.class);
+
+	private static final int MAGIC = 0x4C41_564D; // LAVM
+	private static final int VERSION = 2;
+
+	private final Path manifestFile;
+	// Object hash or asset path -> the state of the file when it was verified
+	private final Map<String, Entry> entries;
+	// The keys that have been looked up, all other entries are dropped on write
+	private final Set<String> used = new HashSet<>();
+	private boolean changed = false;
+
+	private AssetVerificationManifest(Path manifestFile, Map<String, Entry> entries) {
+		this.manifestFile = manifestFile;
+		this.entries = entries;
+	}
+
+	/**
+	 * Read the manifest, an empty manifest is returned if it does not exist or cannot be read.
+	 */
+	public static AssetVerificationManifest read(Path manifestFile) throws IOException {
+		if (Files.notExists(manifestFile)) {
+			return new AssetVerificationManifest(manifestFile, new HashMap<>());
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOGGER.info("Ignoring asset verification manifest with unknown format: {}", manifestFile);
+				return new AssetVerificationManifest(manifestFile, new HashMap<>());
+			}
+
+			final int count = in.readInt();
+			final Map<String, Entry> entries = new HashMap<>(count);
+
+			for (int i = 0; i < count; i++) {
+				entries.put(in.readUTF(), new Entry(in.readUTF(), in.readLong(), in.readLong()));
+			}
+
+			return new AssetVerificationManifest(manifestFile, entries);
+		} catch (NoSuchFileException e) {
+			return new AssetVerificationManifest(manifestFile, new HashMap<>());
+		} catch (EOFException e) {
+			LOGGER.info("Ignoring truncated asset verification manifest: {}", manifestFile);
+			return new AssetVerificationManifest(manifestFile, new HashMap<>());
+		}
+	}
+
+	/**
+	 * @param key The object's hash for a file in the object store, or its path for a file in a resources directory
+	 * @return true when the file has not changed since it was verified to contain the object
+	 */
+	public boolean isVerified(String key, Path path, AssetIndex.Object object) throws IOException {
+		used.add(key);
+		final Entry entry = entries.get(key);
+
+		if (entry == null || !entry.hash().equals(object.hash()) || entry.size() != object.size()) {
+			return false;
+		}
+
+		return entry.equals(stat(path, object.hash()));
+	}
+
+	/**
+	 * Record that the file has been verified to contain the object.
+	 *
+	 * @param key The object's hash for a file in the object store, or its path for a file in a resources directory
+	 */
+	public void markVerified(String key, Path path, AssetIndex.Object object) throws IOException {
+		used.add(key);
+		final Entry entry = stat(path, object.hash());
+
+		if (entry == null) {
+			changed |= entries.remove(key) != null;
+			return;
+		}
+
+		changed |= !entry.equals(entries.put(key, entry));
+	}
+
+	/**
+	 * Write the manifest, if it has changed since it was read. Entries that have not been looked up are dropped.
+	 */
+	public void write() throws IOException {
+		changed |= entries.keySet().retainAll(used);
+
+		if (!changed) {
+			return;
+		}
+
+		final Path tempFile = manifestFile.resolveSibling(manifestFile.getFileName() + "-" + UUID.randomUUID());
+
+		try {
+			Files.createDirectories(manifestFile.getParent());
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(entries.size());
+
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeUTF(entry.getValue().hash());
+					out.writeLong(entry.getValue().size());
+					out.writeLong(entry.getValue().modified());
+				}
+			}
+
+			try {
+				Files.move(tempFile, manifestFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			changed = false;
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	@Nullable
+	private static Entry stat(Path path, String hash) throws IOException {
+		try {
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return new Entry(hash, attributes.size(), attributes.lastModifiedTime().toMillis());
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param hash The sha1 hash of the object
+	 * @param size The size of the file in bytes
+	 * @param modified The last modified time of the file when it was verified, in epoch millis
+	 */
+	private record Entry(String hash, long size, long modified) {
+	}
+}
@@ -54,6 +54,7 @@ import net.fabricmc.loom.configuration.providers.minecraft.MinecraftProvider;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftSourceSets;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftVersionMeta;
 import net.fabricmc.loom.configuration.providers.minecraft.SignatureFixerApplyVisitor;
+import net.fabricmc.loom.decompilers.LineNumberRemapState;
 import net.fabricmc.loom.extension.LoomFiles;
 import net.fabricmc.loom.util.SidedClassVisitor;
 import net.fabricmc.loom.util.TinyRemapperHelper;
@@ -138,6 +139,8 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 	protected void createBackupJars(List<MinecraftJar> minecraftJars) throws IOException {
 		for (MinecraftJar minecraftJar : minecraftJars) {
 			Files.copy(minecraftJar.getPath(), getBackupJarPath(minecraftJar), StandardCopyOption.REPLACE_EXISTING);
+			// The output jar has been recreated without the line numbers remapped by genSources
+			LineNumberRemapState.delete(minecraftJar.getPath());
 		}
 	}
 
@@ -295,6 +298,7 @@ public abstract class AbstractMappedMinecraftProvider<M extends MinecraftProvide
 		for (RemappedJars remappedJar : remappedJars) {
 			Files.deleteIfExists(remappedJar.outputJarPath());
 			Files.deleteIfExists(getBackupJarPath(remappedJar.outputJar()));
+			LineNumberRemapState.delete(remappedJar.outputJarPath());
 		}
 	}
 
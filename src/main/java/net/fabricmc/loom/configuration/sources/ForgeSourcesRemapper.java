@@ -89,6 +89,13 @@ public class ForgeSourcesRemapper {
 	}
 
 	public static void addForgeSources(Project project, ServiceFactory serviceFactory, @Nullable Path inputJar, Path sourcesJar) throws IOException {
+		addForgeSources(project, serviceFactory, inputJar, null, sourcesJar);
+	}
+
+	/**
+	 * @param classes when present only the sources of these classes of the input jar are added
+	 */
+	public static void addForgeSources(Project project, ServiceFactory serviceFactory, @Nullable Path inputJar, @Nullable Set<String> classes, Path sourcesJar) throws IOException {
 		try (FileSystemUtil.Delegate inputFs = inputJar == null ? null : FileSystemUtil.getJarFileSystem(inputJar, true);
 			FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(sourcesJar, true)) {
 			ThreadingUtils.TaskCompleter taskCompleter = ThreadingUtils.taskCompleter();
@@ -101,6 +108,14 @@ public class ForgeSourcesRemapper {
 					return false;
 				}
 
+				if (classes != null) {
+					final String className = path.substring(path.startsWith("/") ? 1 : 0, path.length() - ".java".length());
+
+					if (!classes.contains(className)) {
+						return false;
+					}
+				}
+
 				return !path.contains("$");
 			}, (path, bytes) -> {
 				Path fsPath = outputFs.get().getPath(path);
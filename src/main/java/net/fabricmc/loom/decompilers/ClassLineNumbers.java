@@ -30,10 +30,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -68,8 +71,8 @@ public record ClassLineNumbers(Map<String, ClassLineNumbers.Entry> lineMap) {
 		int lineNumber = 0;
 
 		record CurrentClass(String className, int maxLine, int maxLineDest) {
-			void putEntry(Map<String, ClassLineNumbers.Entry> entries, Map<Integer, Integer> mappings) {
-				var entry = new ClassLineNumbers.Entry(className(), maxLine(), maxLineDest(), Collections.unmodifiableMap(mappings));
+			void putEntry(Map<String, ClassLineNumbers.Entry> entries, LineMapBuilder mappings) {
+				var entry = mappings.build(className(), maxLine(), maxLineDest());
 
 				final ClassLineNumbers.Entry previous = entries.put(className(), entry);
 
@@ -80,7 +83,7 @@ public record ClassLineNumbers(Map<String, ClassLineNumbers.Entry> lineMap) {
 		}
 
 		CurrentClass currentClass = null;
-		Map<Integer, Integer> currentMappings = new HashMap<>();
+		LineMapBuilder currentMappings = new LineMapBuilder();
 
 		try {
 			while ((line = reader.readLine()) != null) {
@@ -93,13 +96,13 @@ public record ClassLineNumbers(Map<String, ClassLineNumbers.Entry> lineMap) {
 				if (line.charAt(0) != '\t') {
 					if (currentClass != null) {
 						currentClass.putEntry(lineMap, currentMappings);
-						currentMappings = new HashMap<>();
+						currentMappings = new LineMapBuilder();
 					}
 
 					currentClass = new CurrentClass(segments[0], Integer.parseInt(segments[1]), Integer.parseInt(segments[2]));
 				} else {
 					Objects.requireNonNull(currentClass, "No class line mappings found for line " + lineNumber);
-					currentMappings.put(Integer.parseInt(segments[0]), Integer.parseInt(segments[1]));
+					currentMappings.add(Integer.parseInt(segments[0]), Integer.parseInt(segments[1]));
 				}
 
 				lineNumber++;
@@ -142,7 +145,97 @@ public record ClassLineNumbers(Map<String, ClassLineNumbers.Entry> lineMap) {
 		return new ClassLineNumbers(Collections.unmodifiableMap(lineMap));
 	}
 
-	public record Entry(String className, int maxLine, int maxLineDest, Map<Integer, Integer> lineMap) {
+	/**
+	 * The line mappings for a single class, stored as two parallel arrays sorted by the source line.
+	 *
+	 * @param className The name of the class
+	 * @param maxLine The highest source line number
+	 * @param maxLineDest The line number that {@code maxLine} maps to
+	 * @param sourceLines The source line numbers, sorted in ascending order without duplicates
+	 * @param destLines The line number each source line maps to
+	 */
+	public record Entry(String className, int maxLine, int maxLineDest, int[] sourceLines, int[] destLines) {
+		public static final int BINARY_VERSION = 1;
+
+		public Entry {
+			Objects.requireNonNull(className, "className");
+			Objects.requireNonNull(sourceLines, "sourceLines");
+			Objects.requireNonNull(destLines, "destLines");
+
+			if (sourceLines.length != destLines.length) {
+				throw new IllegalArgumentException("sourceLines and destLines must be the same length");
+			}
+
+			for (int i = 1; i < sourceLines.length; i++) {
+				if (sourceLines[i - 1] >= sourceLines[i]) {
+					throw new IllegalArgumentException("sourceLines must be sorted and unique");
+				}
+			}
+		}
+
+		public Entry(String className, int maxLine, int maxLineDest, Map<Integer, Integer> lineMap) {
+			this(className, maxLine, maxLineDest, LineMapBuilder.of(lineMap).sort());
+		}
+
+		private Entry(String className, int maxLine, int maxLineDest, SortedLines lines) {
+			this(className, maxLine, maxLineDest, lines.sourceLines(), lines.destLines());
+		}
+
+		/**
+		 * Create an entry from a decompiler line mapping, containing pairs of original and decompiled line numbers.
+		 */
+		public static Entry fromMapping(String className, int[] mapping) {
+			final var builder = new LineMapBuilder();
+			int maxLine = 0;
+			int maxLineDest = 0;
+
+			for (int i = 0; i < mapping.length; i += 2) {
+				maxLine = Math.max(maxLine, mapping[i]);
+				maxLineDest = Math.max(maxLineDest, mapping[i + 1]);
+				builder.add(mapping[i], mapping[i + 1]);
+			}
+
+			return builder.build(className, maxLine, maxLineDest);
+		}
+
+		/**
+		 * @return A boxed view of the line map, prefer using {@link #sourceLines()} and {@link #destLines()} directly
+		 */
+		public Map<Integer, Integer> lineMap() {
+			final Map<Integer, Integer> lineMap = new LinkedHashMap<>();
+
+			for (int i = 0; i < sourceLines.length; i++) {
+				lineMap.put(sourceLines[i], destLines[i]);
+			}
+
+			return Collections.unmodifiableMap(lineMap);
+		}
+
+		public int size() {
+			return sourceLines.length;
+		}
+
+		/**
+		 * @return The decompiled line number for the given original line, or for the next mapped line after it
+		 */
+		public int remap(int line) {
+			if (line <= 0) {
+				return line;
+			}
+
+			if (line >= maxLine) {
+				return maxLineDest;
+			}
+
+			int index = Arrays.binarySearch(sourceLines, line);
+
+			if (index < 0) {
+				index = -index - 1;
+			}
+
+			return index < sourceLines.length && sourceLines[index] <= maxLine ? destLines[index] : maxLineDest;
+		}
+
 		public void write(Writer writer) throws IOException {
 			writer.write(className);
 			writer.write('\t');
@@ -151,13 +244,157 @@ public record ClassLineNumbers(Map<String, ClassLineNumbers.Entry> lineMap) {
 			writer.write(Integer.toString(maxLineDest));
 			writer.write('\n');
 
-			for (Map.Entry<Integer, Integer> lineEntry : lineMap.entrySet()) {
+			for (int i = 0; i < sourceLines.length; i++) {
 				writer.write('\t');
-				writer.write(Integer.toString(lineEntry.getKey()));
+				writer.write(Integer.toString(sourceLines[i]));
 				writer.write('\t');
-				writer.write(Integer.toString(lineEntry.getValue()));
+				writer.write(Integer.toString(destLines[i]));
 				writer.write('\n');
 			}
 		}
+
+		/**
+		 * @return The number of bytes {@link #writeBinary(ByteBuffer)} will write
+		 */
+		public int binarySize() {
+			return Integer.BYTES * (4 + sourceLines.length * 2);
+		}
+
+		/**
+		 * Write the entry in the binary format, the class name is not included.
+		 */
+		public void writeBinary(ByteBuffer buffer) {
+			buffer.putInt(BINARY_VERSION);
+			buffer.putInt(maxLine);
+			buffer.putInt(maxLineDest);
+			buffer.putInt(sourceLines.length);
+			buffer.asIntBuffer().put(sourceLines).put(destLines);
+			buffer.position(buffer.position() + Integer.BYTES * sourceLines.length * 2);
+		}
+
+		/**
+		 * Read an entry written by {@link #writeBinary(ByteBuffer)}, the buffer position is moved to the end of the entry.
+		 */
+		public static Entry readBinary(String className, ByteBuffer buffer) throws IOException {
+			final int version = buffer.getInt();
+
+			if (version != BINARY_VERSION) {
+				throw new IOException("Unsupported line numbers version: " + version);
+			}
+
+			final int maxLine = buffer.getInt();
+			final int maxLineDest = buffer.getInt();
+			final int size = buffer.getInt();
+
+			if (size < 0 || (long) size * Integer.BYTES * 2 > buffer.remaining()) {
+				throw new IOException("Invalid line numbers size: " + size);
+			}
+
+			final int[] sourceLines = new int[size];
+			final int[] destLines = new int[size];
+			buffer.asIntBuffer().get(sourceLines).get(destLines);
+			buffer.position(buffer.position() + Integer.BYTES * size * 2);
+
+			return new Entry(className, maxLine, maxLineDest, sourceLines, destLines);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+
+			return o instanceof Entry entry
+					&& maxLine == entry.maxLine
+					&& maxLineDest == entry.maxLineDest
+					&& className.equals(entry.className)
+					&& Arrays.equals(sourceLines, entry.sourceLines)
+					&& Arrays.equals(destLines, entry.destLines);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Objects.hash(className, maxLine, maxLineDest);
+			result = 31 * result + Arrays.hashCode(sourceLines);
+			result = 31 * result + Arrays.hashCode(destLines);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry[className=%s, maxLine=%d, maxLineDest=%d, lineMap=%s]".formatted(className, maxLine, maxLineDest, lineMap());
+		}
+	}
+
+	/**
+	 * Collects line mappings into primitive arrays, when a source line is added more than once the last value is kept.
+	 */
+	private static final class LineMapBuilder {
+		private int[] sourceLines = new int[16];
+		private int[] destLines = new int[16];
+		private int size = 0;
+
+		static LineMapBuilder of(Map<Integer, Integer> lineMap) {
+			final var builder = new LineMapBuilder();
+
+			for (Map.Entry<Integer, Integer> entry : lineMap.entrySet()) {
+				builder.add(entry.getKey(), entry.getValue());
+			}
+
+			return builder;
+		}
+
+		void add(int sourceLine, int destLine) {
+			if (size == sourceLines.length) {
+				sourceLines = Arrays.copyOf(sourceLines, size * 2);
+				destLines = Arrays.copyOf(destLines, size * 2);
+			}
+
+			sourceLines[size] = sourceLine;
+			destLines[size] = destLine;
+			size++;
+		}
+
+		Entry build(String className, int maxLine, int maxLineDest) {
+			return new Entry(className, maxLine, maxLineDest, sort());
+		}
+
+		SortedLines sort() {
+			// Sort by source line, keeping the insertion order for duplicates so the last one can win.
+			final long[] keys = new long[size];
+
+			for (int i = 0; i < size; i++) {
+				keys[i] = ((long) sourceLines[i] << 32) | i;
+			}
+
+			Arrays.sort(keys);
+
+			final int[] resultSource = new int[size];
+			final int[] resultDest = new int[size];
+			int count = 0;
+
+			for (int i = 0; i < size; i++) {
+				final int index = (int) keys[i];
+
+				if (count > 0 && resultSource[count - 1] == sourceLines[index]) {
+					// Duplicate source line, replace the previous value
+					resultDest[count - 1] = destLines[index];
+					continue;
+				}
+
+				resultSource[count] = sourceLines[index];
+				resultDest[count] = destLines[index];
+				count++;
+			}
+
+			if (count == size) {
+				return new SortedLines(resultSource, resultDest);
+			}
+
+			return new SortedLines(Arrays.copyOf(resultSource, count), Arrays.copyOf(resultDest, count));
+		}
+	}
+
+	private record SortedLines(int[] sourceLines, int[] destLines) {
 	}
 }
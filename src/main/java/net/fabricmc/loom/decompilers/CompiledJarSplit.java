@@ -0,0 +1,103 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.loom.api.decompilers.ClassTransformer;
+import net.fabricmc.loom.api.decompilers.DecompilationMetadata;
+import net.fabricmc.loom.util.RawZipFile;
+
+/**
+ * The classes to decompile split out of the compiled jar, for the decompilers that do not support
+ * {@link DecompilationMetadata#classes()} or {@link DecompilationMetadata#classTransformer()} and can only decompile a whole jar.
+ * The entries are copied as they are, without being inflated, unless they have to be transformed.
+ *
+ * @param classesJar A jar containing the classes to decompile
+ * @param librariesJar A jar containing the other classes, to be used as a library
+ */
+public record CompiledJarSplit(Path classesJar, Path librariesJar) implements Closeable {
+	private static final String CLASS_SUFFIX = ".class";
+
+	/**
+	 * @param classes The internal names of the classes to decompile, or null to decompile every class
+	 * @param transformer When present, the classes to decompile are passed through it
+	 */
+	public static CompiledJarSplit create(Path compiledJar, @Nullable Set<String> classes, @Nullable ClassTransformer transformer) throws IOException {
+		final var split = new CompiledJarSplit(Files.createTempFile("loom-decompile-classes", ".jar"), Files.createTempFile("loom-decompile-libraries", ".jar"));
+
+		try (RawZipFile zipFile = RawZipFile.open(compiledJar)) {
+			if (zipFile == null) {
+				throw new ZipException("Unsupported zip format: " + compiledJar);
+			}
+
+			try (var classesWriter = new RawZipFile.Writer(FileChannel.open(split.classesJar(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+					var librariesWriter = new RawZipFile.Writer(FileChannel.open(split.librariesJar(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+				for (RawZipFile.Entry entry : zipFile.entries()) {
+					final String name = entry.name();
+
+					if (!name.endsWith(CLASS_SUFFIX)) {
+						continue;
+					}
+
+					final String className = name.substring(0, name.length() - CLASS_SUFFIX.length());
+
+					if (classes != null && !classes.contains(className)) {
+						librariesWriter.copy(zipFile, entry, entry.dosTime(), zipFile.readLocalExtra(entry), entry.extra());
+					} else if (transformer == null) {
+						classesWriter.copy(zipFile, entry, entry.dosTime(), zipFile.readLocalExtra(entry), entry.extra());
+					} else {
+						final byte[] bytes = transformer.transform(className, zipFile.readAllBytes(entry));
+						classesWriter.write(name, entry.dosTime(), RawZipFile.Writer.compress(ZipEntry.DEFLATED, bytes));
+					}
+				}
+
+				classesWriter.finish();
+				librariesWriter.finish();
+			}
+		} catch (IOException | RuntimeException e) {
+			split.close();
+			throw e;
+		}
+
+		return split;
+	}
+
+	@Override
+	public void close() throws IOException {
+		Files.deleteIfExists(classesJar);
+		Files.deleteIfExists(librariesJar);
+	}
+}
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -38,7 +39,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.LoomGradleExtension;
+import net.fabricmc.loom.api.decompilers.ClassTransformer;
 import net.fabricmc.loom.api.decompilers.DecompilationMetadata;
+import net.fabricmc.loom.api.decompilers.DecompiledClassConsumer;
 import net.fabricmc.loom.api.decompilers.LoomDecompiler;
 import net.fabricmc.loom.decompilers.cfr.LoomCFRDecompiler;
 import net.fabricmc.loom.decompilers.fernflower.FabricFernFlowerDecompiler;
@@ -75,6 +78,27 @@ public abstract class DecompilerConfiguration implements Runnable {
 		});
 	}
 
+	/**
+	 * @return true when the decompiler passes each class to {@link DecompilationMetadata#classConsumer()}
+	 */
+	public static boolean supportsClassConsumer(String decompilerClassName) {
+		return decompilerClassName.equals(BuiltinVineflower.class.getName()) || decompilerClassName.equals(BuiltinFernflower.class.getName());
+	}
+
+	/**
+	 * @return true when the decompiler only decompiles the {@link DecompilationMetadata#classes()} of the compiled jar
+	 */
+	public static boolean supportsClassFilter(String decompilerClassName) {
+		return decompilerClassName.equals(BuiltinVineflower.class.getName());
+	}
+
+	/**
+	 * @return true when the decompiler passes each class to decompile through {@link DecompilationMetadata#classTransformer()}
+	 */
+	public static boolean supportsClassTransformer(String decompilerClassName) {
+		return decompilerClassName.equals(BuiltinVineflower.class.getName()) || decompilerClassName.equals(BuiltinFernflower.class.getName());
+	}
+
 	// We need to wrap the internal API with the public API.
 	// This is needed as the sourceset containing fabric's decompilers do not have access to loom classes.
 	private abstract static sealed class BuiltinDecompiler implements LoomDecompiler permits BuiltinFernflower, BuiltinCfr, BuiltinVineflower {
@@ -145,6 +169,23 @@ public abstract class DecompilerConfiguration implements Runnable {
 				public byte[] unpackZip(Path zip, String path) throws IOException {
 					return ZipUtils.unpack(zip, path);
 				}
+
+				@Override
+				public LoomInternalDecompiler.ClassConsumer classConsumer() {
+					final DecompiledClassConsumer classConsumer = metaData.classConsumer();
+					return classConsumer != null ? classConsumer::accept : null;
+				}
+
+				@Override
+				public Set<String> classes() {
+					return metaData.classes();
+				}
+
+				@Override
+				public LoomInternalDecompiler.ClassTransformer classTransformer() {
+					final ClassTransformer classTransformer = metaData.classTransformer();
+					return classTransformer != null ? classTransformer::transform : null;
+				}
 			});
 		}
 	}
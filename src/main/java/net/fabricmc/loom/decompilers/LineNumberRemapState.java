@@ -0,0 +1,162 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.FileStamp;
+
+/**
+ * Records the input jar and line numbers used to remap the line numbers of an output jar, allowing the next run to
+ * only remap the classes whose line numbers have changed.
+ *
+ * <p>The state is stored next to the output jar, along with the {@link FileStamp} of both jars once the output jar was
+ * remapped, so checking it does not read either jar. It is ignored if either stamp has changed since. Loom deletes the
+ * state itself before it recreates the output jar, the stamps guard against the jars being changed in any other way.
+ * The line numbers are stored in the binary format of {@link ClassLineNumbers.Entry#writeBinary(ByteBuffer)}.
+ */
+public final class LineNumberRemapState {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LineNumberRemapState.class);
+	private static final int VERSION = 1;
+
+	private LineNumberRemapState() {
+	}
+
+	public static Path getPath(Path outputJar) {
+		return outputJar.resolveSibling(outputJar.getFileName() + ".linemap-state.bin");
+	}
+
+	/**
+	 * @return The line numbers the output jar was remapped with, or null when the jars have changed since
+	 */
+	@Nullable
+	public static ClassLineNumbers read(Path inputJar, Path outputJar) throws IOException {
+		final Path stateFile = getPath(outputJar);
+
+		if (Files.notExists(stateFile) || Files.notExists(outputJar)) {
+			return null;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(stateFile));
+
+		try {
+			if (buffer.getInt() != VERSION) {
+				LOGGER.info("Unsupported line number remap state version, remapping all line numbers");
+				return null;
+			}
+
+			if (!readString(buffer).equals(getStamp(inputJar))) {
+				LOGGER.info("Classes input jar has changed, remapping all line numbers");
+				return null;
+			}
+
+			if (!readString(buffer).equals(getStamp(outputJar))) {
+				LOGGER.info("Classes output jar has changed, remapping all line numbers");
+				return null;
+			}
+
+			final int count = buffer.getInt();
+			final Map<String, ClassLineNumbers.Entry> lineMap = new HashMap<>();
+
+			for (int i = 0; i < count; i++) {
+				final String className = readString(buffer);
+				lineMap.put(className, ClassLineNumbers.Entry.readBinary(className, buffer));
+			}
+
+			return new ClassLineNumbers(lineMap);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.info("Failed to read line number remap state, remapping all line numbers", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Record the line numbers the output jar has just been remapped with.
+	 */
+	public static void write(Path inputJar, Path outputJar, ClassLineNumbers lineNumbers) throws IOException {
+		final byte[] inputStamp = getStamp(inputJar).getBytes(StandardCharsets.UTF_8);
+		final byte[] outputStamp = getStamp(outputJar).getBytes(StandardCharsets.UTF_8);
+		final Map<String, byte[]> classNames = new HashMap<>();
+		int size = Integer.BYTES * 4 + inputStamp.length + outputStamp.length;
+
+		for (ClassLineNumbers.Entry entry : lineNumbers.lineMap().values()) {
+			final byte[] className = entry.className().getBytes(StandardCharsets.UTF_8);
+			classNames.put(entry.className(), className);
+			size += Integer.BYTES + className.length + entry.binarySize();
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(VERSION);
+		writeBytes(buffer, inputStamp);
+		writeBytes(buffer, outputStamp);
+		buffer.putInt(lineNumbers.lineMap().size());
+
+		for (ClassLineNumbers.Entry entry : lineNumbers.lineMap().values()) {
+			writeBytes(buffer, classNames.get(entry.className()));
+			entry.writeBinary(buffer);
+		}
+
+		Files.write(getPath(outputJar), buffer.array());
+	}
+
+	/**
+	 * Delete the state, this must be called before the output jar is modified.
+	 */
+	public static void delete(Path outputJar) throws IOException {
+		Files.deleteIfExists(getPath(outputJar));
+	}
+
+	private static String getStamp(Path jar) throws IOException {
+		final FileStamp stamp = FileStamp.read(jar);
+		return "%d:%d:%s".formatted(stamp.size(), stamp.modified(), stamp.fileKey());
+	}
+
+	private static void writeBytes(ByteBuffer buffer, byte[] bytes) {
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		final int length = buffer.getInt();
+
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid string length: " + length);
+		}
+
+		final String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+}
@@ -26,12 +26,15 @@ package net.fabricmc.loom.decompilers;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -42,55 +45,133 @@ import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.util.AsyncZipProcessor;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.ZipTransaction;
 
 public record LineNumberRemapper(ClassLineNumbers lineNumbers) {
 	private static final Logger LOGGER = LoggerFactory.getLogger(LineNumberRemapper.class);
 
 	public void process(Path input, Path output) throws IOException {
-		AsyncZipProcessor.processEntries(input, output, new AsyncZipProcessor() {
-			private final Set<Path> createdParents = new HashSet<>();
+		AsyncZipProcessor.processEntries(input, output, this::remapEntry);
+	}
+
+	/**
+	 * Remap the line numbers of the output of a previous run in place, only rewriting the classes whose line numbers
+	 * have changed since.
+	 *
+	 * <p>Only the changed classes are read from the input and remapped, the unchanged entries of the output are copied
+	 * without being inflated and deflated again.
+	 *
+	 * @param input The input jar, this must be the same jar that was used to create the previous output
+	 * @param previousOutput The output of the previous run, updated in place
+	 * @param previousLineNumbers The line numbers used to create the previous output
+	 * @return false when too many classes have changed, and the whole jar should be remapped instead
+	 */
+	public boolean processIncremental(Path input, Path previousOutput, ClassLineNumbers previousLineNumbers) throws IOException {
+		final Set<String> changedClasses = getChangedClasses(previousLineNumbers);
+
+		// Copying the unchanged classes is only worth it when most of them are unchanged
+		if (changedClasses.size() > lineNumbers.lineMap().size() / 2) {
+			return false;
+		}
+
+		if (changedClasses.isEmpty()) {
+			return true;
+		}
 
-			@Override
-			public void processEntryAsync(Path file, Path dst) throws IOException {
-				Path parent = dst.getParent();
+		LOGGER.debug("Remapping line numbers for {} changed classes", changedClasses.size());
 
-				synchronized (createdParents) {
-					if (parent != null && createdParents.add(parent)) {
-						Files.createDirectories(parent);
-					}
+		try (ZipFile inputZip = new ZipFile(input.toFile());
+				ZipTransaction transaction = ZipTransaction.open(previousOutput)) {
+			final Enumeration<? extends ZipEntry> entries = inputZip.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final String className = getClassName(entry.getName());
+
+				if (className == null || !changedClasses.contains(className)) {
+					continue;
 				}
 
-				String fileName = file.toAbsolutePath().toString();
+				final byte[] original;
 
-				if (fileName.endsWith(".class")) {
-					// Strip the leading slash and the .class extension
-					String idx = fileName.substring(1, fileName.length() - 6);
+				try (InputStream inputStream = inputZip.getInputStream(entry)) {
+					original = inputStream.readAllBytes();
+				}
 
-					int dollarPos = idx.indexOf('$'); //This makes the assumption that only Java classes are to be remapped.
+				final byte[] remapped = remapEntry(entry.getName(), () -> original);
+				// The class may no longer have any line numbers, restore the original
+				transaction.add(entry.getName(), remapped != null ? remapped : original);
+			}
 
-					if (dollarPos >= 0) {
-						idx = idx.substring(0, dollarPos);
-					}
+			transaction.commit();
+		}
 
-					if (lineNumbers.lineMap().containsKey(idx)) {
-						LOGGER.debug("Remapping line numbers for class: {}", idx);
+		return true;
+	}
 
-						try (InputStream is = Files.newInputStream(file)) {
-							ClassReader reader = new ClassReader(is);
-							ClassWriter writer = new ClassWriter(0);
+	private Set<String> getChangedClasses(ClassLineNumbers previousLineNumbers) {
+		final Set<String> changedClasses = new HashSet<>();
 
-							reader.accept(new LineNumberVisitor(Constants.ASM_VERSION, writer, lineNumbers.lineMap().get(idx)), 0);
-							Files.write(dst, writer.toByteArray());
-							return;
-						}
-					} else {
-						LOGGER.debug("No linemap found for: {}", idx);
-					}
-				}
+		for (Map.Entry<String, ClassLineNumbers.Entry> entry : lineNumbers.lineMap().entrySet()) {
+			if (!entry.getValue().equals(previousLineNumbers.lineMap().get(entry.getKey()))) {
+				changedClasses.add(entry.getKey());
+			}
+		}
 
-				Files.copy(file, dst, StandardCopyOption.REPLACE_EXISTING);
+		for (String className : previousLineNumbers.lineMap().keySet()) {
+			if (!lineNumbers.lineMap().containsKey(className)) {
+				changedClasses.add(className);
 			}
-		});
+		}
+
+		return changedClasses;
+	}
+
+	/**
+	 * @return The name of the outer class for the given class file, or null when the file is not a class
+	 */
+	@Nullable
+	private static String getClassName(String name) {
+		if (!name.endsWith(".class")) {
+			return null;
+		}
+
+		// Strip the .class extension
+		String idx = name.substring(0, name.length() - 6);
+
+		int dollarPos = idx.indexOf('$'); //This makes the assumption that only Java classes are to be remapped.
+
+		if (dollarPos >= 0) {
+			idx = idx.substring(0, dollarPos);
+		}
+
+		return idx;
+	}
+
+	/**
+	 * @return The remapped class, or null when the file has no line numbers to remap
+	 */
+	private byte @Nullable [] remapEntry(String name, AsyncZipProcessor.EntryContents contents) throws IOException {
+		final String idx = getClassName(name);
+
+		if (idx == null) {
+			return null;
+		}
+
+		final ClassLineNumbers.Entry entry = lineNumbers.lineMap().get(idx);
+
+		if (entry == null) {
+			LOGGER.debug("No linemap found for: {}", idx);
+			return null;
+		}
+
+		LOGGER.debug("Remapping line numbers for class: {}", idx);
+
+		ClassReader reader = new ClassReader(contents.read());
+		ClassWriter writer = new ClassWriter(0);
+
+		reader.accept(new LineNumberVisitor(Constants.ASM_VERSION, writer, entry), 0);
+		return writer.toByteArray();
 	}
 
 	private static class LineNumberVisitor extends ClassVisitor {
@@ -106,21 +187,7 @@ public record LineNumberRemapper(ClassLineNumbers lineNumbers) {
 			return new MethodVisitor(api, super.visitMethod(access, name, descriptor, signature, exceptions)) {
 				@Override
 				public void visitLineNumber(int line, Label start) {
-					int tLine = line;
-
-					if (tLine <= 0) {
-						super.visitLineNumber(line, start);
-					} else if (tLine >= lineNumbers.maxLine()) {
-						super.visitLineNumber(lineNumbers.maxLineDest(), start);
-					} else {
-						Integer matchedLine = null;
-
-						while (tLine <= lineNumbers.maxLine() && ((matchedLine = lineNumbers.lineMap().get(tLine)) == null)) {
-							tLine++;
-						}
-
-						super.visitLineNumber(matchedLine != null ? matchedLine : lineNumbers.maxLineDest(), start);
-					}
+					super.visitLineNumber(lineNumbers.remap(line), start);
 				}
 			};
 		}
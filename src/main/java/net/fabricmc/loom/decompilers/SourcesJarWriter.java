@@ -0,0 +1,118 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.loom.api.decompilers.DecompiledClassConsumer;
+import net.fabricmc.loom.util.RawZipFile;
+
+/**
+ * Writes each decompiled class straight into the sources jar as soon as the decompiler has produced it,
+ * and collects the line numbers of the classes.
+ */
+public final class SourcesJarWriter implements DecompiledClassConsumer, Closeable {
+	private final RawZipFile.Writer writer;
+	private final Map<String, ClassLineNumbers.Entry> lineNumbers = new ConcurrentHashMap<>();
+
+	private SourcesJarWriter(RawZipFile.Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * @param output The sources jar to create
+	 * @param existingSources A jar of sources to copy to the start of the output as they are, or null
+	 */
+	public static SourcesJarWriter create(Path output, @Nullable Path existingSources) throws IOException {
+		final var writer = new RawZipFile.Writer(FileChannel.open(output, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+
+		try {
+			if (existingSources != null) {
+				try (RawZipFile zipFile = RawZipFile.open(existingSources)) {
+					if (zipFile == null) {
+						throw new ZipException("Unsupported zip format: " + existingSources);
+					}
+
+					writer.copyAll(zipFile);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			writer.close();
+			throw e;
+		}
+
+		return new SourcesJarWriter(writer);
+	}
+
+	@Override
+	public void accept(String className, String sources, int @Nullable [] lineMapping) throws IOException {
+		// Compressed on the decompiler thread, so that only the writing is done one class at a time
+		final RawZipFile.Writer.Compressed compressed = RawZipFile.Writer.compress(ZipEntry.DEFLATED, sources.getBytes(StandardCharsets.UTF_8));
+
+		synchronized (writer) {
+			writer.write(className + ".java", RawZipFile.Writer.CONSTANT_DOS_TIME, compressed);
+		}
+
+		if (lineMapping != null) {
+			lineNumbers.put(className, ClassLineNumbers.Entry.fromMapping(className, lineMapping));
+		}
+	}
+
+	/**
+	 * Write the line numbers of the classes in the line map format read by {@link ClassLineNumbers#readMappings}.
+	 * Nothing is written when no line numbers were produced.
+	 */
+	public void writeLineNumbers(Path linemap) throws IOException {
+		if (lineNumbers.isEmpty()) {
+			return;
+		}
+
+		try (BufferedWriter lineMapWriter = Files.newBufferedWriter(linemap, StandardCharsets.UTF_8)) {
+			new ClassLineNumbers(Map.copyOf(lineNumbers)).write(lineMapWriter);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try (writer) {
+			synchronized (writer) {
+				writer.finish();
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import daomephsta.unpick.api.ConstantUninliner;
+import daomephsta.unpick.api.IClassResolver;
+import daomephsta.unpick.api.constantmappers.ConstantMappers;
+import daomephsta.unpick.api.constantresolvers.ConstantResolvers;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import net.fabricmc.loom.api.decompilers.ClassTransformer;
+
+/**
+ * Unpicks each class as the decompiler reads it, through unpick's API rather than its CLI.
+ * Only used within the decompile worker, which has the unpick runtime classpath.
+ */
+public final class UnpickClassTransformer implements ClassTransformer, Closeable {
+	private final List<ZipFile> zipFiles;
+	private final ConstantUninliner uninliner;
+	private final Map<Logger, Level> previousLevels;
+
+	private UnpickClassTransformer(List<ZipFile> zipFiles, ConstantUninliner uninliner, Map<Logger, Level> previousLevels) {
+		this.zipFiles = zipFiles;
+		this.uninliner = uninliner;
+		this.previousLevels = previousLevels;
+	}
+
+	/**
+	 * @param inputJar The jar containing the classes to unpick
+	 * @param constantJars The jars containing the constants referenced by the definitions
+	 * @param classpath The libraries of the input jar
+	 * @param logConfig When present, the logger levels to apply until the transformer is closed
+	 */
+	public static UnpickClassTransformer create(Path definitions, Path inputJar, Collection<Path> constantJars, Collection<Path> classpath, @Nullable Path logConfig) throws IOException {
+		final List<ZipFile> zipFiles = new ArrayList<>();
+
+		try {
+			zipFiles.add(new ZipFile(inputJar.toFile()));
+
+			for (Path constantJar : constantJars) {
+				zipFiles.add(new ZipFile(constantJar.toFile()));
+			}
+
+			final IClassResolver constantResolver = new JarClassResolver(List.copyOf(zipFiles.subList(1, zipFiles.size())));
+
+			for (Path library : classpath) {
+				zipFiles.add(new ZipFile(library.toFile()));
+			}
+
+			final IClassResolver classResolver = new JarClassResolver(List.copyOf(zipFiles));
+			final ConstantUninliner uninliner = new ConstantUninliner(
+					ConstantMappers.dataDriven(classResolver, new ByteArrayInputStream(Files.readAllBytes(definitions))),
+					ConstantResolvers.bytecodeAnalysis(constantResolver)
+			);
+
+			return new UnpickClassTransformer(zipFiles, uninliner, logConfig != null ? configureLogging(logConfig) : Map.of());
+		} catch (IOException | RuntimeException e) {
+			try {
+				closeAll(zipFiles);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized byte[] transform(String className, byte[] bytes) {
+		final ClassNode classNode = new ClassNode();
+		new ClassReader(bytes).accept(classNode, 0);
+		uninliner.transform(classNode);
+
+		final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classNode.accept(classWriter);
+		return classWriter.toByteArray();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The worker may be reused, so the logger levels are restored once unpick has finished.
+		previousLevels.forEach(Logger::setLevel);
+		closeAll(zipFiles);
+	}
+
+	// The config file uses the java.util.logging properties format, only the logger levels are applied.
+	// Setting java.util.logging.config.file is not an option, as Gradle configures the logging of the daemon and its workers.
+	private static Map<Logger, Level> configureLogging(Path logConfig) throws IOException {
+		final Properties properties = new Properties();
+
+		try (InputStream is = Files.newInputStream(logConfig)) {
+			properties.load(is);
+		}
+
+		// Also keeps a strong reference to the configured loggers, until unpick has finished.
+		final Map<Logger, Level> previousLevels = new HashMap<>();
+
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.endsWith(".level")) {
+				continue;
+			}
+
+			final Logger logger = Logger.getLogger(key.substring(0, key.length() - ".level".length()));
+			previousLevels.put(logger, logger.getLevel());
+			logger.setLevel(Level.parse(properties.getProperty(key).trim()));
+		}
+
+		return previousLevels;
+	}
+
+	private static void closeAll(List<ZipFile> zipFiles) throws IOException {
+		IOException exception = null;
+
+		for (ZipFile zipFile : zipFiles) {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	// Resolves the classes from the given jars in order, falling back to the classes of the JDK.
+	private record JarClassResolver(List<ZipFile> zipFiles) implements IClassResolver {
+		@Override
+		public ClassReader resolveClass(String internalName) throws ClassResolutionException {
+			final String fileName = internalName + ".class";
+
+			try {
+				for (ZipFile zipFile : zipFiles) {
+					final ZipEntry entry = zipFile.getEntry(fileName);
+
+					if (entry != null) {
+						try (InputStream is = zipFile.getInputStream(entry)) {
+							return new ClassReader(is);
+						}
+					}
+				}
+
+				try (InputStream is = ClassLoader.getSystemResourceAsStream(fileName)) {
+					if (is != null) {
+						return new ClassReader(is);
+					}
+				}
+			} catch (IOException e) {
+				throw new ClassResolutionException(e);
+			}
+
+			throw new ClassResolutionException("Failed to find class " + internalName);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of when each cache entry was last used, so that the cache can be pruned in least recently used order
+ * without updating the files on every read or walking the whole cache on every prune.
+ *
+ * <p>Reads and writes are recorded in memory and merged into a small binary index file stored alongside the entries.
+ * The cache directory is only walked when the index is missing, invalid or has not been checked against the cache
+ * contents for {@link #FULL_SCAN_INTERVAL}, this picks up entries written by a process that never saved the index.
+ *
+ * <p>This class does not do any locking itself, the owning store must prevent concurrent access to the index file.
+ */
+final class CacheAccessIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessIndex.class);
+
+	static final String FILE_NAME = ".index";
+	private static final int MAGIC = 0x4C43_4958; // LCIX
+	private static final int VERSION = 1;
+	private static final Duration FULL_SCAN_INTERVAL = Duration.ofDays(7);
+
+	private final Path indexFile;
+	// Key -> time of the most recent read in this process
+	private final Map<String, Long> pendingReads = new ConcurrentHashMap<>();
+	private final Set<String> pendingWrites = ConcurrentHashMap.newKeySet();
+
+	CacheAccessIndex(Path indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	void recordRead(String key) {
+		pendingReads.merge(key, System.currentTimeMillis(), Math::max);
+	}
+
+	void recordWrite(String key) {
+		pendingWrites.add(key);
+	}
+
+	/**
+	 * Read the index from disk, merging in the accesses recorded since the last call.
+	 *
+	 * @param resolver Returns the path of the entry with the given key
+	 * @return The merged index, or null when the cache must be scanned with {@link #rescan}
+	 */
+	@Nullable
+	State load(Function<String, Path> resolver, Instant now) throws IOException {
+		final State state = read();
+
+		if (state == null || now.minus(FULL_SCAN_INTERVAL).isAfter(Instant.ofEpochMilli(state.lastFullScan))) {
+			return null;
+		}
+
+		applyPending(state, resolver);
+		return state;
+	}
+
+	/**
+	 * Rebuild the index from the given cache entries, keeping the access times of entries that have not changed.
+	 *
+	 * @param scanned The entries currently in the cache, by key
+	 */
+	State rescan(Map<String, Path> scanned, Function<String, Path> resolver, Instant now) throws IOException {
+		final State previous = read();
+		final State state = new State(now.toEpochMilli(), new HashMap<>());
+
+		for (Map.Entry<String, Path> scannedEntry : scanned.entrySet()) {
+			final Entry entry = stat(scannedEntry.getKey(), scannedEntry.getValue());
+
+			if (entry == null) {
+				continue;
+			}
+
+			final Entry known = previous != null ? previous.entries.get(entry.key()) : null;
+
+			if (known != null && known.modified() == entry.modified()) {
+				state.put(known);
+			} else {
+				state.put(entry);
+			}
+		}
+
+		applyPending(state, resolver);
+		return state;
+	}
+
+	private void applyPending(State state, Function<String, Path> resolver) throws IOException {
+		for (String key : List.copyOf(pendingWrites)) {
+			pendingWrites.remove(key);
+			final Entry entry = stat(key, resolver.apply(key));
+
+			if (entry == null) {
+				state.remove(key);
+			} else {
+				state.put(entry);
+			}
+		}
+
+		for (String key : List.copyOf(pendingReads.keySet())) {
+			final Long lastRead = pendingReads.remove(key);
+			Entry entry = state.entries.get(key);
+
+			if (entry == null) {
+				// Written by another process that has not saved the index yet
+				entry = stat(key, resolver.apply(key));
+			}
+
+			if (entry != null && lastRead != null) {
+				state.put(entry.withLastAccess(Math.max(entry.lastAccess(), lastRead)));
+			}
+		}
+	}
+
+	/**
+	 * @return The entries that should be removed to meet the cache rules, oldest last
+	 */
+	static List<Entry> selectEvictions(State state, ShardedCachedFileStore.CacheRules cacheRules, Instant now) {
+		final long maxAge = now.minus(cacheRules.maxAge()).toEpochMilli();
+		final List<Entry> entries = new ArrayList<>(state.entries.values());
+		// Sorted newest -> oldest
+		entries.sort(Comparator.comparingLong(Entry::lastAccess).reversed());
+
+		final List<Entry> evictions = new ArrayList<>();
+		long files = 0;
+		long size = 0;
+		boolean full = false;
+
+		for (Entry entry : entries) {
+			if (!full && files < cacheRules.maxFiles() && size + entry.size() <= cacheRules.maxSize() && entry.lastAccess() >= maxAge) {
+				files++;
+				size += entry.size();
+				continue;
+			}
+
+			// Everything older than the first entry that does not fit is also removed
+			full = true;
+			evictions.add(entry);
+		}
+
+		return evictions;
+	}
+
+	@Nullable
+	private State read() throws IOException {
+		if (Files.notExists(indexFile)) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOGGER.info("Ignoring cache index with unknown format: {}", indexFile);
+				return null;
+			}
+
+			final long lastFullScan = in.readLong();
+			final int count = in.readInt();
+			final State state = new State(lastFullScan, new HashMap<>(count));
+
+			for (int i = 0; i < count; i++) {
+				state.put(new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong()));
+			}
+
+			return state;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (EOFException e) {
+			LOGGER.info("Ignoring truncated cache index: {}", indexFile);
+			return null;
+		}
+	}
+
+	void write(State state) throws IOException {
+		final Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + "-" + UUID.randomUUID());
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(state.lastFullScan);
+				out.writeInt(state.entries.size());
+
+				for (Entry entry : state.entries.values()) {
+					out.writeUTF(entry.key());
+					out.writeLong(entry.lastAccess());
+					out.writeLong(entry.modified());
+					out.writeLong(entry.size());
+				}
+			}
+
+			try {
+				Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Delete the entry's file, unless it has been replaced since it was indexed.
+	 *
+	 * @return true when the file was deleted
+	 */
+	static boolean deleteIfUnchanged(State state, Entry entry, Path path) throws IOException {
+		final Entry current = stat(entry.key(), path);
+
+		if (current == null) {
+			// Already removed by someone else
+			state.remove(entry.key());
+			return false;
+		}
+
+		if (current.modified() != entry.modified()) {
+			state.put(current);
+			return false;
+		}
+
+		try {
+			Files.delete(path);
+		} catch (NoSuchFileException ignored) {
+			// Already removed by someone else
+		}
+
+		state.remove(entry.key());
+		return true;
+	}
+
+	/**
+	 * @return The key of the entry at the given path, relative to the directory containing the entries
+	 */
+	static String toKey(Path directory, Path path) {
+		final Path relative = directory.relativize(path);
+		final StringBuilder sb = new StringBuilder();
+
+		for (Path name : relative) {
+			if (!sb.isEmpty()) {
+				sb.append('/');
+			}
+
+			sb.append(name);
+		}
+
+		return sb.toString();
+	}
+
+	@Nullable
+	static Entry stat(String key, Path path) throws IOException {
+		try {
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			final long modified = attributes.lastModifiedTime().toMillis();
+			return new Entry(key, modified, modified, attributes.size());
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param lastAccess The time the entry was last read or written, in epoch millis
+	 * @param modified The last modified time of the entry's file when it was indexed, used to detect replaced entries
+	 * @param size The size of the entry's file in bytes
+	 */
+	record Entry(String key, long lastAccess, long modified, long size) {
+		Entry withLastAccess(long lastAccess) {
+			return new Entry(key, lastAccess, modified, size);
+		}
+	}
+
+	record State(long lastFullScan, Map<String, Entry> entries) {
+		void put(Entry entry) {
+			entries.put(entry.key(), entry);
+		}
+
+		void remove(String key) {
+			entries.remove(key);
+		}
+	}
+}
@@ -24,13 +24,9 @@
 
 package net.fabricmc.loom.decompilers.cache;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
@@ -48,13 +44,14 @@ import net.fabricmc.loom.decompilers.ClassLineNumbers;
 // Serialised data for a class entry in the cache
 // Uses the RIFF format, allows for appending the line numbers to the end of the file
 // Stores the source code and line numbers for the class
+// Line numbers are written in a binary format
 public record CachedData(String className, String sources, @Nullable ClassLineNumbers.Entry lineNumbers) {
 	public static final CachedFileStore.EntrySerializer<CachedData> SERIALIZER = new EntrySerializer();
 
 	private static final String HEADER_ID = "LOOM";
 	private static final String NAME_ID = "NAME";
 	private static final String SOURCES_ID = "SRC ";
-	private static final String LINE_NUMBERS_ID = "LNUM";
+	private static final String LINE_NUMBERS_ID = "LINE";
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(CachedData.class);
 
@@ -97,32 +94,56 @@ public record CachedData(String className, String sources, @Nullable ClassLineNu
 	private void writeLineNumbers(FileChannel fileChannel) throws IOException {
 		Objects.requireNonNull(lineNumbers);
 
-		try (var c = new RiffChunk(LINE_NUMBERS_ID, fileChannel);
-				StringWriter stringWriter = new StringWriter()) {
-			lineNumbers.write(stringWriter);
-			fileChannel.write(ByteBuffer.wrap(stringWriter.toString().getBytes(StandardCharsets.UTF_8)));
+		try (var c = new RiffChunk(LINE_NUMBERS_ID, fileChannel)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(lineNumbers.binarySize());
+			lineNumbers.writeBinary(buffer);
+			fileChannel.write(buffer.flip());
 		}
 	}
 
 	public static CachedData read(InputStream inputStream) throws IOException {
+		return read(ByteBuffer.wrap(inputStream.readAllBytes()));
+	}
+
+	public static CachedData read(ByteBuffer buffer) throws IOException {
+		try {
+			return readChunks(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of cached data", e);
+		}
+	}
+
+	private static CachedData readChunks(ByteBuffer buffer) throws IOException {
 		// Read and validate the RIFF header
-		final String header = readHeader(inputStream);
+		final String header = readHeader(buffer);
 
 		if (!header.equals(HEADER_ID)) {
 			throw new IOException("Invalid RIFF header: " + header + ", expected " + HEADER_ID);
 		}
 
 		// Read the data length
-		int length = readInt(inputStream);
+		int length = buffer.getInt();
+
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid RIFF data length: " + length);
+		}
+
+		final ByteBuffer data = buffer.slice(buffer.position(), length);
 
 		String className = null;
 		String sources = null;
-		ClassLineNumbers.Entry lineNumbers = null;
+		ByteBuffer lineNumbersData = null;
+
+		while (data.hasRemaining()) {
+			String chunkHeader = readHeader(data);
+			int chunkLength = data.getInt();
 
-		while (inputStream.available() > 0) {
-			String chunkHeader = readHeader(inputStream);
-			int chunkLength = readInt(inputStream);
-			byte[] chunkData = readBytes(inputStream, chunkLength);
+			if (chunkLength < 0 || chunkLength > data.remaining()) {
+				throw new IOException("Invalid chunk length: " + chunkLength + " for chunk " + chunkHeader);
+			}
+
+			final ByteBuffer chunkData = data.slice(data.position(), chunkLength);
+			data.position(data.position() + chunkLength);
 
 			switch (chunkHeader) {
 			case NAME_ID -> {
@@ -130,34 +151,26 @@ public record CachedData(String className, String sources, @Nullable ClassLineNu
 					throw new IOException("Duplicate name chunk");
 				}
 
-				className = new String(chunkData, StandardCharsets.UTF_8);
+				className = readString(chunkData);
 			}
 			case SOURCES_ID -> {
 				if (sources != null) {
 					throw new IOException("Duplicate sources chunk");
 				}
 
-				sources = new String(chunkData, StandardCharsets.UTF_8);
+				sources = readString(chunkData);
 			}
 			case LINE_NUMBERS_ID -> {
-				if (lineNumbers != null) {
+				if (lineNumbersData != null) {
 					throw new IOException("Duplicate line numbers chunk");
 				}
 
-				try (var br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(chunkData), StandardCharsets.UTF_8))) {
-					ClassLineNumbers classLineNumbers = ClassLineNumbers.readMappings(br);
-
-					if (classLineNumbers.lineMap().size() != 1) {
-						throw new IOException("Expected exactly one class line numbers entry got " + classLineNumbers.lineMap().size() + " entries");
-					}
-
-					lineNumbers = classLineNumbers.lineMap().values().iterator().next();
-				}
+				// Read once the class name is known
+				lineNumbersData = chunkData;
 			}
 			default -> {
 				// Skip unknown chunk
 				LOGGER.warn("Skipping unknown chunk: {} of size {}", chunkHeader, chunkLength);
-				inputStream.skip(chunkLength);
 			}
 			}
 		}
@@ -166,37 +179,40 @@ public record CachedData(String className, String sources, @Nullable ClassLineNu
 			throw new IOException("Missing sources");
 		}
 
+		ClassLineNumbers.Entry lineNumbers = null;
+
+		if (lineNumbersData != null) {
+			if (className == null) {
+				throw new IOException("Missing name for line numbers");
+			}
+
+			lineNumbers = ClassLineNumbers.Entry.readBinary(className, lineNumbersData);
+		}
+
 		return new CachedData(className, sources, lineNumbers);
 	}
 
-	private static String readHeader(InputStream inputStream) throws IOException {
-		byte[] header = readBytes(inputStream, 4);
+	private static String readHeader(ByteBuffer buffer) {
+		byte[] header = new byte[4];
+		buffer.get(header);
 		return new String(header, StandardCharsets.US_ASCII);
 	}
 
-	private static int readInt(InputStream inputStream) throws IOException {
-		byte[] bytes = readBytes(inputStream, 4);
-		return ByteBuffer.wrap(bytes).getInt();
-	}
-
-	private static byte[] readBytes(InputStream inputStream, int length) throws IOException {
-		byte[] bytes = new byte[length];
-
-		int read = inputStream.read(bytes);
-
-		if (read != length) {
-			throw new IOException("Failed to read bytes expected " + length + " bytes but got " + read + " bytes");
+	private static String readString(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			// Avoid copying the bytes when backed by an array
+			return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
 		}
 
-		return bytes;
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
 	}
 
 	static class EntrySerializer implements CachedFileStore.EntrySerializer<CachedData> {
 		@Override
 		public CachedData read(Path path) throws IOException {
-			try (var inputStream = new BufferedInputStream(Files.newInputStream(path))) {
-				return CachedData.read(inputStream);
-			}
+			return CachedData.read(ByteBuffer.wrap(Files.readAllBytes(path)));
 		}
 
 		@Override
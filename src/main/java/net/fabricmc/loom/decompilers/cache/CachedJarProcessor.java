@@ -25,13 +25,23 @@
 package net.fabricmc.loom.decompilers.cache;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 import org.jetbrains.annotations.Nullable;
@@ -39,7 +49,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.decompilers.ClassLineNumbers;
+import net.fabricmc.loom.util.CompletableFutureCollector;
 import net.fabricmc.loom.util.FileSystemUtil;
+import net.fabricmc.loom.util.SharedExecutors;
 
 public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String baseHash) {
 	private static final Logger LOGGER = LoggerFactory.getLogger(CachedJarProcessor.class);
@@ -48,38 +60,40 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 		boolean isIncomplete = false;
 		boolean hasSomeExisting = false;
 
-		Path incompleteJar = Files.createTempFile("loom-cache-incomplete", ".jar");
-		Path existingClassesJar = Files.createTempFile("loom-cache-existingClasses", ".jar");
 		Path existingSourcesJar = Files.createTempFile("loom-cache-existingSources", ".jar");
 
-		// We must delete the empty files, so they can be created as a zip
-		Files.delete(incompleteJar);
-		Files.delete(existingClassesJar);
+		// We must delete the empty file, so it can be created as a zip
 		Files.delete(existingSourcesJar);
 
 		// Sources name -> hash
 		Map<String, String> outputNameMap = new HashMap<>();
 		Map<String, ClassLineNumbers.Entry> lineNumbersMap = new HashMap<>();
+		// The internal names of the classes to be processed, the input jar is not split
+		Set<String> incompleteClasses = new HashSet<>();
 
 		int hits = 0;
 		int misses = 0;
+		Duration hashDuration;
 
 		try (FileSystemUtil.Delegate inputFs = FileSystemUtil.getJarFileSystem(inputJar, false);
-				FileSystemUtil.Delegate incompleteFs = FileSystemUtil.getJarFileSystem(incompleteJar, true);
-				FileSystemUtil.Delegate existingSourcesFs = FileSystemUtil.getJarFileSystem(existingSourcesJar, true);
-				FileSystemUtil.Delegate existingClassesFs = FileSystemUtil.getJarFileSystem(existingClassesJar, true)) {
+				FileSystemUtil.Delegate existingSourcesFs = FileSystemUtil.getJarFileSystem(existingSourcesJar, true)) {
 			final List<ClassEntry> inputClasses = JarWalker.findClasses(inputFs);
-			final Map<String, String> rawEntryHashes = getEntryHashes(inputClasses, inputFs.getRoot());
 
-			for (ClassEntry entry : inputClasses) {
+			final long hashStart = System.nanoTime();
+			final List<String> entryHashes = getHierarchyHashes(inputClasses, inputFs.getRoot());
+			hashDuration = Duration.ofNanos(System.nanoTime() - hashStart);
+			LOGGER.info("Hashed {} classes in {}ms", inputClasses.size(), hashDuration.toMillis());
+
+			for (int i = 0; i < inputClasses.size(); i++) {
+				final ClassEntry entry = inputClasses.get(i);
 				String outputFileName = entry.sourcesFileName();
-				String fullHash = baseHash + "/" + entry.hashSuperHierarchy(rawEntryHashes);
+				String fullHash = baseHash + "/" + entryHashes.get(i);
 
 				final CachedData entryData = fileStore.getEntry(fullHash);
 
 				if (entryData == null) {
-					// Cached entry was not found, so copy the input to the incomplete jar to be processed
-					entry.copyTo(inputFs.getRoot(), incompleteFs.getRoot());
+					// Cached entry was not found, so the class and its inner classes are to be processed
+					incompleteClasses.addAll(entry.classNames());
 					isIncomplete = true;
 					outputNameMap.put(outputFileName, fullHash);
 
@@ -90,8 +104,6 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 					createParentDirectories(outputPath);
 					Files.writeString(outputPath, entryData.sources());
 
-					entry.copyTo(inputFs.getRoot(), existingClassesFs.getRoot());
-
 					if (entryData.lineNumbers() != null) {
 						lineNumbersMap.put(entryData.className(), entryData.lineNumbers());
 					} else {
@@ -111,12 +123,10 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 		Files.delete(outputJar);
 
 		final ClassLineNumbers lineNumbers = lineNumbersMap.isEmpty() ? null : new ClassLineNumbers(Collections.unmodifiableMap(lineNumbersMap));
-		final var stats = new CacheStats(hits, misses);
+		final var stats = new CacheStats(hits, misses, hashDuration);
 
 		if (isIncomplete && !hasSomeExisting) {
 			// The cache contained nothing of use, fully process the input jar
-			Files.delete(incompleteJar);
-			Files.delete(existingClassesJar);
 			Files.delete(existingSourcesJar);
 
 			LOGGER.info("No cached entries found, going to process the whole jar");
@@ -125,127 +135,204 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 		} else if (isIncomplete) {
 			// The cache did not contain everything so we have some work to do
 			LOGGER.info("Some cached entries found, using partial work job");
-			return new PartialWorkJob(incompleteJar, existingSourcesJar, existingClassesJar, outputJar, outputNameMap)
+			return new PartialWorkJob(inputJar, Collections.unmodifiableSet(incompleteClasses), existingSourcesJar, outputJar, outputNameMap)
 					.asRequest(stats, lineNumbers);
 		} else {
 			// The cached contained everything we need, so the existing jar is the output
 			LOGGER.info("All cached entries found, using completed work job");
-			Files.delete(incompleteJar);
-			Files.delete(existingClassesJar);
 			return new CompletedWorkJob(existingSourcesJar)
 					.asRequest(stats, lineNumbers);
 		}
 	}
 
-	private static Map<String, String> getEntryHashes(List<ClassEntry> entries, Path root) throws IOException {
-		final Map<String, String> rawEntryHashes = new HashMap<>();
+	/**
+	 * Hash all the entries, the returned list matches the order of the entries.
+	 *
+	 * <p>The raw hash of each class file is computed exactly once, the hierarchy hash of an entry is computed as soon as
+	 * the raw hashes of the entry and its direct parents are available.
+	 */
+	private static List<String> getHierarchyHashes(List<ClassEntry> entries, Path root) throws IOException {
+		final Executor executor = SharedExecutors.cpu();
+
+		// Class file name -> raw hash of the outer class and its inner classes
+		final Map<String, CompletableFuture<String>> rawEntryHashes = new HashMap<>();
 
 		for (ClassEntry entry : entries) {
-			String hash = entry.hash(root);
-			rawEntryHashes.put(entry.name(), hash);
+			final CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+				try {
+					return entry.hash(root);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to hash " + entry.name(), e);
+				}
+			}, executor);
+
+			rawEntryHashes.put(entry.name(), future);
 
 			for (String s : entry.innerClasses()) {
-				rawEntryHashes.put(s, hash);
+				rawEntryHashes.put(s, future);
+			}
+		}
+
+		final List<CompletableFuture<String>> hierarchyHashes = new ArrayList<>(entries.size());
+
+		for (ClassEntry entry : entries) {
+			final List<CompletableFuture<String>> dependencies = new ArrayList<>();
+			dependencies.add(rawEntryHashes.get(entry.name()));
+
+			for (String superClass : entry.superClasses()) {
+				final CompletableFuture<String> superHash = rawEntryHashes.get(superClass + ".class");
+
+				if (superHash != null) {
+					dependencies.add(superHash);
+				}
 			}
+
+			hierarchyHashes.add(CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new)).thenApplyAsync(v -> {
+				try {
+					return entry.hashSuperHierarchy(name -> {
+						final CompletableFuture<String> hash = rawEntryHashes.get(name);
+						return hash != null ? hash.join() : null;
+					});
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to hash " + entry.name(), e);
+				}
+			}, executor));
 		}
 
-		return Collections.unmodifiableMap(rawEntryHashes);
+		try {
+			return hierarchyHashes.stream()
+					.collect(CompletableFutureCollector.allOf())
+					.get(10, TimeUnit.MINUTES);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			}
+
+			throw new RuntimeException("Failed to hash class entries", e.getCause());
+		} catch (InterruptedException | TimeoutException e) {
+			throw new RuntimeException("Failed to hash class entries", e);
+		}
 	}
 
 	public void completeJob(Path output, WorkJob workJob, ClassLineNumbers lineNumbers) throws IOException {
+		completeJob(output, workJob, lineNumbers, false);
+	}
+
+	/**
+	 * @param streamed True when the decompiler has written the processed entries to the cache and, after the existing
+	 *                 sources, straight to the output while decompiling, see {@link CachingClassConsumer}.
+	 *                 Only the temporary jars are then deleted.
+	 */
+	public void completeJob(Path output, WorkJob workJob, @Nullable ClassLineNumbers lineNumbers, boolean streamed) throws IOException {
 		if (workJob instanceof CompletedWorkJob completedWorkJob) {
 			// Fully complete, nothing new to cache
 			Files.move(completedWorkJob.completed(), output);
 			return;
 		}
 
+		if (!(workJob instanceof WorkToDoJob workToDoJob)) {
+			throw new IllegalStateException();
+		}
+
+		if (streamed) {
+			if (workJob instanceof PartialWorkJob partialWorkJob) {
+				Files.delete(partialWorkJob.existingSources());
+			}
+
+			return;
+		}
+
 		// Work has been done, we need to cache the newly processed items
-		if (workJob instanceof WorkToDoJob workToDoJob) {
-			// Sources name -> hash
-			Map<String, String> outputNameMap = workToDoJob.outputNameMap();
+		cacheOutput(workToDoJob, lineNumbers);
 
-			try (FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(workToDoJob.output(), false);
+		if (workJob instanceof PartialWorkJob partialWorkJob) {
+			// Copy the newly processed items into the existing sources jar, as there are usually far fewer of them
+			try (FileSystemUtil.Delegate existingFs = FileSystemUtil.getJarFileSystem(partialWorkJob.existingSources(), false);
+					FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(partialWorkJob.output(), false);
 					Stream<Path> walk = Files.walk(outputFs.getRoot())) {
 				Iterator<Path> iterator = walk.iterator();
 
 				while (iterator.hasNext()) {
-					final Path fsPath = iterator.next();
+					Path outputPath = iterator.next();
 
-					if (fsPath.startsWith("/META-INF/")) {
+					if (!Files.isRegularFile(outputPath)) {
 						continue;
 					}
 
-					if (!Files.isRegularFile(fsPath)) {
-						continue;
-					}
-
-					final String hash = outputNameMap.get(fsPath.toString().substring(outputFs.getRoot().toString().length()));
+					final Path existingPath = existingFs.getRoot().resolve(outputPath.toString());
 
-					if (hash == null) {
-						throw new IllegalStateException("Unexpected output: " + fsPath);
-					}
+					LOGGER.debug("Copying processed entry to output: {}", outputPath);
+					createParentDirectories(existingPath);
+					Files.copy(outputPath, existingPath);
+				}
+			}
 
-					// Trim the leading / and the .java extension
-					final String className = fsPath.toString().substring(1, fsPath.toString().length() - ".java".length());
-					final String sources = Files.readString(fsPath);
+			Files.delete(partialWorkJob.output());
+			Files.move(partialWorkJob.existingSources(), output);
+		} else if (workJob instanceof FullWorkJob fullWorkJob) {
+			// Nothing to merge, just use the output jar
+			Files.move(fullWorkJob.output, output);
+		} else {
+			throw new IllegalStateException();
+		}
+	}
 
-					ClassLineNumbers.Entry lineMapEntry = null;
+	private void cacheOutput(WorkToDoJob workToDoJob, @Nullable ClassLineNumbers lineNumbers) throws IOException {
+		// Sources name -> hash
+		Map<String, String> outputNameMap = workToDoJob.outputNameMap();
 
-					if (lineNumbers != null) {
-						lineMapEntry = lineNumbers.lineMap().get(className);
-					}
+		try (FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(workToDoJob.output(), false);
+				Stream<Path> walk = Files.walk(outputFs.getRoot())) {
+			Iterator<Path> iterator = walk.iterator();
 
-					if (lineMapEntry == null) {
-						LOGGER.info("No line numbers generated for class: {}", className);
-					}
+			while (iterator.hasNext()) {
+				final Path fsPath = iterator.next();
 
-					final var cachedData = new CachedData(className, sources, lineMapEntry);
-					fileStore.putEntry(hash, cachedData);
+				if (fsPath.startsWith("/META-INF/")) {
+					continue;
+				}
 
-					LOGGER.debug("Saving processed entry ({}) to cache: {}", hash, fsPath);
+				if (!Files.isRegularFile(fsPath)) {
+					continue;
 				}
-			}
-		} else {
-			throw new IllegalStateException();
-		}
 
-		if (workJob instanceof PartialWorkJob partialWorkJob) {
-			// Copy all the existing items to the output jar
-			try (FileSystemUtil.Delegate outputFs = FileSystemUtil.getJarFileSystem(partialWorkJob.output(), false);
-					FileSystemUtil.Delegate existingFs = FileSystemUtil.getJarFileSystem(partialWorkJob.existingSources(), false);
-					Stream<Path> walk = Files.walk(existingFs.getRoot())) {
-				Iterator<Path> iterator = walk.iterator();
+				final String hash = outputNameMap.get(fsPath.toString().substring(outputFs.getRoot().toString().length()));
 
-				while (iterator.hasNext()) {
-					Path existingPath = iterator.next();
+				if (hash == null) {
+					throw new IllegalStateException("Unexpected output: " + fsPath);
+				}
 
-					if (!Files.isRegularFile(existingPath)) {
-						continue;
-					}
+				// Trim the leading / and the .java extension
+				final String className = fsPath.toString().substring(1, fsPath.toString().length() - ".java".length());
+				final String sources = Files.readString(fsPath);
 
-					final Path outputPath = outputFs.getRoot().resolve(existingPath.toString());
+				ClassLineNumbers.Entry lineMapEntry = null;
 
-					LOGGER.debug("Copying existing entry to output: {}", existingPath);
-					createParentDirectories(outputPath);
-					Files.copy(existingPath, outputPath);
+				if (lineNumbers != null) {
+					lineMapEntry = lineNumbers.lineMap().get(className);
 				}
-			}
 
-			Files.delete(partialWorkJob.existingSources());
-			Files.delete(partialWorkJob.existingClasses());
-			Files.move(partialWorkJob.output(), output);
-		} else if (workJob instanceof FullWorkJob fullWorkJob) {
-			// Nothing to merge, just use the output jar
-			Files.move(fullWorkJob.output, output);
-		} else {
-			throw new IllegalStateException();
+				if (lineMapEntry == null) {
+					LOGGER.info("No line numbers generated for class: {}", className);
+				}
+
+				final var cachedData = new CachedData(className, sources, lineMapEntry);
+				fileStore.putEntry(hash, cachedData);
+
+				LOGGER.debug("Saving processed entry ({}) to cache: {}", hash, fsPath);
+			}
 		}
 	}
 
 	public record WorkRequest(WorkJob job, CacheStats stats, @Nullable ClassLineNumbers lineNumbers) {
 	}
 
-	public record CacheStats(int hits, int misses) {
+	/**
+	 * @param hits The number of classes restored from the cache
+	 * @param misses The number of classes that need to be processed
+	 * @param hashDuration The time taken to hash the input classes
+	 */
+	public record CacheStats(int hits, int misses, Duration hashDuration) {
 	}
 
 	public sealed interface WorkJob permits CompletedWorkJob, WorkToDoJob {
@@ -256,9 +343,16 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 
 	public sealed interface WorkToDoJob extends WorkJob permits PartialWorkJob, FullWorkJob {
 		/**
-		 * A path to jar file containing all the classes to be processed.
+		 * A path to the input jar, containing the classes to be processed.
 		 */
-		Path incomplete();
+		Path input();
+
+		/**
+		 * @return The internal names of the classes of the input jar to be processed, including the inner classes.
+		 * Null when every class is to be processed.
+		 */
+		@Nullable
+		Set<String> classes();
 
 		/**
 		 * @return A jar file to be written to during processing
@@ -282,23 +376,28 @@ public record CachedJarProcessor(CachedFileStore<CachedData> fileStore, String b
 	/**
 	 * Some work needs to be done.
 	 *
-	 * @param incomplete A path to jar file containing all the classes to be processed
+	 * @param input A path to the input jar, the classes that have not been processed are read from it
+	 * @param classes The internal names of the classes to be processed, the other classes have previously been processed
 	 * @param existingSources A path pointing to a jar containing existing sources that have previously been processed
-	 * @param existingClasses A path pointing to a jar containing existing classes that have previously been processed
 	 * @param output A path to a temporary jar where work output should be written to
 	 * @param outputNameMap A map of sources name to hash
 	 */
-	public record PartialWorkJob(Path incomplete, Path existingSources, Path existingClasses, Path output, Map<String, String> outputNameMap) implements WorkToDoJob {
+	public record PartialWorkJob(Path input, Set<String> classes, Path existingSources, Path output, Map<String, String> outputNameMap) implements WorkToDoJob {
 	}
 
 	/**
 	 * The full jar must be processed.
 	 *
-	 * @param incomplete A path to jar file containing all the classes to be processed
+	 * @param input A path to jar file containing all the classes to be processed
 	 * @param output A path to a temporary jar where work output should be written to
 	 * @param outputNameMap A map of sources name to hash
 	 */
-	public record FullWorkJob(Path incomplete, Path output, Map<String, String> outputNameMap) implements WorkToDoJob {
+	public record FullWorkJob(Path input, Path output, Map<String, String> outputNameMap) implements WorkToDoJob {
+		@Override
+		@Nullable
+		public Set<String> classes() {
+			return null;
+		}
 	}
 
 	private static void createParentDirectories(Path path) throws IOException {
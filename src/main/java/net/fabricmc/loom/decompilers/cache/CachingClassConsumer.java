@@ -0,0 +1,111 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.api.decompilers.DecompiledClassConsumer;
+import net.fabricmc.loom.decompilers.ClassLineNumbers;
+
+/**
+ * Stores each decompiled class in the cache as soon as the decompiler has produced it.
+ * This avoids reading the output jar back in {@link CachedJarProcessor#completeJob}.
+ *
+ * @param fileStore The cache to write the entries to
+ * @param outputNameMap A map of sources name to hash, see {@link CachedJarProcessor.WorkToDoJob#outputNameMap()}
+ */
+public record CachingClassConsumer(CachedFileStore<CachedData> fileStore, Map<String, String> outputNameMap) implements DecompiledClassConsumer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingClassConsumer.class);
+
+	@Override
+	public void accept(String className, String sources, int @Nullable [] lineMapping) throws IOException {
+		final String hash = outputNameMap.get(className + ".java");
+
+		if (hash == null) {
+			throw new IllegalStateException("Unexpected output: " + className);
+		}
+
+		ClassLineNumbers.Entry lineMapEntry = null;
+
+		if (lineMapping != null) {
+			lineMapEntry = ClassLineNumbers.Entry.fromMapping(className, lineMapping);
+		} else {
+			LOGGER.info("No line numbers generated for class: {}", className);
+		}
+
+		fileStore.putEntry(hash, new CachedData(className, sources, lineMapEntry));
+		LOGGER.debug("Saving processed entry ({}) to cache: {}", hash, className);
+	}
+
+	/**
+	 * Write the output name map to a file, so it can be passed to the decompile worker.
+	 */
+	public static void writeOutputNameMap(Map<String, String> outputNameMap, Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, String> entry : outputNameMap.entrySet()) {
+				writer.write(entry.getKey());
+				writer.write('\t');
+				writer.write(entry.getValue());
+				writer.write('\n');
+			}
+		}
+	}
+
+	public static Map<String, String> readOutputNameMap(Path path) throws IOException {
+		final Map<String, String> outputNameMap = new HashMap<>();
+
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				final int separator = line.indexOf('\t');
+
+				if (separator < 0) {
+					throw new IOException("Invalid output name map line: " + line);
+				}
+
+				outputNameMap.put(line.substring(0, separator), line.substring(separator + 1));
+			}
+		}
+
+		return Collections.unmodifiableMap(outputNameMap);
+	}
+}
@@ -27,11 +27,16 @@ package net.fabricmc.loom.decompilers.cache;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.function.Function;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,23 +50,6 @@ import net.fabricmc.loom.util.Checksum;
 public record ClassEntry(String name, List<String> innerClasses, List<String> superClasses) {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ClassEntry.class);
 
-	/**
-	 * Copy the class and its inner classes to the target root.
-	 * @param sourceRoot The root of the source jar
-	 * @param targetRoot The root of the target jar
-	 *
-	 * @throws IOException If an error occurs while copying the files
-	 */
-	public void copyTo(Path sourceRoot, Path targetRoot) throws IOException {
-		Path targetPath = targetRoot.resolve(name);
-		Files.createDirectories(targetPath.getParent());
-		Files.copy(sourceRoot.resolve(name), targetPath);
-
-		for (String innerClass : innerClasses) {
-			Files.copy(sourceRoot.resolve(innerClass), targetRoot.resolve(innerClass));
-		}
-	}
-
 	/**
 	 * Hash the class and its inner classes using sha256.
 	 * @param root The root of the jar
@@ -72,20 +60,34 @@ public record ClassEntry(String name, List<String> innerClasses, List<String> su
 	public String hash(Path root) throws IOException {
 		StringJoiner joiner = new StringJoiner(",");
 
-		joiner.add(Checksum.sha256Hex(Files.readAllBytes(root.resolve(name))));
+		joiner.add(hashFile(root.resolve(name)));
 
 		for (String innerClass : innerClasses) {
-			joiner.add(Checksum.sha256Hex(Files.readAllBytes(root.resolve(innerClass))));
+			joiner.add(hashFile(root.resolve(innerClass)));
 		}
 
 		return Checksum.sha256Hex(joiner.toString().getBytes());
 	}
 
+	// Streams the file into the digest, without going through FileHashCache as the file is usually inside a zip file system
+	private static String hashFile(Path path) throws IOException {
+		return MoreFiles.asByteSource(path).hash(Hashing.sha256()).toString();
+	}
+
 	/**
 	 * Return a hash of the class and its super classes.
 	 */
 	public String hashSuperHierarchy(Map<String, String> hashes) throws IOException {
-		final String selfHash = Objects.requireNonNull(hashes.get(name), "Hash for own class not found");
+		return hashSuperHierarchy(hashes::get);
+	}
+
+	/**
+	 * Return a hash of the class and its super classes.
+	 *
+	 * @param hashes A function returning the hash of the given class file name, or null when it is not part of the jar
+	 */
+	public String hashSuperHierarchy(Function<String, @Nullable String> hashes) throws IOException {
+		final String selfHash = Objects.requireNonNull(hashes.apply(name), "Hash for own class not found");
 
 		if (superClasses.isEmpty()) {
 			return selfHash;
@@ -95,7 +97,7 @@ public record ClassEntry(String name, List<String> innerClasses, List<String> su
 		joiner.add(selfHash);
 
 		for (String superClass : superClasses) {
-			final String superHash = hashes.get(superClass + ".class");
+			final String superHash = hashes.apply(superClass + ".class");
 
 			if (superHash != null) {
 				joiner.add(superHash);
@@ -108,6 +110,24 @@ public record ClassEntry(String name, List<String> innerClasses, List<String> su
 		return Checksum.sha256Hex(joiner.toString().getBytes());
 	}
 
+	/**
+	 * @return The internal names of the class and its inner classes
+	 */
+	public List<String> classNames() {
+		final List<String> classNames = new ArrayList<>(innerClasses.size() + 1);
+		classNames.add(toClassName(name));
+
+		for (String innerClass : innerClasses) {
+			classNames.add(toClassName(innerClass));
+		}
+
+		return classNames;
+	}
+
+	private static String toClassName(String fileName) {
+		return fileName.substring(0, fileName.length() - ".class".length());
+	}
+
 	public String sourcesFileName() {
 		return name.replace(".class", ".java");
 	}
@@ -0,0 +1,353 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.decompilers.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link CachedFileStore} backed by a plain directory, split into a fixed number of shards.
+ *
+ * <p>Each entry is stored as its own file below {@code <root>/<shard>/<key>}, so a lookup is a single path resolve
+ * and no shared index needs to be rewritten. Entries are written to a temporary file in the shard and then
+ * atomically moved into place, so readers never observe a partially written entry and do not need to take a lock.
+ *
+ * <p>Publishing and pruning take a per-shard lock, consisting of an in-process lock and a {@link FileLock} on the
+ * shard's lock file. This allows multiple Gradle daemons to share the same cache directory safely.
+ *
+ * <p>Entry usage is tracked in a {@link CacheAccessIndex} stored in the root, guarded by the root's lock file.
+ */
+public final class ShardedCachedFileStore<T> implements CachedFileStore<T> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardedCachedFileStore.class);
+
+	static final int SHARD_COUNT = 256;
+	static final String LOCK_FILE_NAME = ".lock";
+	private static final String TEMP_FILE_PREFIX = ".tmp-";
+	// Temp files older than this are assumed to be left behind by a crashed writer.
+	private static final Duration STALE_TEMP_FILE_AGE = Duration.ofHours(1);
+
+	// FileChannel.lock cannot be used to synchronise threads within the same JVM.
+	private static final Map<Path, ReentrantLock> IN_PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+	private final Path root;
+	private final EntrySerializer<T> entrySerializer;
+	private final CacheRules cacheRules;
+	private final boolean useFileLocks;
+	private final CacheAccessIndex accessIndex;
+
+	public ShardedCachedFileStore(Path root, EntrySerializer<T> entrySerializer, CacheRules cacheRules) {
+		this.root = Objects.requireNonNull(root, "root");
+		this.entrySerializer = Objects.requireNonNull(entrySerializer, "entrySerializer");
+		this.cacheRules = Objects.requireNonNull(cacheRules, "cacheRules");
+		// File locks are only supported on the default file system
+		this.useFileLocks = root.getFileSystem() == FileSystems.getDefault();
+		this.accessIndex = new CacheAccessIndex(root.resolve(CacheAccessIndex.FILE_NAME));
+	}
+
+	@Override
+	public @Nullable T getEntry(String key) throws IOException {
+		final Path path = resolve(key);
+
+		if (Files.notExists(path)) {
+			return null;
+		}
+
+		try {
+			final T entry = entrySerializer.read(path);
+			// Recorded in the access index rather than touching the file, so reads do not write to the cache.
+			accessIndex.recordRead(key);
+			return entry;
+		} catch (NoSuchFileException e) {
+			// Pruned by another process between the exists check and the read
+			return null;
+		}
+	}
+
+	@Override
+	public void putEntry(String key, T data) throws IOException {
+		final Path shard = getShardDirectory(key);
+		final Path path = shard.resolve(key);
+		final Path tempPath = shard.resolve(TEMP_FILE_PREFIX + UUID.randomUUID());
+
+		Files.createDirectories(path.getParent());
+
+		try {
+			// Write outside of the lock, the temp file is unique to this writer.
+			entrySerializer.write(data, tempPath);
+
+			try (ShardLock lock = lockShard(shard)) {
+				publish(tempPath, path);
+			}
+
+			accessIndex.recordWrite(key);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	public Path root() {
+		return root;
+	}
+
+	public CacheRules cacheRules() {
+		return cacheRules;
+	}
+
+	Path resolve(String key) {
+		return getShardDirectory(key).resolve(key);
+	}
+
+	private Path getShardDirectory(String key) {
+		if (key.isEmpty() || key.startsWith("/") || key.startsWith(".")) {
+			throw new IllegalArgumentException("Invalid cache key: " + key);
+		}
+
+		return root.resolve(getShardName(key));
+	}
+
+	static String getShardName(String key) {
+		// Spread the bits of the hashcode, as the keys may share long common prefixes.
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		hash ^= hash >>> 8;
+		return String.format(Locale.ROOT, "%02x", hash & (SHARD_COUNT - 1));
+	}
+
+	private static void publish(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Remove the least recently used entries until the cache meets its {@link CacheRules}.
+	 */
+	public void prune() throws IOException {
+		if (Files.notExists(root)) {
+			return;
+		}
+
+		final Instant now = Instant.now();
+
+		// The root lock guards the index, the shard locks are taken while holding it, never the other way round.
+		try (ShardLock indexLock = lockShard(root)) {
+			final CacheAccessIndex.State state = loadIndex(now);
+			final Map<Path, List<CacheAccessIndex.Entry>> toRemove = new HashMap<>();
+
+			for (CacheAccessIndex.Entry entry : CacheAccessIndex.selectEvictions(state, cacheRules, now)) {
+				toRemove.computeIfAbsent(getShardDirectory(entry.key()), p -> new ArrayList<>()).add(entry);
+			}
+
+			int removed = 0;
+
+			for (Map.Entry<Path, List<CacheAccessIndex.Entry>> shardEntries : toRemove.entrySet()) {
+				try (ShardLock lock = lockShard(shardEntries.getKey())) {
+					for (CacheAccessIndex.Entry entry : shardEntries.getValue()) {
+						if (CacheAccessIndex.deleteIfUnchanged(state, entry, resolve(entry.key()))) {
+							removed++;
+						}
+					}
+				}
+			}
+
+			accessIndex.write(state);
+			LOGGER.debug("Pruned {} cache entries, {} remaining", removed, state.entries().size());
+		}
+	}
+
+	/**
+	 * Save the accesses made through this store to the index, without removing any entries.
+	 * This should be called when another process is responsible for pruning the cache.
+	 */
+	public void saveIndex() throws IOException {
+		final Instant now = Instant.now();
+
+		try (ShardLock indexLock = lockShard(root)) {
+			accessIndex.write(loadIndex(now));
+		}
+	}
+
+	private CacheAccessIndex.State loadIndex(Instant now) throws IOException {
+		final CacheAccessIndex.State state = accessIndex.load(this::resolve, now);
+
+		if (state != null) {
+			return state;
+		}
+
+		LOGGER.info("Rebuilding decompile cache index");
+		return accessIndex.rescan(scan(now), this::resolve, now);
+	}
+
+	private Map<String, Path> scan(Instant now) throws IOException {
+		final Instant staleTempAge = now.minus(STALE_TEMP_FILE_AGE);
+		final Map<String, Path> entries = new HashMap<>();
+		final List<Path> staleTempFiles = new ArrayList<>();
+
+		try (Stream<Path> walk = Files.walk(root)) {
+			Iterator<Path> iterator = walk.iterator();
+
+			while (iterator.hasNext()) {
+				final Path path = iterator.next();
+
+				// Entries are always within a shard, the files directly in the root belong to the index.
+				if (root.relativize(path).getNameCount() < 2 || !Files.isRegularFile(path)) {
+					continue;
+				}
+
+				final String fileName = path.getFileName().toString();
+
+				if (fileName.equals(LOCK_FILE_NAME)) {
+					continue;
+				}
+
+				if (fileName.startsWith(TEMP_FILE_PREFIX)) {
+					try {
+						if (Files.getLastModifiedTime(path).toInstant().isBefore(staleTempAge)) {
+							staleTempFiles.add(path);
+						}
+					} catch (NoSuchFileException ignored) {
+						// Published or removed by its writer
+					}
+
+					continue;
+				}
+
+				entries.put(CacheAccessIndex.toKey(getShardOf(path), path), path);
+			}
+		}
+
+		for (Path staleTempFile : staleTempFiles) {
+			Files.deleteIfExists(staleTempFile);
+		}
+
+		return entries;
+	}
+
+	private Path getShardOf(Path path) {
+		return root.resolve(root.relativize(path).getName(0).toString());
+	}
+
+	private ShardLock lockShard(Path shard) throws IOException {
+		final Path lockFile = shard.resolve(LOCK_FILE_NAME);
+		final ReentrantLock inProcessLock = IN_PROCESS_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), p -> new ReentrantLock());
+		inProcessLock.lock();
+
+		if (!useFileLocks) {
+			return new ShardLock(inProcessLock, null, null);
+		}
+
+		FileChannel channel = null;
+
+		try {
+			Files.createDirectories(shard);
+			channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			return new ShardLock(inProcessLock, channel, lock(channel));
+		} catch (IOException | RuntimeException e) {
+			if (channel != null) {
+				channel.close();
+			}
+
+			inProcessLock.unlock();
+			throw e;
+		}
+	}
+
+	private static FileLock lock(FileChannel channel) throws IOException {
+		while (true) {
+			try {
+				return channel.lock();
+			} catch (OverlappingFileLockException e) {
+				// Held by another class loader in this JVM, such as a Gradle worker using class loader isolation.
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for cache lock");
+				}
+			}
+		}
+	}
+
+	/**
+	 * The rules for the cache.
+	 *
+	 * @param maxFiles The maximum number of files in the cache
+	 * @param maxAge  The maximum time since a file in the cache was last used
+	 * @param maxSize The maximum total size of the files in the cache, in bytes
+	 */
+	public record CacheRules(long maxFiles, Duration maxAge, long maxSize) implements Serializable {
+		public CacheRules(long maxFiles, Duration maxAge) {
+			this(maxFiles, maxAge, Long.MAX_VALUE);
+		}
+	}
+
+	private record ShardLock(ReentrantLock inProcessLock, @Nullable FileChannel channel, @Nullable FileLock fileLock) implements Closeable {
+		@Override
+		public void close() throws IOException {
+			try {
+				if (fileLock != null) {
+					fileLock.release();
+				}
+
+				if (channel != null) {
+					channel.close();
+				}
+			} finally {
+				inProcessLock.unlock();
+			}
+		}
+	}
+}
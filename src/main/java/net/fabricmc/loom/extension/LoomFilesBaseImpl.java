@@ -106,7 +106,7 @@ public abstract class LoomFilesBaseImpl implements LoomFiles {
 
 	@Override
 	public File getDecompileCache(String version) {
-		return new File(getUserCache(), "decompile/" + version + ".zip");
+		return new File(getUserCache(), "decompile/" + version);
 	}
 
 	@Override
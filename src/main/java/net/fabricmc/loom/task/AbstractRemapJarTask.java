@@ -65,7 +65,7 @@ import net.fabricmc.loom.task.service.ClientEntriesService;
 import net.fabricmc.loom.task.service.JarManifestService;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.ZipReprocessorUtil;
-import net.fabricmc.loom.util.ZipUtils;
+import net.fabricmc.loom.util.ZipTransaction;
 import net.fabricmc.loom.util.gradle.SourceSetHelper;
 import net.fabricmc.loom.util.service.ScopedServiceFactory;
 
@@ -220,7 +220,14 @@ public abstract class AbstractRemapJarTask extends Jar {
 		}
 
 		protected void modifyJarManifest() throws IOException {
-			int count = ZipUtils.transform(outputFile, Map.of(Constants.Manifest.PATH, bytes -> {
+			try (ZipTransaction zip = ZipTransaction.open(outputFile)) {
+				modifyJarManifest(zip);
+				zip.commit();
+			}
+		}
+
+		protected void modifyJarManifest(ZipTransaction zip) {
+			boolean transformed = zip.transform(Constants.Manifest.PATH, bytes -> {
 				var manifest = new Manifest(new ByteArrayInputStream(bytes));
 
 				getParameters().getJarManifestService().get().apply(manifest, getParameters().getManifestAttributes().get());
@@ -229,9 +236,9 @@ public abstract class AbstractRemapJarTask extends Jar {
 				ByteArrayOutputStream out = new ByteArrayOutputStream();
 				manifest.write(out);
 				return out.toByteArray();
-			}));
+			});
 
-			Preconditions.checkState(count > 0, "Did not transform any jar manifest");
+			Preconditions.checkState(transformed, "Did not transform any jar manifest");
 		}
 
 		protected void rewriteJar() throws IOException {
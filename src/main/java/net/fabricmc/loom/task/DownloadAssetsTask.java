@@ -26,7 +26,13 @@ package net.fabricmc.loom.task;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -42,6 +48,7 @@ import net.fabricmc.loom.LoomGradlePlugin;
 import net.fabricmc.loom.configuration.ide.RunConfigSettings;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftVersionMeta;
 import net.fabricmc.loom.configuration.providers.minecraft.assets.AssetIndex;
+import net.fabricmc.loom.configuration.providers.minecraft.assets.AssetVerificationManifest;
 import net.fabricmc.loom.util.MirrorUtil;
 import net.fabricmc.loom.util.download.DownloadExecutor;
 import net.fabricmc.loom.util.download.DownloadFactory;
@@ -109,11 +116,30 @@ public abstract class DownloadAssetsTask extends AbstractLoomTask {
 
 	@TaskAction
 	public void downloadAssets() throws IOException {
-		final AssetIndex assetIndex = getAssetIndex();
+		final MinecraftVersionMeta.AssetIndex assetIndexMeta = LoomGradlePlugin.GSON.fromJson(getAssetsIndexJson().get(), MinecraftVersionMeta.AssetIndex.class);
+		final AssetIndex assetIndex = getAssetIndex(assetIndexMeta);
+		// The object store is shared by every project, the resources directory is not, so each has its own manifest.
+		final AssetVerificationManifest objectManifest = AssetVerificationManifest.read(getIndexPath(assetIndexMeta, ".verified"));
+		final AssetVerificationManifest resourcesManifest = usesResourcesDirectory(assetIndex) ? AssetVerificationManifest.read(getResourcesManifestPath()) : null;
+		final List<AssetIndex.Object> downloaded = new ArrayList<>();
+		final Set<String> downloadedHashes = new HashSet<>();
 
 		try (ProgressGroup progressGroup = new ProgressGroup("Download Assets", getProgressLoggerFactory());
 				DownloadExecutor executor = new DownloadExecutor(getDownloadThreads().get())) {
 			for (AssetIndex.Object object : assetIndex.getObjects()) {
+				final boolean objectVerified = objectManifest.isVerified(object.hash(), getObjectPath(object), object);
+
+				if (objectVerified && (resourcesManifest == null || resourcesManifest.isVerified(object.path(), getAssetsPath(object, assetIndex), object))) {
+					continue;
+				}
+
+				downloaded.add(object);
+
+				if (objectVerified || !downloadedHashes.add(object.hash())) {
+					// The object only needs copying into the resources directory, or is used by more than one asset.
+					continue;
+				}
+
 				final String sha1 = object.hash();
 				final String url = getResourcesBaseUrl().get() + sha1.substring(0, 2) + "/" + sha1;
 
@@ -121,28 +147,76 @@ public abstract class DownloadAssetsTask extends AbstractLoomTask {
 						.download(url)
 						.sha1(sha1)
 						.progress(new GradleDownloadProgressListener(object.name(), progressGroup::createProgressLogger))
-						.downloadPathAsync(getAssetsPath(object, assetIndex), executor);
+						.downloadPathAsync(getObjectPath(object), executor);
 			}
 		}
-	}
 
-	private AssetIndex getAssetIndex() throws IOException {
-		final MinecraftVersionMeta.AssetIndex assetIndex = LoomGradlePlugin.GSON.fromJson(getAssetsIndexJson().get(), MinecraftVersionMeta.AssetIndex.class);
-		final File indexFile = new File(getAssetsDirectory().get().getAsFile(), "indexes" + File.separator + assetIndex.fabricId(getMinecraftVersion().get()) + ".json");
+		for (AssetIndex.Object object : downloaded) {
+			objectManifest.markVerified(object.hash(), getObjectPath(object), object);
+
+			if (resourcesManifest != null) {
+				final Path path = getAssetsPath(object, assetIndex);
+				linkOrCopy(getObjectPath(object), path);
+				resourcesManifest.markVerified(object.path(), path, object);
+			}
+		}
+
+		objectManifest.write();
+
+		if (resourcesManifest != null) {
+			resourcesManifest.write();
+		}
+	}
 
+	private AssetIndex getAssetIndex(MinecraftVersionMeta.AssetIndex assetIndex) throws IOException {
 		final String json = getDownloadFactory().download(assetIndex.url())
 				.sha1(assetIndex.sha1())
-				.downloadString(indexFile.toPath());
+				.downloadString(getIndexPath(assetIndex, ".json"));
 
 		return LoomGradlePlugin.GSON.fromJson(json, AssetIndex.class);
 	}
 
+	private Path getIndexPath(MinecraftVersionMeta.AssetIndex assetIndex, String extension) {
+		return new File(getAssetsDirectory().get().getAsFile(), "indexes" + File.separator + assetIndex.fabricId(getMinecraftVersion().get()) + extension).toPath();
+	}
+
 	private Path getAssetsPath(AssetIndex.Object object, AssetIndex index) {
-		if (index.mapToResources() || index.virtual()) {
+		if (usesResourcesDirectory(index)) {
 			return new File(getLegacyResourcesDirectory().get().getAsFile(), object.path()).toPath();
 		}
 
+		return getObjectPath(object);
+	}
+
+	private static boolean usesResourcesDirectory(AssetIndex index) {
+		return index.mapToResources() || index.virtual();
+	}
+
+	/**
+	 * Stored next to the resources directory rather than in it, as the game reads every file in the directory.
+	 */
+	private Path getResourcesManifestPath() {
+		final File resourcesDirectory = getLegacyResourcesDirectory().get().getAsFile();
+		return new File(resourcesDirectory.getParentFile(), resourcesDirectory.getName() + ".verified").toPath();
+	}
+
+	/**
+	 * @return The path of the object in the shared object store, objects are stored by their hash
+	 */
+	private Path getObjectPath(AssetIndex.Object object) {
 		final String filename = "objects" + File.separator + object.hash().substring(0, 2) + File.separator + object.hash();
 		return new File(getAssetsDirectory().get().getAsFile(), filename).toPath();
 	}
+
+	private static void linkOrCopy(Path object, Path path) throws IOException {
+		Files.createDirectories(path.getParent());
+		Files.deleteIfExists(path);
+
+		try {
+			Files.createLink(path, object);
+		} catch (IOException | UnsupportedOperationException e) {
+			// Hard links are not supported across file systems, or at all on some.
+			Files.copy(object, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
 }
@@ -46,14 +46,19 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
@@ -68,8 +73,6 @@ import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
-import org.gradle.process.ExecOperations;
-import org.gradle.process.ExecResult;
 import org.gradle.work.DisableCachingByDefault;
 import org.gradle.workers.WorkAction;
 import org.gradle.workers.WorkParameters;
@@ -80,20 +83,29 @@ import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.loom.api.decompilers.DecompilationMetadata;
+import net.fabricmc.loom.api.decompilers.DecompiledClassConsumer;
 import net.fabricmc.loom.api.decompilers.DecompilerOptions;
 import net.fabricmc.loom.api.decompilers.LoomDecompiler;
 import net.fabricmc.loom.configuration.providers.minecraft.MinecraftJar;
 import net.fabricmc.loom.configuration.providers.minecraft.mapped.AbstractMappedMinecraftProvider;
 import net.fabricmc.loom.configuration.sources.ForgeSourcesRemapper;
 import net.fabricmc.loom.decompilers.ClassLineNumbers;
+import net.fabricmc.loom.decompilers.CompiledJarSplit;
+import net.fabricmc.loom.decompilers.DecompilerConfiguration;
+import net.fabricmc.loom.decompilers.LineNumberRemapState;
 import net.fabricmc.loom.decompilers.LineNumberRemapper;
+import net.fabricmc.loom.decompilers.SourcesJarWriter;
+import net.fabricmc.loom.decompilers.UnpickClassTransformer;
 import net.fabricmc.loom.decompilers.cache.CachedData;
-import net.fabricmc.loom.decompilers.cache.CachedFileStoreImpl;
 import net.fabricmc.loom.decompilers.cache.CachedJarProcessor;
+import net.fabricmc.loom.decompilers.cache.CachingClassConsumer;
+import net.fabricmc.loom.decompilers.cache.ShardedCachedFileStore;
 import net.fabricmc.loom.task.service.SourceMappingsService;
 import net.fabricmc.loom.util.Checksum;
 import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.DeletingFileVisitor;
 import net.fabricmc.loom.util.ExceptionUtil;
+import net.fabricmc.loom.util.FileHashCache;
 import net.fabricmc.loom.util.FileSystemUtil;
 import net.fabricmc.loom.util.IOStringConsumer;
 import net.fabricmc.loom.util.Platform;
@@ -102,6 +114,7 @@ import net.fabricmc.loom.util.gradle.SyncTaskBuildService;
 import net.fabricmc.loom.util.gradle.ThreadedProgressLoggerConsumer;
 import net.fabricmc.loom.util.gradle.ThreadedSimpleProgressLogger;
 import net.fabricmc.loom.util.gradle.WorkerDaemonClientsManagerHelper;
+import net.fabricmc.loom.util.gradle.WorkerHealth;
 import net.fabricmc.loom.util.gradle.daemon.DaemonUtils;
 import net.fabricmc.loom.util.ipc.IPCClient;
 import net.fabricmc.loom.util.ipc.IPCServer;
@@ -110,7 +123,8 @@ import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
 @DisableCachingByDefault
 public abstract class GenerateSourcesTask extends AbstractLoomTask {
-	private static final String CACHE_VERSION = "v1";
+	private static final String CACHE_VERSION = "v2";
+	private static final String PERSISTENT_WORKER_MARKER_PREFIX = "persistent-";
 	private final DecompilerOptions decompilerOptions;
 
 	/**
@@ -153,6 +167,10 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 	@ApiStatus.Internal
 	public abstract ConfigurableFileCollection getUnpickRuntimeClasspath();
 
+	/**
+	 * @deprecated No longer written, the classes are unpicked as they are read by the decompiler.
+	 */
+	@Deprecated
 	@OutputFile
 	@Optional
 	public abstract RegularFileProperty getUnpickOutputJar();
@@ -178,7 +196,7 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 	// Internal outputs
 	@ApiStatus.Internal
 	@Internal
-	protected abstract RegularFileProperty getDecompileCacheFile();
+	protected abstract DirectoryProperty getDecompileCacheDirectory();
 
 	@ApiStatus.Internal
 	@Input
@@ -188,13 +206,22 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 	@Input
 	protected abstract Property<Integer> getMaxCacheFileAge();
 
+	// In megabytes
+	@ApiStatus.Internal
+	@Input
+	protected abstract Property<Integer> getMaxCacheSize();
+
+	/**
+	 * When true the decompile worker JVM is kept alive after the task completes, so that later runs in the same Gradle daemon can reuse it.
+	 */
+	@ApiStatus.Experimental
+	@Internal
+	public abstract Property<Boolean> getUsePersistentWorker();
+
 	// Injects
 	@Inject
 	protected abstract WorkerExecutor getWorkerExecutor();
 
-	@Inject
-	protected abstract ExecOperations getExecOperations();
-
 	@Inject
 	protected abstract WorkerDaemonClientsManager getWorkerDaemonClientsManager();
 
@@ -246,7 +273,7 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		dependsOn(decompilerOptions.getClasspath().getBuiltBy());
 
 		getMinecraftCompileLibraries().from(getProject().getConfigurations().getByName(Constants.Configurations.MINECRAFT_COMPILE_LIBRARIES));
-		getDecompileCacheFile().set(getExtension().getFiles().getDecompileCache(CACHE_VERSION));
+		getDecompileCacheDirectory().set(getExtension().getFiles().getDecompileCache(CACHE_VERSION));
 		getUnpickRuntimeClasspath().from(getProject().getConfigurations().getByName(Constants.Configurations.UNPICK_CLASSPATH));
 		getUnpickLogConfig().set(getExtension().getFiles().getUnpickLoggingConfigFile());
 
@@ -257,6 +284,8 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 		getMaxCachedFiles().set(GradleUtils.getIntegerPropertyProvider(getProject(), Constants.Properties.DECOMPILE_CACHE_MAX_FILES).orElse(50_000));
 		getMaxCacheFileAge().set(GradleUtils.getIntegerPropertyProvider(getProject(), Constants.Properties.DECOMPILE_CACHE_MAX_AGE).orElse(90));
+		getMaxCacheSize().set(GradleUtils.getIntegerPropertyProvider(getProject(), Constants.Properties.DECOMPILE_CACHE_MAX_SIZE).orElse(2048));
+		getUsePersistentWorker().convention(GradleUtils.getBooleanPropertyProvider(getProject(), Constants.Properties.DECOMPILE_PERSISTENT_WORKER).orElse(false));
 
 		getDaemonUtilsContext().set(getProject().getObjects().newInstance(DaemonUtils.Context.class, getProject()));
 
@@ -287,28 +316,16 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		getLogger().info("Using decompile cache.");
 
 		try (var timer = new Timer("Decompiled sources with cache")) {
-			final Path cacheFile = getDecompileCacheFile().getAsFile().get().toPath();
+			final Path cacheDirectory = getDecompileCacheDirectory().getAsFile().get().toPath();
 
-			if (getResetCache().get()) {
+			if (getResetCache().get() && Files.exists(cacheDirectory)) {
 				getLogger().warn("Resetting decompile cache");
-				Files.deleteIfExists(cacheFile);
+				Files.walkFileTree(cacheDirectory, new DeletingFileVisitor());
 			}
 
-			// TODO ensure we have a lock on this file to prevent multiple tasks from running at the same time
-			Files.createDirectories(cacheFile.getParent());
-
-			if (Files.exists(cacheFile)) {
-				try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(cacheFile, true)) {
-					// Success, cache exists and can be read
-				} catch (IOException e) {
-					getLogger().warn("Discarding invalid decompile cache file: {}", cacheFile, e);
-					Files.delete(cacheFile);
-				}
-			}
-
-			try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(cacheFile, true)) {
-				runWithCache(fs.getRoot());
-			}
+			// The cache store handles locking itself, allowing multiple builds to share it.
+			Files.createDirectories(cacheDirectory);
+			runWithCache(cacheDirectory);
 		} catch (Exception e) {
 			ExceptionUtil.processException(e, getDaemonUtilsContext().get());
 			throw ExceptionUtil.createDescriptiveWrapper(RuntimeException::new, "Failed to decompile", e);
@@ -319,8 +336,8 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		final Path classesInputJar = getClassesInputJar().getSingleFile().toPath();
 		final Path sourcesOutputJar = getSourcesOutputJar().get().getAsFile().toPath();
 		final Path classesOutputJar = getClassesOutputJar().getSingleFile().toPath();
-		final var cacheRules = new CachedFileStoreImpl.CacheRules(getMaxCachedFiles().get(), Duration.ofDays(getMaxCacheFileAge().get()));
-		final var decompileCache = new CachedFileStoreImpl<>(cacheRoot, CachedData.SERIALIZER, cacheRules);
+		final var cacheRules = new ShardedCachedFileStore.CacheRules(getMaxCachedFiles().get(), Duration.ofDays(getMaxCacheFileAge().get()), getMaxCacheSize().get() * 1024L * 1024L);
+		final var decompileCache = new ShardedCachedFileStore<>(cacheRoot, CachedData.SERIALIZER, cacheRules);
 		final String cacheKey = getCacheKey();
 		final CachedJarProcessor cachedJarProcessor = new CachedJarProcessor(decompileCache, cacheKey);
 		final CachedJarProcessor.WorkRequest workRequest;
@@ -335,38 +352,48 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		final CachedJarProcessor.WorkJob job = workRequest.job();
 		final CachedJarProcessor.CacheStats cacheStats = workRequest.stats();
 
-		getLogger().lifecycle("Decompile cache stats: {} hits, {} misses", cacheStats.hits(), cacheStats.misses());
+		getLogger().lifecycle("Decompile cache stats: {} hits, {} misses, hashed in {}ms", cacheStats.hits(), cacheStats.misses(), cacheStats.hashDuration().toMillis());
 
+		// When supported the decompiler writes each class straight into the cache and the final sources jar,
+		// so no output jar is written and read back. Forge sources are patched after decompiling, so they must be cached from the output jar.
+		final boolean streamToCache = !getModPlatform().get().isForgeLike() && DecompilerConfiguration.supportsClassConsumer(decompilerOptions.getDecompilerClassName().get());
 		ClassLineNumbers outputLineNumbers = null;
 
+		// The final output sources jar
+		Files.deleteIfExists(sourcesOutputJar);
+
 		if (job instanceof CachedJarProcessor.WorkToDoJob workToDoJob) {
-			Path workInputJar = workToDoJob.incomplete();
-			@Nullable Path existingClasses = (job instanceof CachedJarProcessor.PartialWorkJob partialWorkJob) ? partialWorkJob.existingClasses() : null;
+			final Path workInputJar = workToDoJob.input();
+			@Nullable Path existingSources = (job instanceof CachedJarProcessor.PartialWorkJob partialWorkJob) ? partialWorkJob.existingSources() : null;
+			final Path decompileOutput = streamToCache ? sourcesOutputJar : workToDoJob.output();
 
-			if (getUnpickDefinitions().isPresent()) {
-				try (var timer = new Timer("Unpick")) {
-					workInputJar = unpickJar(workInputJar, existingClasses);
-				}
+			CacheTarget cacheTarget = null;
+
+			if (streamToCache) {
+				final Path cacheEntries = Files.createTempFile("loom-cache-entries", ".txt");
+				CachingClassConsumer.writeOutputNameMap(workToDoJob.outputNameMap(), cacheEntries);
+				cacheTarget = new CacheTarget(cacheRoot, cacheRules, cacheEntries, existingSources);
 			}
 
 			try (var timer = new Timer("Decompile")) {
-				outputLineNumbers = runDecompileJob(workInputJar, workToDoJob.output(), existingClasses);
-				removeForgeInnerClassSources(workToDoJob.output());
+				outputLineNumbers = runDecompileJob(workInputJar, decompileOutput, workToDoJob.classes(), cacheTarget);
+				removeForgeInnerClassSources(decompileOutput);
 				outputLineNumbers = filterForgeLineNumbers(outputLineNumbers);
+			} finally {
+				if (cacheTarget != null) {
+					Files.deleteIfExists(cacheTarget.entries());
+				}
 			}
 
-			if (Files.notExists(workToDoJob.output())) {
+			if (Files.notExists(decompileOutput)) {
 				throw new RuntimeException("Failed to decompile sources");
 			}
 		} else if (job instanceof CachedJarProcessor.CompletedWorkJob completedWorkJob) {
 			// Nothing to do :)
 		}
 
-		// The final output sources jar
-		Files.deleteIfExists(sourcesOutputJar);
-
 		try (var timer = new Timer("Complete job")) {
-			cachedJarProcessor.completeJob(sourcesOutputJar, job, outputLineNumbers);
+			cachedJarProcessor.completeJob(sourcesOutputJar, job, outputLineNumbers, streamToCache);
 		}
 
 		getLogger().info("Decompiled sources written to {}", sourcesOutputJar);
@@ -387,18 +414,10 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		final Path sourcesOutputJar = getSourcesOutputJar().get().getAsFile().toPath();
 		final Path classesOutputJar = getClassesOutputJar().getSingleFile().toPath();
 
-		Path workClassesJar = classesInputJar;
-
-		if (getUnpickDefinitions().isPresent()) {
-			try (var timer = new Timer("Unpick")) {
-				workClassesJar = unpickJar(workClassesJar, null);
-			}
-		}
-
 		ClassLineNumbers lineNumbers;
 
 		try (var timer = new Timer("Decompile")) {
-			lineNumbers = runDecompileJob(workClassesJar, sourcesOutputJar, null);
+			lineNumbers = runDecompileJob(classesInputJar, sourcesOutputJar, null, null);
 			removeForgeInnerClassSources(sourcesOutputJar);
 			lineNumbers = filterForgeLineNumbers(lineNumbers);
 		}
@@ -418,14 +437,15 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 			return;
 		}
 
-		final Path tempJar = Files.createTempFile("loom", "linenumber-remap.jar");
-		Files.delete(tempJar);
+		// The line numbers the output jar was last remapped with, so that only the changed classes need to be remapped.
+		final ClassLineNumbers previousLineNumbers = LineNumberRemapState.read(classesInputJar, classesOutputJar);
+		LineNumberRemapState.delete(classesOutputJar);
 
 		try (var timer = new Timer("Remap line numbers")) {
-			remapLineNumbers(lineNumbers, classesInputJar, tempJar);
+			remapLineNumbers(lineNumbers, classesInputJar, classesOutputJar, previousLineNumbers);
 		}
 
-		Files.move(tempJar, classesOutputJar, StandardCopyOption.REPLACE_EXISTING);
+		LineNumberRemapState.write(classesInputJar, classesOutputJar, lineNumbers);
 	}
 
 	private String getCacheKey() {
@@ -468,7 +488,7 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 	}
 
 	@Nullable
-	private ClassLineNumbers runDecompileJob(Path inputJar, Path outputJar, @Nullable Path existingJar) throws IOException {
+	private ClassLineNumbers runDecompileJob(Path inputJar, Path outputJar, @Nullable Set<String> classes, @Nullable CacheTarget cacheTarget) throws IOException {
 		final Platform platform = Platform.CURRENT;
 		final Path lineMapFile = File.createTempFile("loom", "linemap").toPath();
 		Files.delete(lineMapFile);
@@ -476,12 +496,12 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		if (!platform.supportsUnixDomainSockets()) {
 			getLogger().warn("Decompile worker logging disabled as Unix Domain Sockets is not supported on your operating system.");
 
-			doWork(null, inputJar, outputJar, lineMapFile, existingJar);
+			doWork(null, inputJar, outputJar, lineMapFile, classes, cacheTarget);
 
 			// Inject Forge's own sources
 			if (getModPlatform().get().isForgeLike()) {
 				try (var serviceFactory = new ScopedServiceFactory()) {
-					ForgeSourcesRemapper.addForgeSources(getProject(), serviceFactory, inputJar, outputJar);
+					ForgeSourcesRemapper.addForgeSources(getProject(), serviceFactory, inputJar, classes, outputJar);
 				}
 			}
 
@@ -494,7 +514,7 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 		try (ThreadedProgressLoggerConsumer loggerConsumer = new ThreadedProgressLoggerConsumer(getLogger(), getProgressLoggerFactory(), decompilerOptions.getName(), "Decompiling minecraft sources");
 				IPCServer logReceiver = new IPCServer(ipcPath, loggerConsumer)) {
-			doWork(logReceiver, inputJar, outputJar, lineMapFile, existingJar);
+			doWork(logReceiver, inputJar, outputJar, lineMapFile, classes, cacheTarget);
 		} catch (InterruptedException e) {
 			throw new RuntimeException("Failed to shutdown log receiver", e);
 		} finally {
@@ -504,7 +524,7 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		// Inject Forge's own sources
 		if (getModPlatform().get().isForgeLike()) {
 			try (var serviceFactory = new ScopedServiceFactory()) {
-				ForgeSourcesRemapper.addForgeSources(getProject(), serviceFactory, inputJar, outputJar);
+				ForgeSourcesRemapper.addForgeSources(getProject(), serviceFactory, inputJar, classes, outputJar);
 			}
 		}
 
@@ -566,43 +586,6 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		}
 	}
 
-	private Path unpickJar(Path inputJar, @Nullable Path existingClasses) {
-		final Path outputJar = getUnpickOutputJar().get().getAsFile().toPath();
-		final List<String> args = getUnpickArgs(inputJar, outputJar, existingClasses);
-
-		ExecResult result = getExecOperations().javaexec(spec -> {
-			spec.getMainClass().set("daomephsta.unpick.cli.Main");
-			spec.classpath(getUnpickRuntimeClasspath());
-			spec.args(args);
-			spec.systemProperty("java.util.logging.config.file", writeUnpickLogConfig().getAbsolutePath());
-		});
-
-		result.rethrowFailure();
-
-		return outputJar;
-	}
-
-	private List<String> getUnpickArgs(Path inputJar, Path outputJar, @Nullable Path existingClasses) {
-		var fileArgs = new ArrayList<File>();
-
-		fileArgs.add(inputJar.toFile());
-		fileArgs.add(outputJar.toFile());
-		fileArgs.add(getUnpickDefinitions().get().getAsFile());
-		fileArgs.add(getUnpickConstantJar().getSingleFile());
-
-		for (File file : getUnpickClasspath()) {
-			fileArgs.add(file);
-		}
-
-		if (existingClasses != null) {
-			fileArgs.add(existingClasses.toFile());
-		}
-
-		return fileArgs.stream()
-				.map(File::getAbsolutePath)
-				.toList();
-	}
-
 	private File writeUnpickLogConfig() {
 		final File unpickLoggingConfigFile = getUnpickLogConfig().getAsFile().get();
 
@@ -615,10 +598,23 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		return unpickLoggingConfigFile;
 	}
 
-	private void remapLineNumbers(ClassLineNumbers lineNumbers, Path inputJar, Path outputJar) throws IOException {
+	private void remapLineNumbers(ClassLineNumbers lineNumbers, Path inputJar, Path outputJar, @Nullable ClassLineNumbers previousLineNumbers) throws IOException {
 		Objects.requireNonNull(lineNumbers, "lineNumbers");
 		final var remapper = new LineNumberRemapper(lineNumbers);
-		remapper.process(inputJar, outputJar);
+
+		if (previousLineNumbers != null && remapper.processIncremental(inputJar, outputJar, previousLineNumbers)) {
+			getLogger().info("Remapped line numbers of the changed classes");
+		} else {
+			if (previousLineNumbers != null) {
+				getLogger().info("Most classes have new line numbers, remapping all line numbers");
+			}
+
+			final Path tempJar = Files.createTempFile("loom", "linenumber-remap.jar");
+			Files.delete(tempJar);
+
+			remapper.process(inputJar, tempJar);
+			Files.move(tempJar, outputJar, StandardCopyOption.REPLACE_EXISTING);
+		}
 
 		final Path lineMap = inputJar.resolveSibling(inputJar.getFileName() + ".linemap.txt");
 
@@ -629,9 +625,24 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		getLogger().info("Wrote linemap to {}", lineMap);
 	}
 
-	private void doWork(@Nullable IPCServer ipcServer, Path inputJar, Path outputJar, Path linemapFile, @Nullable Path existingClasses) {
-		final String jvmMarkerValue = UUID.randomUUID().toString();
+	private void doWork(@Nullable IPCServer ipcServer, Path inputJar, Path outputJar, Path linemapFile, @Nullable Set<String> classes, @Nullable CacheTarget cacheTarget) throws IOException {
+		final boolean persistentWorker = getUsePersistentWorker().get() && useProcessIsolation();
+		// A stable marker allows Gradle to hand the job to the idle worker left behind by a previous run.
+		final String jvmMarkerValue = persistentWorker ? getPersistentWorkerMarker() : UUID.randomUUID().toString();
 		final WorkQueue workQueue = createWorkQueue(jvmMarkerValue);
+		final Path workerStatusFile = persistentWorker ? Files.createTempFile("loom-decompile-worker", ".txt") : null;
+
+		if (workerStatusFile != null) {
+			// The worker creates this file when the job completes
+			Files.delete(workerStatusFile);
+		}
+
+		// Only the classes to decompile are listed, the input jar is not split
+		final Path classesFile = classes != null ? Files.createTempFile("loom-decompile-classes", ".txt") : null;
+
+		if (classesFile != null) {
+			Files.write(classesFile, classes, StandardCharsets.UTF_8);
+		}
 
 		workQueue.submit(DecompileAction.class, params -> {
 			params.getDecompilerOptions().set(decompilerOptions.toDto());
@@ -647,8 +658,29 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 			params.getClassPath().setFrom(getMinecraftCompileLibraries());
 
-			if (existingClasses != null) {
-				params.getClassPath().from(existingClasses);
+			if (classesFile != null) {
+				params.getClasses().set(classesFile.toFile());
+			}
+
+			if (getUnpickDefinitions().isPresent()) {
+				params.getUnpickDefinitions().set(getUnpickDefinitions());
+				params.getUnpickConstantJar().setFrom(getUnpickConstantJar());
+				params.getUnpickClasspath().setFrom(getUnpickClasspath());
+				params.getUnpickLogConfig().set(writeUnpickLogConfig());
+			}
+
+			if (cacheTarget != null) {
+				params.getCacheDirectory().set(cacheTarget.directory().toFile());
+				params.getCacheRules().set(cacheTarget.rules());
+				params.getCacheEntries().set(cacheTarget.entries().toFile());
+
+				if (cacheTarget.existingSources() != null) {
+					params.getExistingSources().set(cacheTarget.existingSources().toFile());
+				}
+			}
+
+			if (workerStatusFile != null) {
+				params.getWorkerStatusFile().set(workerStatusFile.toFile());
 			}
 
 			// Architectury
@@ -658,7 +690,13 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		try {
 			workQueue.await();
 		} finally {
-			if (ipcServer != null) {
+			if (classesFile != null) {
+				Files.deleteIfExists(classesFile);
+			}
+
+			if (workerStatusFile != null) {
+				recycleUnhealthyWorker(workerStatusFile, jvmMarkerValue);
+			} else if (ipcServer != null) {
 				boolean stopped = WorkerDaemonClientsManagerHelper.stopIdleJVM(getWorkerDaemonClientsManager(), jvmMarkerValue);
 
 				if (!stopped && ipcServer.hasReceivedMessage()) {
@@ -668,10 +706,43 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 		}
 	}
 
+	/**
+	 * @return A marker that is the same for every run with the same worker classpath and heap, so that recycling
+	 * the worker does not stop the idle worker of another project that uses a different setup
+	 */
+	private String getPersistentWorkerMarker() throws IOException {
+		final StringJoiner sj = new StringJoiner(",");
+
+		Stream.concat(getClasspath().getFiles().stream(), getWorkerUnpickClasspath().stream())
+				.map(File::getAbsolutePath)
+				.sorted()
+				.forEach(sj::add);
+		sj.add(Long.toString(decompilerOptions.getMemory().get()));
+
+		return PERSISTENT_WORKER_MARKER_PREFIX + Checksum.sha256Hex(sj.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void recycleUnhealthyWorker(Path workerStatusFile, String jvmMarkerValue) throws IOException {
+		try {
+			final String recycleReason = WorkerHealth.readRecycleReason(workerStatusFile);
+
+			if (recycleReason == null) {
+				getLogger().info("Keeping decompile worker JVM for the next run");
+				return;
+			}
+
+			getLogger().info("Stopping decompile worker JVM as {}", recycleReason);
+			WorkerDaemonClientsManagerHelper.stopIdleJVM(getWorkerDaemonClientsManager(), jvmMarkerValue);
+		} finally {
+			Files.deleteIfExists(workerStatusFile);
+		}
+	}
+
 	private WorkQueue createWorkQueue(String jvmMarkerValue) {
 		if (!useProcessIsolation()) {
 			return getWorkerExecutor().classLoaderIsolation(spec -> {
 				spec.getClasspath().from(getClasspath());
+				spec.getClasspath().from(getWorkerUnpickClasspath());
 			});
 		}
 
@@ -682,9 +753,15 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 				forkOptions.systemProperty(WorkerDaemonClientsManagerHelper.MARKER_PROP, jvmMarkerValue);
 			});
 			spec.getClasspath().from(getClasspath());
+			spec.getClasspath().from(getWorkerUnpickClasspath());
 		});
 	}
 
+	// Unpick runs within the decompile worker, when the classes are read by the decompiler
+	private Set<File> getWorkerUnpickClasspath() {
+		return getUnpickDefinitions().isPresent() ? getUnpickRuntimeClasspath().getFiles() : Set.of();
+	}
+
 	private boolean useProcessIsolation() {
 		// Useful if you want to debug the decompiler, make sure you run gradle with enough memory.
 		return !Boolean.getBoolean("fabric.loom.genSources.debug");
@@ -702,6 +779,24 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 		ConfigurableFileCollection getClassPath();
 
+		// When present only the listed classes of the input jar are decompiled, see DecompilationMetadata#classes
+		RegularFileProperty getClasses();
+
+		// When present the classes are unpicked as they are read by the decompiler
+		RegularFileProperty getUnpickDefinitions();
+		ConfigurableFileCollection getUnpickConstantJar();
+		ConfigurableFileCollection getUnpickClasspath();
+		RegularFileProperty getUnpickLogConfig();
+
+		// When present, decompiled classes are written straight into this cache and the output jar
+		DirectoryProperty getCacheDirectory();
+		Property<ShardedCachedFileStore.CacheRules> getCacheRules();
+		RegularFileProperty getCacheEntries();
+		RegularFileProperty getExistingSources();
+
+		// When present the worker reports whether it is healthy enough to be reused
+		RegularFileProperty getWorkerStatusFile();
+
 		// Architectury
 		Property<Boolean> getForge();
 	}
@@ -712,15 +807,22 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 			if (!getParameters().getIPCPath().isPresent() || !Platform.CURRENT.supportsUnixDomainSockets()) {
 				// Does not support unix domain sockets, print to sout.
 				doDecompile(System.out::println);
-				return;
-			}
+			} else {
+				final Path ipcPath = getParameters().getIPCPath().get().getAsFile().toPath();
 
-			final Path ipcPath = getParameters().getIPCPath().get().getAsFile().toPath();
+				try (IPCClient ipcClient = new IPCClient(ipcPath)) {
+					doDecompile(new ThreadedSimpleProgressLogger(ipcClient));
+				} catch (Exception e) {
+					throw ExceptionUtil.createDescriptiveWrapper(RuntimeException::new, "Failed to decompile", e);
+				}
+			}
 
-			try (IPCClient ipcClient = new IPCClient(ipcPath)) {
-				doDecompile(new ThreadedSimpleProgressLogger(ipcClient));
-			} catch (Exception e) {
-				throw ExceptionUtil.createDescriptiveWrapper(RuntimeException::new, "Failed to decompile", e);
+			if (getParameters().getWorkerStatusFile().isPresent()) {
+				try {
+					WorkerHealth.jobCompleted(getParameters().getWorkerStatusFile().get().getAsFile().toPath());
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to write worker status", e);
+				}
 			}
 		}
 
@@ -743,27 +845,69 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 				throw new RuntimeException("Failed to create decompiler", e);
 			}
 
-			try (var serviceFactory = new ScopedServiceFactory()) {
+			final Set<String> classes = getClasses();
+			// Decompilers that cannot be limited to some of the classes, or cannot transform the classes as they read them,
+			// decompile a jar split out of the input jar instead
+			final boolean splitClasses = classes != null && !DecompilerConfiguration.supportsClassFilter(decompilerOptions.className());
+			final boolean splitUnpick = getParameters().getUnpickDefinitions().isPresent() && !DecompilerConfiguration.supportsClassTransformer(decompilerOptions.className());
+
+			try (var serviceFactory = new ScopedServiceFactory();
+					UnpickClassTransformer unpick = createUnpickTransformer(inputJar);
+					CompiledJarSplit split = splitClasses || splitUnpick ? CompiledJarSplit.create(inputJar, splitClasses ? classes : null, splitUnpick ? unpick : null) : null) {
 				final SourceMappingsService mappingsService = serviceFactory.get(getParameters().getMappings());
+				final CachingClassConsumer cachingConsumer = getCachingConsumer();
+				final Path compiledJar = split != null ? split.classesJar() : inputJar;
+				final Collection<Path> libraries = new ArrayList<>(getLibraries());
+
+				if (splitClasses) {
+					libraries.add(split.librariesJar());
+				}
 
-				final var metadata = new DecompilationMetadata(
+				final Function<DecompiledClassConsumer, DecompilationMetadata> metadata = classConsumer -> new DecompilationMetadata(
 						decompilerOptions.maxThreads(),
 						mappingsService.getMappingsFile(),
-						getLibraries(),
+						libraries,
 						logger,
-						decompilerOptions.options()
+						decompilerOptions.options(),
+						classConsumer,
+						splitClasses ? null : classes,
+						splitUnpick ? null : unpick
 				);
 
-				decompiler.decompile(
-						inputJar,
-						outputJar,
-						linemap,
-						metadata
-				);
+				if (cachingConsumer == null) {
+					decompiler.decompile(
+							compiledJar,
+							outputJar,
+							linemap,
+							metadata.apply(null)
+					);
+				} else {
+					// Each class is written to the cache and the sources jar as soon as it has been decompiled
+					try (SourcesJarWriter sourcesWriter = SourcesJarWriter.create(outputJar, getExistingSources())) {
+						final DecompiledClassConsumer classConsumer = (className, sources, lineMapping) -> {
+							cachingConsumer.accept(className, sources, lineMapping);
+							sourcesWriter.accept(className, sources, lineMapping);
+						};
+
+						decompiler.decompile(
+								compiledJar,
+								outputJar,
+								linemap,
+								metadata.apply(classConsumer)
+						);
+
+						sourcesWriter.writeLineNumbers(linemap);
+					}
+
+					// The cache is pruned by the task, so only record the new entries here
+					if (cachingConsumer.fileStore() instanceof ShardedCachedFileStore<?> fileStore) {
+						fileStore.saveIndex();
+					}
+				}
 
 				// Close the decompile loggers
 				try {
-					metadata.logger().accept(ThreadedProgressLoggerConsumer.CLOSE_LOGGERS);
+					logger.accept(ThreadedProgressLoggerConsumer.CLOSE_LOGGERS);
 				} catch (IOException e) {
 					throw new UncheckedIOException("Failed to close loggers", e);
 				}
@@ -772,6 +916,55 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 			}
 		}
 
+		@Nullable
+		private Set<String> getClasses() {
+			if (!getParameters().getClasses().isPresent()) {
+				return null;
+			}
+
+			try {
+				return Set.copyOf(Files.readAllLines(getParameters().getClasses().get().getAsFile().toPath(), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read the classes to decompile", e);
+			}
+		}
+
+		@Nullable
+		private UnpickClassTransformer createUnpickTransformer(Path inputJar) throws IOException {
+			if (!getParameters().getUnpickDefinitions().isPresent()) {
+				return null;
+			}
+
+			return UnpickClassTransformer.create(
+					getParameters().getUnpickDefinitions().get().getAsFile().toPath(),
+					inputJar,
+					toPaths(getParameters().getUnpickConstantJar()),
+					toPaths(getParameters().getUnpickClasspath()),
+					getParameters().getUnpickLogConfig().get().getAsFile().toPath()
+			);
+		}
+
+		@Nullable
+		private Path getExistingSources() {
+			if (!getParameters().getExistingSources().isPresent()) {
+				return null;
+			}
+
+			return getParameters().getExistingSources().get().getAsFile().toPath();
+		}
+
+		@Nullable
+		private CachingClassConsumer getCachingConsumer() throws IOException {
+			if (!getParameters().getCacheDirectory().isPresent()) {
+				return null;
+			}
+
+			final Path cacheDirectory = getParameters().getCacheDirectory().get().getAsFile().toPath();
+			final Path cacheEntries = getParameters().getCacheEntries().get().getAsFile().toPath();
+			final var fileStore = new ShardedCachedFileStore<>(cacheDirectory, CachedData.SERIALIZER, getParameters().getCacheRules().get());
+			return new CachingClassConsumer(fileStore, CachingClassConsumer.readOutputNameMap(cacheEntries));
+		}
+
 		private Collection<Path> getLibraries() {
 			return toPaths(getParameters().getClassPath());
 		}
@@ -819,22 +1012,41 @@ public abstract class GenerateSourcesTask extends AbstractLoomTask {
 
 	private static String fileHash(File file) {
 		try {
-			return Checksum.sha256Hex(Files.readAllBytes(file.toPath()));
+			return Checksum.sha256Hex(file.toPath());
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
 	private static String fileCollectionHash(FileCollection files) {
-		var sj = new StringJoiner(",");
-
-		files.getFiles()
+		final List<Path> paths = files.getFiles()
 				.stream()
 				.sorted(Comparator.comparing(File::getAbsolutePath))
-				.map(GenerateSourcesTask::fileHash)
-				.forEach(sj::add);
+				.map(File::toPath)
+				.toList();
 
-		return sj.toString();
+		try {
+			var sj = new StringJoiner(",");
+
+			for (HashCode hash : FileHashCache.hashAll(paths, Hashing.sha256())) {
+				sj.add(hash.toString());
+			}
+
+			return sj.toString();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Where the decompile worker should write the decompiled classes to, besides the sources jar.
+	 *
+	 * @param directory The decompile cache directory
+	 * @param rules The decompile cache rules
+	 * @param entries A file containing the sources name to hash map, see {@link CachingClassConsumer#writeOutputNameMap}
+	 * @param existingSources A jar containing the sources restored from the cache, to be copied to the sources jar
+	 */
+	private record CacheTarget(Path directory, ShardedCachedFileStore.CacheRules rules, Path entries, @Nullable Path existingSources) {
 	}
 
 	public interface MappingsProcessor {
@@ -28,9 +28,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
@@ -73,8 +71,8 @@ import net.fabricmc.loom.task.service.TinyRemapperService;
 import net.fabricmc.loom.util.Constants;
 import net.fabricmc.loom.util.ExceptionUtil;
 import net.fabricmc.loom.util.ModPlatform;
-import net.fabricmc.loom.util.Pair;
 import net.fabricmc.loom.util.SidedClassVisitor;
+import net.fabricmc.loom.util.ZipTransaction;
 import net.fabricmc.loom.util.ZipUtils;
 import net.fabricmc.loom.util.fmj.FabricModJsonFactory;
 import net.fabricmc.loom.util.fmj.FabricModJsonUtils;
@@ -262,12 +260,16 @@ public abstract class RemapJarTask extends AbstractRemapJarTask {
 					Files.copy(inputFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
 				}
 
-				if (getParameters().getClientOnlyEntries().isPresent()) {
-					markClientOnlyClasses();
-				}
+				try (ZipTransaction zip = ZipTransaction.open(outputFile)) {
+					if (getParameters().getClientOnlyEntries().isPresent()) {
+						markClientOnlyClasses(zip);
+					}
+
+					if (!injectAccessWidener(zip)) {
+						remapAccessWidener(zip);
+					}
 
-				if (!injectAccessWidener()) {
-					remapAccessWidener();
+					zip.commit();
 				}
 
 				addRefmaps(serviceFactory);
@@ -280,16 +282,20 @@ public abstract class RemapJarTask extends AbstractRemapJarTask {
 					ModBuildExtensions.convertAwToAt(serviceFactory, getParameters().getAtAccessWideners().get(), outputFile, mappingsServiceOptions);
 				}
 
-				if (!getParameters().getPlatform().get().isForgeLike()) {
-					modifyJarManifest();
-				}
+				try (ZipTransaction zip = ZipTransaction.open(outputFile)) {
+					if (!getParameters().getPlatform().get().isForgeLike()) {
+						modifyJarManifest(zip);
+					}
 
-				rewriteJar();
+					if (getParameters().getOptimizeFmj().get()) {
+						optimizeFMJ(zip);
+					}
 
-				if (getParameters().getOptimizeFmj().get()) {
-					optimizeFMJ();
+					zip.commit();
 				}
 
+				rewriteJar();
+
 				if (tinyRemapperService != null) {
 					tinyRemapperService.close();
 				}
@@ -324,41 +330,40 @@ public abstract class RemapJarTask extends AbstractRemapJarTask {
 			}
 		}
 
-		private void markClientOnlyClasses() throws IOException {
-			final Stream<Pair<String, ZipUtils.UnsafeUnaryOperator<byte[]>>> tranformers = getParameters().getClientOnlyEntries().get().stream()
-					.map(s -> new Pair<>(s,
-							(ZipUtils.AsmClassOperator) classVisitor -> SidedClassVisitor.CLIENT.insertApplyVisitor(null, classVisitor)
-					));
+		private void markClientOnlyClasses(ZipTransaction zip) {
+			final ZipUtils.AsmClassOperator transformer = classVisitor -> SidedClassVisitor.CLIENT.insertApplyVisitor(null, classVisitor);
 
-			ZipUtils.transform(outputFile, tranformers);
+			for (String entry : getParameters().getClientOnlyEntries().get()) {
+				zip.transform(entry, transformer);
+			}
 		}
 
-		private boolean injectAccessWidener() throws IOException {
+		private boolean injectAccessWidener(ZipTransaction zip) throws IOException {
 			if (!getParameters().getInjectAccessWidener().isPresent()) return false;
 
 			Path path = getParameters().getInjectAccessWidener().getAsFile().get().toPath();
 
 			byte[] remapped = remapAccessWidener(Files.readAllBytes(path));
 
-			ZipUtils.add(outputFile, path.getFileName().toString(), remapped);
+			zip.add(path.getFileName().toString(), remapped);
 
 			if (getParameters().getPlatform().get() == ModPlatform.QUILT) {
-				ZipUtils.transformJson(JsonObject.class, outputFile, Map.of("quilt.mod.json", json -> {
+				zip.transformJson(JsonObject.class, "quilt.mod.json", json -> {
 					json.addProperty("access_widener", path.getFileName().toString());
 					return json;
-				}));
+				});
 				return true;
 			}
 
-			ZipUtils.transformJson(JsonObject.class, outputFile, Map.of("fabric.mod.json", json -> {
+			zip.transformJson(JsonObject.class, "fabric.mod.json", json -> {
 				json.addProperty("accessWidener", path.getFileName().toString());
 				return json;
-			}));
+			});
 
 			return true;
 		}
 
-		private void remapAccessWidener() throws IOException {
+		private void remapAccessWidener(ZipTransaction zip) throws IOException {
 			if (getParameters().namespacesMatch()) {
 				return;
 			}
@@ -372,7 +377,7 @@ public abstract class RemapJarTask extends AbstractRemapJarTask {
 			byte[] remapped = remapAccessWidener(accessWidenerFile.content());
 
 			// Finally, replace the output with the remaped aw
-			ZipUtils.replace(outputFile, accessWidenerFile.path(), remapped);
+			zip.replace(accessWidenerFile.path(), remapped);
 		}
 
 		private byte[] remapAccessWidener(byte[] input) {
@@ -415,12 +420,8 @@ public abstract class RemapJarTask extends AbstractRemapJarTask {
 			}
 		}
 
-		private void optimizeFMJ() throws IOException {
-			if (!ZipUtils.contains(outputFile, FabricModJsonFactory.FABRIC_MOD_JSON)) {
-				return;
-			}
-
-			ZipUtils.transformJson(JsonObject.class, outputFile, FabricModJsonFactory.FABRIC_MOD_JSON, FabricModJsonUtils::optimizeFmj);
+		private void optimizeFMJ(ZipTransaction zip) {
+			zip.transformJson(JsonObject.class, FabricModJsonFactory.FABRIC_MOD_JSON, FabricModJsonUtils::optimizeFmj);
 		}
 	}
 
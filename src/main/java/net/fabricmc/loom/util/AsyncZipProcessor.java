@@ -25,64 +25,30 @@
 package net.fabricmc.loom.util;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Processes the entries of a zip in parallel, writing the results to a new zip in the same order as the input.
+ */
+@FunctionalInterface
 public interface AsyncZipProcessor {
 	static void processEntries(Path inputZip, Path outputZip, AsyncZipProcessor processor) throws IOException {
-		try (FileSystemUtil.Delegate inFs = FileSystemUtil.getJarFileSystem(inputZip, false);
-				FileSystemUtil.Delegate outFs = FileSystemUtil.getJarFileSystem(outputZip, true)) {
-			final Path inRoot = inFs.get().getPath("/");
-			final Path outRoot = outFs.get().getPath("/");
-
-			List<CompletableFuture<Void>> futures = new ArrayList<>();
-			final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-
-			Files.walkFileTree(inRoot, new SimpleFileVisitor<>() {
-				@Override
-				public FileVisitResult visitFile(Path inputFile, BasicFileAttributes attrs) throws IOException {
-					final CompletableFuture<Void> future = CompletableFuture.supplyAsync(() -> {
-						try {
-							final String rel = inRoot.relativize(inputFile).toString();
-							final Path outputFile = outRoot.resolve(rel);
-							processor.processEntryAsync(inputFile, outputFile);
-						} catch (IOException e) {
-							throw new CompletionException(e);
-						}
-
-						return null;
-					}, executor);
-
-					futures.add(future);
-					return FileVisitResult.CONTINUE;
-				}
-			});
-
-			// Wait for all futures to complete
-			for (CompletableFuture<Void> future : futures) {
-				try {
-					future.join();
-				} catch (CompletionException e) {
-					if (e.getCause() instanceof IOException ioe) {
-						throw ioe;
-					}
-
-					throw new RuntimeException("Failed to process zip", e.getCause());
-				}
-			}
-
-			executor.shutdown();
-		}
+		AsyncZipProcessorImpl.processEntries(inputZip, outputZip, processor);
 	}
 
-	void processEntryAsync(Path inputEntry, Path outputEntry) throws IOException;
+	/**
+	 * Called on any thread for each file in the input zip.
+	 *
+	 * @param name The name of the entry, such as {@code net/fabricmc/Example.class}
+	 * @param contents Reads the uncompressed contents of the entry, this should only be called when the entry may change
+	 * @return The new contents of the entry, or null to copy the entry to the output unchanged
+	 */
+	byte @Nullable [] processEntryAsync(String name, EntryContents contents) throws IOException;
+
+	@FunctionalInterface
+	interface EntryContents {
+		byte[] read() throws IOException;
+	}
 }
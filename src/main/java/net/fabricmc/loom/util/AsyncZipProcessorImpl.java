@@ -0,0 +1,209 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The central directory of the input zip is read once. The worker threads then read and inflate the entries with
+ * positional reads from a single channel, without sharing a zip file system. The zip is not memory mapped, as a mapping
+ * would hold the file open until it is garbage collected, preventing it from being replaced or deleted on Windows.
+ * Entries are handed out in batches to keep the per entry overhead low, and only a bounded number of batches are held
+ * in memory at once.
+ *
+ * <p>Unchanged entries are copied to the output without being inflated and deflated again.
+ * Zips that {@link RawZipFile} cannot read, such as encrypted zips, are read with a {@link ZipFile} instead.
+ */
+final class AsyncZipProcessorImpl {
+	private static final int BATCH_SIZE = 64;
+	// The number of batches per thread that may be processed ahead of being written
+	private static final int BATCHES_PER_THREAD = 2;
+
+	private AsyncZipProcessorImpl() {
+	}
+
+	static void processEntries(Path inputZip, Path outputZip, AsyncZipProcessor processor) throws IOException {
+		Files.deleteIfExists(outputZip);
+
+		try {
+			try (RawZipFile zipFile = RawZipFile.open(inputZip)) {
+				if (zipFile != null) {
+					processRawZip(zipFile, outputZip, processor);
+					return;
+				}
+			}
+
+			processZipFile(inputZip, outputZip, processor);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(outputZip);
+			throw e;
+		}
+	}
+
+	private static void processRawZip(RawZipFile zipFile, Path outputZip, AsyncZipProcessor processor) throws IOException {
+		try (var writer = new RawZipFile.Writer(FileChannel.open(outputZip, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+			processInOrder(zipFile.entries(), entry -> {
+				if (entry.name().endsWith("/")) {
+					return null;
+				}
+
+				final byte[] output = processor.processEntryAsync(entry.name(), () -> zipFile.readAllBytes(entry));
+
+				if (output == null) {
+					return null;
+				}
+
+				// Compressed on the worker thread, so that only the writing is done in order
+				return RawZipFile.Writer.compress(entry.method() == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED, output);
+			}, (entry, compressed) -> {
+				final byte[] localExtra = zipFile.readLocalExtra(entry);
+
+				if (compressed == null) {
+					writer.copy(zipFile, entry, entry.dosTime(), localExtra, entry.extra());
+				} else {
+					writer.write(entry.name(), entry.dosTime(), compressed, localExtra, entry.extra());
+				}
+			});
+
+			writer.finish();
+		}
+	}
+
+	private static void processZipFile(Path inputZip, Path outputZip, AsyncZipProcessor processor) throws IOException {
+		try (var zipFile = new ZipFile(inputZip.toFile());
+				var outputStream = new ZipOutputStream(Files.newOutputStream(outputZip, StandardOpenOption.CREATE_NEW))) {
+			processInOrder(Collections.list(zipFile.entries()), entry -> {
+				if (entry.isDirectory()) {
+					return null;
+				}
+
+				return processor.processEntryAsync(entry.getName(), () -> {
+					try (InputStream inputStream = zipFile.getInputStream(entry)) {
+						return inputStream.readAllBytes();
+					}
+				});
+			}, (entry, output) -> {
+				final ZipEntry newEntry = new ZipEntry(entry.getName());
+				newEntry.setLastModifiedTime(entry.getLastModifiedTime());
+				outputStream.putNextEntry(newEntry);
+
+				if (output != null) {
+					outputStream.write(output);
+				} else if (!entry.isDirectory()) {
+					try (InputStream inputStream = zipFile.getInputStream(entry)) {
+						inputStream.transferTo(outputStream);
+					}
+				}
+
+				outputStream.closeEntry();
+			});
+		}
+	}
+
+	/**
+	 * Process the entries in batches on the shared executor, writing the results on the calling thread in the original order.
+	 */
+	private static <E, R> void processInOrder(List<E> entries, EntryFunction<E, R> process, EntryWriter<E, R> write) throws IOException {
+		final int maxPending = SharedExecutors.parallelism() * BATCHES_PER_THREAD;
+		final Deque<CompletableFuture<List<R>>> pending = new ArrayDeque<>();
+		int next = 0;
+		int written = 0;
+
+		try {
+			while (written < entries.size()) {
+				while (next < entries.size() && pending.size() < maxPending) {
+					final List<E> batch = entries.subList(next, Math.min(next + BATCH_SIZE, entries.size()));
+					pending.add(CompletableFuture.supplyAsync(() -> processBatch(batch, process), SharedExecutors.cpu()));
+					next += batch.size();
+				}
+
+				for (R result : join(pending.remove())) {
+					write.write(entries.get(written++), result);
+				}
+			}
+		} finally {
+			pending.forEach(future -> future.cancel(false));
+		}
+	}
+
+	private static <E, R> List<R> processBatch(List<E> batch, EntryFunction<E, R> process) {
+		final List<R> results = new ArrayList<>(batch.size());
+
+		try {
+			for (E entry : batch) {
+				results.add(process.apply(entry));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return results;
+	}
+
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uioe) {
+				throw uioe.getCause();
+			}
+
+			if (e.getCause() instanceof RuntimeException re) {
+				throw re;
+			}
+
+			throw new RuntimeException("Failed to process zip", e.getCause());
+		}
+	}
+
+	@FunctionalInterface
+	private interface EntryFunction<E, R> {
+		@Nullable
+		R apply(E entry) throws IOException;
+	}
+
+	@FunctionalInterface
+	private interface EntryWriter<E, R> {
+		void write(E entry, @Nullable R result) throws IOException;
+	}
+}
@@ -82,6 +82,20 @@ public final class AttributeHelper {
 		}
 	}
 
+	public static void deleteAttribute(Path path, String key) throws IOException {
+		Files.deleteIfExists(getFallbackPath(path, key));
+
+		try {
+			final UserDefinedFileAttributeView attributeView = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+
+			if (attributeView.list().contains(key)) {
+				attributeView.delete(key);
+			}
+		} catch (FileSystemException ignored) {
+			// The attribute can only have been written to the fallback file.
+		}
+	}
+
 	private static Path getFallbackPath(Path path, String key) {
 		return path.resolveSibling(path.getFileName() + "." + key + ".att");
 	}
@@ -34,7 +34,6 @@ import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteSource;
-import com.google.common.io.Files;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -48,7 +47,7 @@ public class Checksum {
 		}
 
 		try {
-			HashCode hash = Files.asByteSource(file).hash(Hashing.sha1());
+			HashCode hash = FileHashCache.hash(file.toPath(), Hashing.sha1());
 			String hashString = hash.toString();
 			log.debug("Checksum check: '" + hashString + "' == '" + checksum + "'?");
 			return hashString.equals(checksum);
@@ -61,7 +60,7 @@ public class Checksum {
 
 	public static byte[] sha256(File file) {
 		try {
-			HashCode hash = Files.asByteSource(file).hash(Hashing.sha256());
+			HashCode hash = FileHashCache.hash(file.toPath(), Hashing.sha256());
 			return hash.asBytes();
 		} catch (IOException e) {
 			throw new UncheckedIOException("Failed to get file hash", e);
@@ -73,8 +72,13 @@ public class Checksum {
 		return Checksum.toHex(hash.asBytes());
 	}
 
+	public static String sha256Hex(Path path) throws IOException {
+		HashCode hash = FileHashCache.hash(path, Hashing.sha256());
+		return toHex(hash.asBytes());
+	}
+
 	public static String sha1Hex(Path path) throws IOException {
-		HashCode hash = Files.asByteSource(path.toFile()).hash(Hashing.sha1());
+		HashCode hash = FileHashCache.hash(path, Hashing.sha1());
 		return toHex(hash.asBytes());
 	}
 
@@ -89,7 +93,7 @@ public class Checksum {
 
 	public static String truncatedSha256(File file) {
 		try {
-			HashCode hash = Files.asByteSource(file).hash(Hashing.sha256());
+			HashCode hash = FileHashCache.hash(file.toPath(), Hashing.sha256());
 			return hash.toString().substring(0, 12);
 		} catch (IOException e) {
 			throw new UncheckedIOException("Failed to get file hash of " + file, e);
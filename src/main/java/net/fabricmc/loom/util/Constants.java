@@ -168,6 +168,14 @@ public class Constants {
 		public static final String RUNTIME_JAVA_COMPATIBILITY_VERSION = "fabric.loom.runtimeJavaCompatibilityVersion";
 		public static final String DECOMPILE_CACHE_MAX_FILES = "fabric.loom.decompileCacheMaxFiles";
 		public static final String DECOMPILE_CACHE_MAX_AGE = "fabric.loom.decompileCacheMaxAge";
+		public static final String DECOMPILE_CACHE_MAX_SIZE = "fabric.loom.decompileCacheMaxSize";
+		public static final String DECOMPILE_PERSISTENT_WORKER = "fabric.loom.decompilePersistentWorker";
+		/**
+		 * When enabled, jars that are only read are kept open for the rest of the build, instead of being reopened by each task.
+		 * On Windows this prevents those jars from being deleted or replaced by other processes until the build has finished.
+		 */
+		@ApiStatus.Experimental
+		public static final String JAR_FILE_SYSTEM_POOL = "fabric.loom.experimental.jarFileSystemPool";
 		public static final String ALLOW_MISMATCHED_PLATFORM_VERSION = "loom.allowMismatchedPlatformVersion";
 		public static final String IGNORE_DEPENDENCY_LOOM_VERSION_VALIDATION = "loom.ignoreDependencyLoomVersionValidation";
 	}
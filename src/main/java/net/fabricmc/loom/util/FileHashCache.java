@@ -0,0 +1,112 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.io.MoreFiles;
+import org.jetbrains.annotations.VisibleForTesting;
+
+/**
+ * Hashes whole files by streaming them, remembering the result for as long as the file is unchanged.
+ *
+ * <p>A file is considered unchanged while its {@link FileStamp} stays the same. The cache is static, so it is shared by
+ * all tasks that run in the same Gradle daemon.
+ *
+ * <p>Only files on the default file system are cached. Paths into zip file systems would keep the file system alive,
+ * and the classes of a jar would quickly push the real files out of the cache.
+ */
+public final class FileHashCache {
+	private static final int MAX_ENTRIES = 16_384;
+
+	private static final FileStampCache<Key, HashCode> CACHE = new FileStampCache<>(MAX_ENTRIES);
+
+	private FileHashCache() {
+	}
+
+	public static HashCode hash(Path path, HashFunction hashFunction) throws IOException {
+		if (path.getFileSystem() != FileSystems.getDefault()) {
+			return MoreFiles.asByteSource(path).hash(hashFunction);
+		}
+
+		final Path normalized = path.toAbsolutePath().normalize();
+		return CACHE.get(new Key(normalized, hashFunction.toString()), normalized, file -> MoreFiles.asByteSource(file).hash(hashFunction));
+	}
+
+	/**
+	 * Hash the files in parallel on the shared CPU executor.
+	 *
+	 * @return The hashes, in the same order as the given files
+	 */
+	public static List<HashCode> hashAll(List<Path> paths, HashFunction hashFunction) throws IOException {
+		final Executor executor = SharedExecutors.cpu();
+		final List<CompletableFuture<HashCode>> futures = new ArrayList<>(paths.size());
+
+		for (Path path : paths) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return hash(path, hashFunction);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, executor));
+		}
+
+		final List<HashCode> hashes = new ArrayList<>(paths.size());
+
+		try {
+			for (CompletableFuture<HashCode> future : futures) {
+				hashes.add(future.join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException.getCause();
+			}
+
+			throw e;
+		}
+
+		return hashes;
+	}
+
+	@VisibleForTesting
+	public static boolean isCached(Path path) {
+		final Path normalized = path.toAbsolutePath().normalize();
+		return CACHE.keys().stream().anyMatch(key -> key.path().equals(normalized));
+	}
+
+	private record Key(Path path, String hashFunction) {
+	}
+}
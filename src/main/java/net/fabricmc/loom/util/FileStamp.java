@@ -0,0 +1,57 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The size, last modified time and file key (the inode, where supported) of a file, used to tell that a file has
+ * changed without reading it.
+ *
+ * @param modified The last modified time in milliseconds
+ */
+public record FileStamp(long size, long modified, @Nullable Object fileKey) {
+	// A second write this soon after the first could leave the modified time unchanged on file systems with a coarse resolution.
+	private static final Duration RACY_WINDOW = Duration.ofSeconds(2);
+
+	public static FileStamp read(Path path) throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+	}
+
+	/**
+	 * @return Whether the file was modified so recently that it could change again without its stamp changing, in which
+	 * case nothing derived from the file should be remembered
+	 */
+	public boolean isRacy() {
+		return System.currentTimeMillis() - modified <= RACY_WINDOW.toMillis();
+	}
+}
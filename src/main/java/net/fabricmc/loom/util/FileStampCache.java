@@ -0,0 +1,81 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers values computed from a file for as long as the file's {@link FileStamp} is unchanged.
+ *
+ * <p>Values of {@linkplain FileStamp#isRacy() racy} files are not remembered, and the cache is cleared once it is full.
+ * The caches are usually static, so that they are shared by all tasks that run in the same Gradle daemon.
+ */
+public final class FileStampCache<K, V> {
+	private final int maxEntries;
+	private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+	public FileStampCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @param key The key of the value, which usually includes the file's path
+	 * @param loader Computes the value from the file when it is not cached
+	 */
+	public V get(K key, Path file, IOFunction<Path, V> loader) throws IOException {
+		final FileStamp stamp = FileStamp.read(file);
+		final Entry<V> cached = entries.get(key);
+
+		if (cached != null && cached.stamp().equals(stamp)) {
+			return cached.value();
+		}
+
+		final V value = loader.apply(file);
+
+		if (stamp.isRacy()) {
+			entries.remove(key);
+			return value;
+		}
+
+		if (entries.size() >= maxEntries) {
+			entries.clear();
+		}
+
+		entries.put(key, new Entry<>(stamp, value));
+		return value;
+	}
+
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	private record Entry<V>(FileStamp stamp, V value) {
+	}
+}
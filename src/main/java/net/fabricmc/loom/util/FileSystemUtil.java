@@ -41,16 +41,16 @@ import java.util.function.Supplier;
 import net.fabricmc.tinyremapper.FileSystemReference;
 
 public final class FileSystemUtil {
-	public record Delegate(FileSystemReference reference, URI uri) implements AutoCloseable, Supplier<FileSystem> {
-		public Path getPath(String path, String... more) {
+	public interface Delegate extends AutoCloseable, Supplier<FileSystem> {
+		default Path getPath(String path, String... more) {
 			return get().getPath(path, more);
 		}
 
-		public Path getRoot() {
+		default Path getRoot() {
 			return get().getPath("/");
 		}
 
-		public byte[] readAllBytes(String path) throws IOException {
+		default byte[] readAllBytes(String path) throws IOException {
 			Path fsPath = getPath(path);
 
 			if (Files.exists(fsPath)) {
@@ -60,16 +60,26 @@ public final class FileSystemUtil {
 			}
 		}
 
-		public <T> T fromInputStream(IOFunction<InputStream, T> function, String path, String... more) throws IOException {
+		default <T> T fromInputStream(IOFunction<InputStream, T> function, String path, String... more) throws IOException {
 			try (InputStream inputStream = Files.newInputStream(getPath(path, more))) {
 				return function.apply(inputStream);
 			}
 		}
 
-		public String readString(String path) throws IOException {
+		default String readString(String path) throws IOException {
 			return new String(readAllBytes(path), StandardCharsets.UTF_8);
 		}
 
+		@Override
+		void close() throws IOException;
+
+		// TODO cleanup
+		default FileSystem fs() {
+			return get();
+		}
+	}
+
+	private record ReferenceDelegate(FileSystemReference reference, URI uri) implements Delegate {
 		@Override
 		public void close() throws IOException {
 			try {
@@ -103,30 +113,34 @@ public final class FileSystemUtil {
 		public FileSystem get() {
 			return reference.getFs();
 		}
-
-		// TODO cleanup
-		public FileSystem fs() {
-			return get();
-		}
 	}
 
 	private FileSystemUtil() {
 	}
 
 	public static Delegate getJarFileSystem(File file, boolean create) throws IOException {
-		return new Delegate(FileSystemReference.openJar(file.toPath(), create), toJarUri(file.toPath()));
+		return new ReferenceDelegate(FileSystemReference.openJar(file.toPath(), create), toJarUri(file.toPath()));
 	}
 
 	public static Delegate getJarFileSystem(Path path, boolean create) throws IOException {
-		return new Delegate(FileSystemReference.openJar(path, create), toJarUri(path));
+		return new ReferenceDelegate(FileSystemReference.openJar(path, create), toJarUri(path));
 	}
 
 	public static Delegate getJarFileSystem(Path path) throws IOException {
-		return new Delegate(FileSystemReference.openJar(path), toJarUri(path));
+		return new ReferenceDelegate(FileSystemReference.openJar(path), toJarUri(path));
 	}
 
 	public static Delegate getJarFileSystem(URI uri, boolean create) throws IOException {
-		return new Delegate(FileSystemReference.open(uri, create), uri);
+		return new ReferenceDelegate(FileSystemReference.open(uri, create), uri);
+	}
+
+	/**
+	 * Open a jar that will only be read from, reusing the file system from {@link JarFileSystemPool} when it is enabled.
+	 * The returned file system must not be written to, as it may be shared with other tasks in the build.
+	 */
+	public static Delegate getReadOnlyJarFileSystem(Path path) throws IOException {
+		final Delegate pooled = JarFileSystemPool.open(path);
+		return pooled != null ? pooled : getJarFileSystem(path);
 	}
 
 	private static URI toJarUri(Path path) {
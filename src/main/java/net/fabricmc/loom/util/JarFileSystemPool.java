@@ -0,0 +1,216 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps read-only jar file systems open for the rest of the build, so that the central directory of jars that are
+ * read many times, such as the Minecraft jars, is only parsed once.
+ *
+ * <p>The pooled file systems are not registered with the zip file system provider, so they are never shared with
+ * code that opens the same jar with {@link FileSystemUtil#getJarFileSystem(Path)} to write to it. A pooled file system
+ * is replaced once the jar's {@link FileStamp} changes, and jars that are {@linkplain FileStamp#isRacy() racy} are not pooled.
+ *
+ * <p>The pool is disabled unless a build has enabled it with {@link #enable()}, see {@link net.fabricmc.loom.util.gradle.JarFileSystemPoolBuildService}.
+ */
+public final class JarFileSystemPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(JarFileSystemPool.class);
+
+	private static final int MAX_JARS = 256;
+
+	private static final Map<Path, PooledJar> JARS = new ConcurrentHashMap<>();
+	private static final Object LOCK = new Object();
+	private static int users;
+
+	private JarFileSystemPool() {
+	}
+
+	/**
+	 * Enable the pool until a matching call to {@link #disable()}.
+	 */
+	public static void enable() {
+		synchronized (LOCK) {
+			users++;
+		}
+	}
+
+	/**
+	 * Disable the pool once every build that enabled it has finished, closing the pooled file systems once they are no longer in use.
+	 */
+	public static void disable() {
+		synchronized (LOCK) {
+			if (users > 0 && --users == 0) {
+				clear();
+			}
+		}
+	}
+
+	private static boolean isEnabled() {
+		synchronized (LOCK) {
+			return users > 0;
+		}
+	}
+
+	/**
+	 * @return A pooled file system for the jar, or null when the pool is disabled or the jar cannot be pooled
+	 */
+	@Nullable
+	static FileSystemUtil.Delegate open(Path jar) throws IOException {
+		if (!isEnabled()) {
+			return null;
+		}
+
+		final Path path = jar.toAbsolutePath().normalize();
+		final FileStamp stamp = FileStamp.read(path);
+
+		if (stamp.isRacy()) {
+			return null;
+		}
+
+		while (true) {
+			PooledJar pooled = JARS.get(path);
+
+			if (pooled != null && !pooled.stamp().equals(stamp)) {
+				LOGGER.debug("Jar {} has changed, reopening it", path);
+				JARS.remove(path, pooled);
+				pooled.retire();
+				pooled = null;
+			}
+
+			if (pooled == null) {
+				if (JARS.size() >= MAX_JARS) {
+					clear();
+				}
+
+				final PooledJar created = new PooledJar(FileSystems.newFileSystem(path), stamp);
+				pooled = JARS.putIfAbsent(path, created);
+
+				if (pooled == null) {
+					pooled = created;
+				} else {
+					// Opened by another thread at the same time
+					created.retire();
+				}
+			}
+
+			if (pooled.acquire()) {
+				return new PooledDelegate(pooled);
+			}
+
+			// Retired by another thread, try again
+		}
+	}
+
+	private static void clear() {
+		for (PooledJar pooled : List.copyOf(JARS.values())) {
+			JARS.values().remove(pooled);
+
+			try {
+				pooled.retire();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close pooled jar file system", e);
+			}
+		}
+	}
+
+	/**
+	 * A pooled file system, which is closed once it has been retired and is no longer in use.
+	 */
+	private static final class PooledJar {
+		private final FileSystem fileSystem;
+		private final FileStamp stamp;
+		private int leases;
+		private boolean retired;
+
+		PooledJar(FileSystem fileSystem, FileStamp stamp) {
+			this.fileSystem = fileSystem;
+			this.stamp = stamp;
+		}
+
+		FileStamp stamp() {
+			return stamp;
+		}
+
+		synchronized boolean acquire() {
+			if (retired) {
+				return false;
+			}
+
+			leases++;
+			return true;
+		}
+
+		synchronized void release() throws IOException {
+			if (--leases == 0 && retired) {
+				fileSystem.close();
+			}
+		}
+
+		synchronized void retire() throws IOException {
+			if (retired) {
+				return;
+			}
+
+			retired = true;
+
+			if (leases == 0) {
+				fileSystem.close();
+			}
+		}
+	}
+
+	private static final class PooledDelegate implements FileSystemUtil.Delegate {
+		private final PooledJar pooled;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		PooledDelegate(PooledJar pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public FileSystem get() {
+			return pooled.fileSystem;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed.compareAndSet(false, true)) {
+				pooled.release();
+			}
+		}
+	}
+}
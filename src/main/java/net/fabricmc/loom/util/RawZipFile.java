@@ -0,0 +1,785 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the entries of a zip file from its central directory, giving access to their compressed data so that it can
+ * be copied into another zip without being inflated and deflated again.
+ *
+ * <p>Zip64 zips are supported as long as no single entry is 4GB or larger, {@link #open(Path)} returns null for split
+ * or encrypted zips. The {@link Writer} writes entries in the same layout as {@link java.util.zip.ZipOutputStream}.
+ */
+public final class RawZipFile implements Closeable {
+	private static final int LOC_SIGNATURE = 0x04034b50;
+	private static final int EXT_SIGNATURE = 0x08074b50;
+	private static final int CEN_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int LOC_HEADER_SIZE = 30;
+	private static final int EXT_HEADER_SIZE = 16;
+	private static final int CEN_HEADER_SIZE = 46;
+	private static final int END_HEADER_SIZE = 22;
+	private static final int ZIP64_END_HEADER_SIZE = 56;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int MAX_COUNT = 0xFFFF;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+	private static final int FLAG_ENCRYPTED = 0x1;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+	private static final int FLAG_UTF8 = 0x800;
+
+	private final FileChannel channel;
+	private final List<Entry> entries;
+	private final long centralDirectoryOffset;
+	private final ByteBuffer centralDirectory;
+
+	private RawZipFile(FileChannel channel, List<Entry> entries, long centralDirectoryOffset, ByteBuffer centralDirectory) {
+		this.channel = channel;
+		this.entries = entries;
+		this.centralDirectoryOffset = centralDirectoryOffset;
+		this.centralDirectory = centralDirectory;
+	}
+
+	/**
+	 * @return The opened zip, or null if the zip uses a format that is not supported
+	 */
+	@Nullable
+	public static RawZipFile open(Path path) throws IOException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			final RawZipFile zipFile = read(channel);
+
+			if (zipFile == null) {
+				channel.close();
+			}
+
+			return zipFile;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Nullable
+	private static RawZipFile read(FileChannel channel) throws IOException {
+		final long fileSize = channel.size();
+		final long endOffset = findEndOfCentralDirectory(channel, fileSize);
+		final ByteBuffer end = readFully(channel, endOffset, END_HEADER_SIZE);
+
+		if (end.getShort(4) != 0 || end.getShort(6) != 0) {
+			// Split over multiple files
+			return null;
+		}
+
+		long count = Short.toUnsignedInt(end.getShort(10));
+		long centralDirectorySize = Integer.toUnsignedLong(end.getInt(12));
+		long centralDirectoryOffset = Integer.toUnsignedLong(end.getInt(16));
+		long centralDirectoryEnd = endOffset;
+
+		if (endOffset >= ZIP64_LOCATOR_SIZE && readFully(channel, endOffset - ZIP64_LOCATOR_SIZE, 4).getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+			final ByteBuffer locator = readFully(channel, endOffset - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+
+			if (locator.getInt(4) != 0 || locator.getInt(16) > 1) {
+				// Split over multiple files
+				return null;
+			}
+
+			final long zip64EndOffset = locator.getLong(8);
+
+			if (zip64EndOffset < 0 || zip64EndOffset + ZIP64_END_HEADER_SIZE > endOffset - ZIP64_LOCATOR_SIZE) {
+				throw new ZipException("Invalid Zip64 end header offset");
+			}
+
+			final ByteBuffer zip64End = readFully(channel, zip64EndOffset, ZIP64_END_HEADER_SIZE);
+
+			if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+				throw new ZipException("Invalid Zip64 end header");
+			}
+
+			if (zip64End.getInt(16) != 0 || zip64End.getInt(20) != 0) {
+				// Split over multiple files
+				return null;
+			}
+
+			count = zip64End.getLong(32);
+			centralDirectorySize = zip64End.getLong(40);
+			centralDirectoryOffset = zip64End.getLong(48);
+			centralDirectoryEnd = zip64EndOffset;
+		}
+
+		if (count < 0 || centralDirectorySize < 0 || centralDirectoryOffset < 0 || centralDirectoryOffset + centralDirectorySize > centralDirectoryEnd) {
+			throw new ZipException("Invalid central directory");
+		}
+
+		if (centralDirectorySize > Integer.MAX_VALUE || count > centralDirectorySize / CEN_HEADER_SIZE) {
+			throw new ZipException("Invalid central directory size");
+		}
+
+		final ByteBuffer centralDirectory = readFully(channel, centralDirectoryOffset, (int) centralDirectorySize);
+		final List<Entry> entries = new ArrayList<>((int) count);
+		int position = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (position + CEN_HEADER_SIZE > centralDirectory.limit() || centralDirectory.getInt(position) != CEN_SIGNATURE) {
+				throw new ZipException("Invalid central directory header");
+			}
+
+			final int flags = Short.toUnsignedInt(centralDirectory.getShort(position + 8));
+			final int method = Short.toUnsignedInt(centralDirectory.getShort(position + 10));
+			final int dosTime = centralDirectory.getInt(position + 12);
+			final long crc = Integer.toUnsignedLong(centralDirectory.getInt(position + 16));
+			long compressedSize = Integer.toUnsignedLong(centralDirectory.getInt(position + 20));
+			long size = Integer.toUnsignedLong(centralDirectory.getInt(position + 24));
+			final int nameLength = Short.toUnsignedInt(centralDirectory.getShort(position + 28));
+			final int extraLength = Short.toUnsignedInt(centralDirectory.getShort(position + 30));
+			final int commentLength = Short.toUnsignedInt(centralDirectory.getShort(position + 32));
+			long localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt(position + 42));
+
+			if ((flags & FLAG_ENCRYPTED) != 0) {
+				return null;
+			}
+
+			if (position + CEN_HEADER_SIZE + nameLength + extraLength > centralDirectory.limit()) {
+				throw new ZipException("Invalid central directory header");
+			}
+
+			final byte[] nameBytes = new byte[nameLength];
+			final byte[] extra = new byte[extraLength];
+			centralDirectory.get(position + CEN_HEADER_SIZE, nameBytes);
+			centralDirectory.get(position + CEN_HEADER_SIZE + nameLength, extra);
+			final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			if (size == MAX_SIZE || compressedSize == MAX_SIZE || localHeaderOffset == MAX_SIZE) {
+				// The real values are in the Zip64 extra field, in this order, only when they do not fit
+				final ByteBuffer zip64Extra = findZip64Extra(extra);
+				final int fields = (size == MAX_SIZE ? 1 : 0) + (compressedSize == MAX_SIZE ? 1 : 0) + (localHeaderOffset == MAX_SIZE ? 1 : 0);
+
+				if (zip64Extra == null || zip64Extra.remaining() < fields * 8) {
+					throw new ZipException("Missing Zip64 extra field for " + name);
+				}
+
+				if (size == MAX_SIZE) {
+					size = zip64Extra.getLong();
+				}
+
+				if (compressedSize == MAX_SIZE) {
+					compressedSize = zip64Extra.getLong();
+				}
+
+				if (localHeaderOffset == MAX_SIZE) {
+					localHeaderOffset = zip64Extra.getLong();
+				}
+
+				if (size < 0 || compressedSize < 0 || localHeaderOffset < 0) {
+					throw new ZipException("Invalid Zip64 extra field for " + name);
+				}
+			}
+
+			entries.add(new Entry(name, method, dosTime, crc, compressedSize, size, stripZip64Extra(extra), localHeaderOffset));
+			position += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+
+		return new RawZipFile(channel, Collections.unmodifiableList(entries), centralDirectoryOffset, centralDirectory);
+	}
+
+	/**
+	 * @return The data of the Zip64 extended information extra field, or null if there is none
+	 */
+	@Nullable
+	private static ByteBuffer findZip64Extra(byte[] extra) {
+		final ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+		int position = 0;
+
+		while (position + 4 <= extra.length) {
+			final int id = Short.toUnsignedInt(buffer.getShort(position));
+			final int length = Short.toUnsignedInt(buffer.getShort(position + 2));
+
+			if (position + 4 + length > extra.length) {
+				break;
+			}
+
+			if (id == ZIP64_EXTRA_ID) {
+				return buffer.slice(position + 4, length).order(ByteOrder.LITTLE_ENDIAN);
+			}
+
+			position += 4 + length;
+		}
+
+		return null;
+	}
+
+	/**
+	 * The Zip64 extra field describes the sizes in the header it came from, so it is removed when the entry is copied.
+	 * The {@link Writer} adds its own where it is needed.
+	 */
+	private static byte[] stripZip64Extra(byte[] extra) {
+		if (findZip64Extra(extra) == null) {
+			return extra;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteArrayOutputStream stripped = new ByteArrayOutputStream(extra.length);
+		int position = 0;
+
+		while (position + 4 <= extra.length) {
+			final int id = Short.toUnsignedInt(buffer.getShort(position));
+			final int length = Math.min(Short.toUnsignedInt(buffer.getShort(position + 2)), extra.length - position - 4);
+
+			if (id != ZIP64_EXTRA_ID) {
+				stripped.write(extra, position, 4 + length);
+			}
+
+			position += 4 + length;
+		}
+
+		// Keep any trailing bytes that are too short to be a field
+		stripped.write(extra, position, Math.max(0, extra.length - position));
+		return stripped.toByteArray();
+	}
+
+	private static long findEndOfCentralDirectory(FileChannel channel, long fileSize) throws IOException {
+		final int searchSize = (int) Math.min(fileSize, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+		final ByteBuffer buffer = readFully(channel, fileSize - searchSize, searchSize);
+
+		for (int position = searchSize - END_HEADER_SIZE; position >= 0; position--) {
+			if (buffer.getInt(position) == END_SIGNATURE
+					&& position + END_HEADER_SIZE + Short.toUnsignedInt(buffer.getShort(position + 20)) <= searchSize) {
+				return fileSize - searchSize + position;
+			}
+		}
+
+		throw new ZipException("Zip end header not found");
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new ZipException("Unexpected end of zip");
+			}
+		}
+
+		return buffer.flip();
+	}
+
+	public List<Entry> entries() {
+		return entries;
+	}
+
+	/**
+	 * @return The offset of the entry's compressed data
+	 */
+	private long getDataOffset(Entry entry) throws IOException {
+		final ByteBuffer header = readFully(channel, entry.localHeaderOffset(), LOC_HEADER_SIZE);
+
+		if (header.getInt(0) != LOC_SIGNATURE) {
+			throw new ZipException("Invalid local header for " + entry.name());
+		}
+
+		return entry.localHeaderOffset() + LOC_HEADER_SIZE + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28));
+	}
+
+	/**
+	 * @return The extra field from the entry's local header, which may differ from the one in the central directory
+	 */
+	public byte[] readLocalExtra(Entry entry) throws IOException {
+		final ByteBuffer header = readFully(channel, entry.localHeaderOffset(), LOC_HEADER_SIZE);
+		final int nameLength = Short.toUnsignedInt(header.getShort(26));
+		final int extraLength = Short.toUnsignedInt(header.getShort(28));
+		return stripZip64Extra(readFully(channel, entry.localHeaderOffset() + LOC_HEADER_SIZE + nameLength, extraLength).array());
+	}
+
+	/**
+	 * Only positional reads are used, so entries can be read from many threads at once.
+	 *
+	 * @return The uncompressed content of the entry
+	 */
+	public byte[] readAllBytes(Entry entry) throws IOException {
+		return decode(entry, readFully(channel, getDataOffset(entry), Math.toIntExact(entry.compressedSize())));
+	}
+
+	private static byte[] decode(Entry entry, ByteBuffer compressed) throws IOException {
+		return switch (entry.method()) {
+		case ZipEntry.STORED -> {
+			if (compressed.remaining() != entry.size()) {
+				throw new ZipException("Invalid stored size for " + entry.name());
+			}
+
+			final byte[] data = new byte[compressed.remaining()];
+			compressed.get(data);
+			yield data;
+		}
+		case ZipEntry.DEFLATED -> inflate(entry, compressed);
+		default -> throw new ZipException("Unsupported compression method %d for %s".formatted(entry.method(), entry.name()));
+		};
+	}
+
+	private static byte[] inflate(Entry entry, ByteBuffer compressed) throws IOException {
+		final Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(compressed);
+			final byte[] data = new byte[Math.toIntExact(entry.size())];
+			int length = 0;
+
+			while (length < data.length && !inflater.finished()) {
+				final int inflated = inflater.inflate(data, length, data.length - length);
+
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				length += inflated;
+			}
+
+			if (length != data.length) {
+				throw new ZipException("Invalid compressed data for " + entry.name());
+			}
+
+			return data;
+		} catch (DataFormatException e) {
+			throw new ZipException("Invalid compressed data for %s: %s".formatted(entry.name(), e.getMessage()));
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @param dosTime The last modified time in MS-DOS format, the time in the lower 16 bits and the date in the upper
+	 * @param extra The extra field from the central directory
+	 */
+	public record Entry(String name, int method, int dosTime, long crc, long compressedSize, long size, byte[] extra, long localHeaderOffset) {
+	}
+
+	/**
+	 * Writes zip entries to a file channel, starting at its current position.
+	 */
+	public static final class Writer implements Closeable {
+		// 1980-01-01 00:00:00, the earliest time that can be stored.
+		public static final int CONSTANT_DOS_TIME = (1 << 21) | (1 << 16);
+		private static final byte[] EMPTY = new byte[0];
+		private static final int MIN_DOS_YEAR = 1980;
+		private static final int MAX_DOS_YEAR = 2107;
+		private static final int ZIP64_VERSION = 45;
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+		private final List<byte[]> centralDirectory = new ArrayList<>();
+		private long position;
+		private int count;
+
+		public Writer(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.position = channel.position();
+		}
+
+		/**
+		 * Copy an entry's compressed data from the source zip without inflating it.
+		 */
+		public void copy(RawZipFile source, Entry entry, int dosTime, byte[] localExtra, byte[] centralExtra) throws IOException {
+			final long offset = position + buffer.position();
+			writeLocalHeader(entry.name(), entry.method(), dosTime, entry.crc(), entry.compressedSize(), entry.size(), localExtra);
+			flush();
+
+			long transferred = 0;
+			final long dataOffset = source.getDataOffset(entry);
+			// transferTo writes at the channel's position, unlike the other writes
+			channel.position(position);
+
+			while (transferred < entry.compressedSize()) {
+				final long written = source.channel.transferTo(dataOffset + transferred, entry.compressedSize() - transferred, channel);
+
+				if (written <= 0) {
+					throw new ZipException("Unexpected end of zip while copying " + entry.name());
+				}
+
+				transferred += written;
+			}
+
+			position += transferred;
+			finishEntry(entry.name(), entry.method(), dosTime, entry.crc(), entry.compressedSize(), entry.size(), centralExtra, offset);
+		}
+
+		/**
+		 * Write a new entry, compressing it with the given method.
+		 */
+		public void write(String name, int method, int dosTime, byte[] data) throws IOException {
+			write(name, method, dosTime, data, EMPTY, EMPTY);
+		}
+
+		public void write(String name, int method, int dosTime, byte[] data, byte[] localExtra, byte[] centralExtra) throws IOException {
+			write(name, dosTime, compress(method, data), localExtra, centralExtra);
+		}
+
+		/**
+		 * Write an entry that has already been compressed with {@link #compress(int, byte[])}.
+		 */
+		public void write(String name, int dosTime, Compressed compressed) throws IOException {
+			write(name, dosTime, compressed, EMPTY, EMPTY);
+		}
+
+		public void write(String name, int dosTime, Compressed compressed, byte[] localExtra, byte[] centralExtra) throws IOException {
+			final long offset = position + buffer.position();
+			final byte[] data = compressed.data();
+
+			writeLocalHeader(name, compressed.method(), dosTime, compressed.crc(), data.length, compressed.size(), localExtra);
+			put(data);
+			finishEntry(name, compressed.method(), dosTime, compressed.crc(), data.length, compressed.size(), centralExtra, offset);
+		}
+
+		/**
+		 * Write a stored entry with the content of a file, the file is streamed rather than being held in memory.
+		 */
+		void writeStored(String name, int dosTime, Path file) throws IOException {
+			try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+				// The CRC is needed up front for the local header, so the file is read twice.
+				final ByteBuffer data = ByteBuffer.allocate(buffer.capacity());
+				final CRC32 crc = new CRC32();
+				long size = 0;
+
+				while (input.read(data) != -1) {
+					data.flip();
+					size += data.remaining();
+					crc.update(data);
+					data.clear();
+				}
+
+				final long offset = position + buffer.position();
+				writeLocalHeader(name, ZipEntry.STORED, dosTime, crc.getValue(), size, size, EMPTY);
+				flush();
+
+				final CRC32 writtenCrc = new CRC32();
+				long written = 0;
+				input.position(0);
+
+				while (written < size && input.read(data) != -1) {
+					data.flip();
+					written += data.remaining();
+					writtenCrc.update(data.duplicate());
+					write(data);
+					data.clear();
+				}
+
+				if (written != size || writtenCrc.getValue() != crc.getValue()) {
+					throw new ZipException("%s changed while being written to the zip".formatted(file));
+				}
+
+				finishEntry(name, ZipEntry.STORED, dosTime, crc.getValue(), size, size, EMPTY, offset);
+			}
+		}
+
+		/**
+		 * Compress an entry's content, this may be done on any thread ahead of writing it.
+		 */
+		public static Compressed compress(int method, byte[] data) throws ZipException {
+			final CRC32 crc = new CRC32();
+			crc.update(data);
+
+			final byte[] compressed = switch (method) {
+			case ZipEntry.STORED -> data;
+			case ZipEntry.DEFLATED -> deflate(data);
+			default -> throw new ZipException("Unsupported compression method " + method);
+			};
+
+			return new Compressed(method, crc.getValue(), data.length, compressed);
+		}
+
+		/**
+		 * @return The time in MS-DOS format in the local time zone, as stored by {@link java.util.zip.ZipOutputStream}
+		 */
+		static int toDosTime(FileTime time) {
+			final LocalDateTime dateTime = LocalDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault());
+
+			if (dateTime.getYear() < MIN_DOS_YEAR) {
+				return CONSTANT_DOS_TIME;
+			}
+
+			return (Math.min(dateTime.getYear(), MAX_DOS_YEAR) - MIN_DOS_YEAR) << 25
+					| dateTime.getMonthValue() << 21
+					| dateTime.getDayOfMonth() << 16
+					| dateTime.getHour() << 11
+					| dateTime.getMinute() << 5
+					| dateTime.getSecond() >> 1;
+		}
+
+		/**
+		 * @param size The uncompressed size
+		 */
+		public record Compressed(int method, long crc, long size, byte[] data) {
+		}
+
+		/**
+		 * Copy all the entries of the source zip as they are, before any other entry has been written.
+		 */
+		public void copyAll(RawZipFile source) throws IOException {
+			// The source's central directory records are reused, so its entries must stay at the same offsets.
+			if (position != 0 || buffer.position() != 0) {
+				throw new IllegalStateException("Entries can only be copied to the start of an empty zip");
+			}
+
+			// Everything before the central directory belongs to the entries
+			final long length = source.centralDirectoryOffset;
+			long transferred = 0;
+			channel.position(0);
+
+			while (transferred < length) {
+				final long written = source.channel.transferTo(transferred, length - transferred, channel);
+
+				if (written <= 0) {
+					throw new ZipException("Unexpected end of zip while copying its entries");
+				}
+
+				transferred += written;
+			}
+
+			position = length;
+
+			final ByteBuffer records = source.centralDirectory.duplicate();
+			final byte[] bytes = new byte[records.remaining()];
+			records.get(bytes);
+			centralDirectory.add(bytes);
+			count += source.entries().size();
+		}
+
+		/**
+		 * Write the central directory, after which no more entries may be written.
+		 */
+		public void finish() throws IOException {
+			final long centralDirectoryOffset = position + buffer.position();
+			long centralDirectorySize = 0;
+
+			for (byte[] record : centralDirectory) {
+				put(record);
+				centralDirectorySize += record.length;
+			}
+
+			final boolean zip64 = count >= MAX_COUNT || centralDirectorySize >= MAX_SIZE || centralDirectoryOffset >= MAX_SIZE;
+
+			if (zip64) {
+				// As written by ZipOutputStream, the values in the end header that do not fit are set to their maximum
+				final long zip64EndOffset = centralDirectoryOffset + centralDirectorySize;
+				ensureCapacity(ZIP64_END_HEADER_SIZE + ZIP64_LOCATOR_SIZE);
+				buffer.putInt(ZIP64_END_SIGNATURE);
+				buffer.putLong(ZIP64_END_HEADER_SIZE - 12); // Size of the rest of the record
+				buffer.putShort((short) ZIP64_VERSION);
+				buffer.putShort((short) ZIP64_VERSION);
+				buffer.putInt(0);
+				buffer.putInt(0);
+				buffer.putLong(count);
+				buffer.putLong(count);
+				buffer.putLong(centralDirectorySize);
+				buffer.putLong(centralDirectoryOffset);
+
+				buffer.putInt(ZIP64_LOCATOR_SIGNATURE);
+				buffer.putInt(0);
+				buffer.putLong(zip64EndOffset);
+				buffer.putInt(1);
+			}
+
+			ensureCapacity(END_HEADER_SIZE);
+			buffer.putInt(END_SIGNATURE);
+			buffer.putShort((short) 0);
+			buffer.putShort((short) 0);
+			buffer.putShort((short) Math.min(count, MAX_COUNT));
+			buffer.putShort((short) Math.min(count, MAX_COUNT));
+			buffer.putInt((int) Math.min(centralDirectorySize, MAX_SIZE));
+			buffer.putInt((int) Math.min(centralDirectoryOffset, MAX_SIZE));
+			buffer.putShort((short) 0);
+			flush();
+
+			channel.truncate(position);
+		}
+
+		private void writeLocalHeader(String name, int method, int dosTime, long crc, long compressedSize, long size, byte[] extra) throws IOException {
+			final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			final boolean dataDescriptor = method == ZipEntry.DEFLATED;
+
+			ensureCapacity(LOC_HEADER_SIZE + nameBytes.length + extra.length);
+			buffer.putInt(LOC_SIGNATURE);
+			buffer.putShort((short) version(method));
+			buffer.putShort((short) flags(method));
+			buffer.putShort((short) method);
+			buffer.putInt(dosTime);
+			// Deflated entries have their sizes written after the data, as is done by ZipOutputStream
+			buffer.putInt(dataDescriptor ? 0 : (int) crc);
+			buffer.putInt(dataDescriptor ? 0 : (int) compressedSize);
+			buffer.putInt(dataDescriptor ? 0 : (int) size);
+			buffer.putShort((short) nameBytes.length);
+			buffer.putShort((short) extra.length);
+			buffer.put(nameBytes);
+			buffer.put(extra);
+		}
+
+		private void finishEntry(String name, int method, int dosTime, long crc, long compressedSize, long size, byte[] extra, long offset) throws IOException {
+			checkSize(name, compressedSize);
+			checkSize(name, size);
+
+			if (method == ZipEntry.DEFLATED) {
+				ensureCapacity(EXT_HEADER_SIZE);
+				buffer.putInt(EXT_SIGNATURE);
+				buffer.putInt((int) crc);
+				buffer.putInt((int) compressedSize);
+				buffer.putInt((int) size);
+			}
+
+			// Entries past 4GB have their offset in a Zip64 extra field, the sizes always fit
+			final boolean zip64 = offset >= MAX_SIZE;
+			final int zip64ExtraLength = zip64 ? 12 : 0;
+			final int version = zip64 ? ZIP64_VERSION : version(method);
+			final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer record = ByteBuffer.allocate(CEN_HEADER_SIZE + nameBytes.length + zip64ExtraLength + extra.length).order(ByteOrder.LITTLE_ENDIAN);
+			record.putInt(CEN_SIGNATURE);
+			record.putShort((short) version);
+			record.putShort((short) version);
+			record.putShort((short) flags(method));
+			record.putShort((short) method);
+			record.putInt(dosTime);
+			record.putInt((int) crc);
+			record.putInt((int) compressedSize);
+			record.putInt((int) size);
+			record.putShort((short) nameBytes.length);
+			record.putShort((short) (zip64ExtraLength + extra.length));
+			record.putShort((short) 0); // Comment length
+			record.putShort((short) 0); // Disk number
+			record.putShort((short) 0); // Internal attributes
+			record.putInt(0); // External attributes
+			record.putInt((int) Math.min(offset, MAX_SIZE));
+			record.put(nameBytes);
+
+			if (zip64) {
+				record.putShort((short) ZIP64_EXTRA_ID);
+				record.putShort((short) 8);
+				record.putLong(offset);
+			}
+
+			record.put(extra);
+
+			centralDirectory.add(record.array());
+			count++;
+		}
+
+		private static int version(int method) {
+			return method == ZipEntry.DEFLATED ? 20 : 10;
+		}
+
+		private static int flags(int method) {
+			return method == ZipEntry.DEFLATED ? FLAG_UTF8 | FLAG_DATA_DESCRIPTOR : FLAG_UTF8;
+		}
+
+		private static void checkSize(String name, long size) throws ZipException {
+			if (size >= MAX_SIZE) {
+				throw new ZipException("Entry %s is too large, entries of 4GB or more are not supported".formatted(name));
+			}
+		}
+
+		private static byte[] deflate(byte[] data) {
+			final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+			try {
+				deflater.setInput(data);
+				deflater.finish();
+
+				final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+				final byte[] buffer = new byte[8192];
+
+				while (!deflater.finished()) {
+					output.write(buffer, 0, deflater.deflate(buffer));
+				}
+
+				return output.toByteArray();
+			} finally {
+				deflater.end();
+			}
+		}
+
+		private void put(byte[] bytes) throws IOException {
+			if (bytes.length > buffer.capacity()) {
+				flush();
+				write(ByteBuffer.wrap(bytes));
+				return;
+			}
+
+			ensureCapacity(bytes.length);
+			buffer.put(bytes);
+		}
+
+		private void ensureCapacity(int length) throws IOException {
+			if (buffer.remaining() < length) {
+				flush();
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			write(buffer);
+			buffer.clear();
+		}
+
+		private void write(ByteBuffer bytes) throws IOException {
+			while (bytes.hasRemaining()) {
+				position += channel.write(bytes, position);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
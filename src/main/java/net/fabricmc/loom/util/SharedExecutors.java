@@ -0,0 +1,154 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The thread pools shared by all of Loom's parallel work, so that tasks running at the same time do not each start
+ * their own threads and oversubscribe the CPU.
+ *
+ * <p>The CPU pool is sized by {@link net.fabricmc.loom.util.gradle.SharedExecutorsBuildService} to match the build's
+ * max workers. Outside of a build, such as in a worker process, it defaults to the number of available processors.
+ * The download pool has a fixed size, as downloads are limited by the network rather than the CPU.
+ * All of the threads are daemon threads that exit when idle, so the pools do not need to be shut down by their users.
+ */
+public final class SharedExecutors {
+	/**
+	 * The number of threads in the download executor, which is the most downloads that can run at once.
+	 */
+	public static final int DOWNLOAD_THREADS = 32;
+	private static final long KEEP_ALIVE_SECONDS = 30;
+	// Extra threads the CPU pool may start while its threads are blocked waiting on other work, the same as the default.
+	private static final int MAX_COMPENSATION_THREADS = 256;
+
+	private static final Object LOCK = new Object();
+	private static @Nullable Pools pools;
+
+	private SharedExecutors() {
+	}
+
+	/**
+	 * @return The executor for CPU bound work, waiting on futures from within it does not exhaust the pool.
+	 */
+	public static ExecutorService cpu() {
+		return getPools().cpu();
+	}
+
+	/**
+	 * @return The executor for downloads, which mostly wait on the network. It is only used for downloads, so that other
+	 * work cannot hold back the number of downloads that run at once.
+	 */
+	public static ExecutorService downloads() {
+		return getPools().downloads();
+	}
+
+	/**
+	 * @return The number of threads in the CPU executor
+	 */
+	public static int parallelism() {
+		return getPools().cpu().getParallelism();
+	}
+
+	/**
+	 * Size the pools for the given number of CPU threads, replacing the current pools if they differ.
+	 * Work already submitted to replaced pools is allowed to complete.
+	 */
+	public static void configure(int parallelism) {
+		final int cpuThreads = Math.max(1, Math.min(parallelism, Runtime.getRuntime().availableProcessors()));
+
+		synchronized (LOCK) {
+			if (pools != null && pools.cpu().getParallelism() == cpuThreads) {
+				return;
+			}
+
+			shutdown();
+			pools = Pools.create(cpuThreads);
+		}
+	}
+
+	/**
+	 * Shut down the pools once their submitted work is complete, new pools are created on next use.
+	 */
+	public static void shutdown() {
+		synchronized (LOCK) {
+			if (pools != null) {
+				pools.cpu().shutdown();
+				pools.downloads().shutdown();
+				pools = null;
+			}
+		}
+	}
+
+	private static Pools getPools() {
+		synchronized (LOCK) {
+			if (pools == null) {
+				pools = Pools.create(Runtime.getRuntime().availableProcessors());
+			}
+
+			return pools;
+		}
+	}
+
+	private record Pools(ForkJoinPool cpu, ThreadPoolExecutor downloads) {
+		static Pools create(int cpuThreads) {
+			// Threads created by the pools would otherwise not be able to load Loom's classes via the context class loader
+			final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+			final AtomicInteger cpuThreadCount = new AtomicInteger();
+			final ForkJoinPool cpu = new ForkJoinPool(cpuThreads, pool -> {
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("Loom Worker " + cpuThreadCount.incrementAndGet());
+				thread.setContextClassLoader(contextClassLoader);
+				return thread;
+			}, null, false, 0, cpuThreads + MAX_COMPENSATION_THREADS, 1, null, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+
+			final ThreadPoolExecutor downloads = new ThreadPoolExecutor(DOWNLOAD_THREADS, DOWNLOAD_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreadFactory("Loom Download ", contextClassLoader));
+			downloads.allowCoreThreadTimeOut(true);
+
+			return new Pools(cpu, downloads);
+		}
+
+		private static ThreadFactory daemonThreadFactory(String prefix, ClassLoader contextClassLoader) {
+			final AtomicInteger count = new AtomicInteger();
+
+			return runnable -> {
+				final Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setContextClassLoader(contextClassLoader);
+				return thread;
+			};
+		}
+	}
+}
@@ -27,13 +27,15 @@ package net.fabricmc.loom.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -58,7 +60,7 @@ public class ThreadingUtils {
 
 	public static void run(Collection<UnsafeRunnable> jobs) {
 		try {
-			ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs.size(), Runtime.getRuntime().availableProcessors())));
+			ExecutorService service = SharedExecutors.cpu();
 			List<Future<?>> futures = new LinkedList<>();
 
 			for (UnsafeRunnable runnable : jobs) {
@@ -74,8 +76,6 @@ public class ThreadingUtils {
 			for (Future<?> future : futures) {
 				future.get();
 			}
-
-			service.shutdownNow();
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
@@ -94,7 +94,7 @@ public class ThreadingUtils {
 
 	public static <T> List<T> get(Collection<UnsafeCallable<T>> jobs) {
 		try {
-			ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs.size(), Runtime.getRuntime().availableProcessors())));
+			ExecutorService service = SharedExecutors.cpu();
 			List<Future<T>> futures = new LinkedList<>();
 			List<T> result = new ArrayList<>();
 
@@ -112,7 +112,6 @@ public class ThreadingUtils {
 				result.add(future.get());
 			}
 
-			service.shutdownNow();
 			return result;
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
@@ -135,58 +134,157 @@ public class ThreadingUtils {
 		return new TaskCompleter();
 	}
 
+	/**
+	 * Runs jobs on the shared CPU executor, failing fast when any of them fail.
+	 *
+	 * <p>Once a job has failed, jobs that have not started yet are skipped and later jobs are not run.
+	 * {@link #complete()} then throws the first failure, with any others added as suppressed exceptions. A failing
+ * completion listener is reported in the same way.
+	 * At most {@link #MAX_QUEUED_PER_THREAD} jobs per thread are queued at once, when the queue is full the job is run
+	 * by the thread adding it, so that adding a very large number of jobs does not hold them all in memory.
+	 *
+	 * <p>Waiting for the jobs is done as a {@link ForkJoinPool.ManagedBlocker}, so a job on the shared executor that
+	 * completes its own task completer, directly or while running a job for a full queue, does not starve the pool.
+	 */
 	public static class TaskCompleter implements Function<Throwable, Void> {
+		private static final int MAX_QUEUED_PER_THREAD = 16;
+
 		Stopwatch stopwatch = Stopwatch.createUnstarted();
-		List<CompletableFuture<?>> tasks = new ArrayList<>();
-		ExecutorService service = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+		ExecutorService service = SharedExecutors.cpu();
 		List<UnsafeConsumer<Stopwatch>> completionListener = new ArrayList<>();
+		private final int maxQueued = SharedExecutors.parallelism() * MAX_QUEUED_PER_THREAD;
+		private final Semaphore queued = new Semaphore(maxQueued);
+		private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		private volatile boolean failed;
 
 		public TaskCompleter add(UnsafeRunnable job) {
 			if (!stopwatch.isRunning()) {
 				stopwatch.start();
 			}
 
-			tasks.add(CompletableFuture.runAsync(() -> {
-				try {
-					job.run();
-				} catch (Throwable throwable) {
-					throw new RuntimeException(throwable);
-				}
-			}, service).exceptionally(this));
+			if (failed) {
+				return this;
+			}
+
+			if (!queued.tryAcquire()) {
+				run(job);
+				return this;
+			}
+
+			try {
+				service.execute(() -> {
+					try {
+						run(job);
+					} finally {
+						queued.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				queued.release();
+				throw e;
+			}
 
 			return this;
 		}
 
+		private void run(UnsafeRunnable job) {
+			if (failed) {
+				return;
+			}
+
+			try {
+				job.run();
+			} catch (Throwable throwable) {
+				apply(throwable);
+			}
+		}
+
 		public TaskCompleter onComplete(UnsafeConsumer<Stopwatch> consumer) {
 			completionListener.add(consumer);
 			return this;
 		}
 
 		public void complete() {
+			RuntimeException interrupted = null;
+
 			try {
-				CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).exceptionally(this).get();
-				service.shutdownNow();
+				// Wait for all queued jobs to finish
+				ForkJoinPool.managedBlock(new PermitBlocker(queued, maxQueued));
+				queued.release(maxQueued);
 
 				if (stopwatch.isRunning()) {
 					stopwatch.stop();
 				}
-			} catch (Throwable e) {
-				throw new RuntimeException(e);
-			} finally {
+			} catch (InterruptedException e) {
+				failed = true;
+				Thread.currentThread().interrupt();
+				interrupted = new RuntimeException("Interrupted while waiting for tasks to complete", e);
+			}
+
+			// Listener failures are reported along with the job failures
+			for (UnsafeConsumer<Stopwatch> consumer : completionListener) {
 				try {
-					for (UnsafeConsumer<Stopwatch> consumer : completionListener) {
-						consumer.accept(stopwatch);
-					}
+					consumer.accept(stopwatch);
 				} catch (Throwable e) {
-					e.printStackTrace();
+					apply(e);
+				}
+			}
+
+			synchronized (failures) {
+				if (interrupted != null) {
+					failures.forEach(interrupted::addSuppressed);
+					throw interrupted;
+				}
+
+				if (!failures.isEmpty()) {
+					final RuntimeException exception = new RuntimeException("Failed to complete tasks", failures.get(0));
+
+					for (Throwable suppressed : failures.subList(1, failures.size())) {
+						exception.addSuppressed(suppressed);
+					}
+
+					throw exception;
 				}
 			}
 		}
 
+		/**
+		 * Record a failure, causing the remaining jobs to be skipped.
+		 */
 		@Override
 		public Void apply(Throwable throwable) {
-			throwable.printStackTrace();
+			failed = true;
+			failures.add(throwable);
 			return null;
 		}
 	}
+
+	/**
+	 * Acquires permits from a semaphore, allowing the fork join pool to start another thread while waiting.
+	 */
+	private static final class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+		private final Semaphore semaphore;
+		private final int permits;
+		private boolean acquired;
+
+		private PermitBlocker(Semaphore semaphore, int permits) {
+			this.semaphore = semaphore;
+			this.permits = permits;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!acquired) {
+				semaphore.acquire(permits);
+				acquired = true;
+			}
+
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return acquired || (acquired = semaphore.tryAcquire(permits));
+		}
+	}
 }
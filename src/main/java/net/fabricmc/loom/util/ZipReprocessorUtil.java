@@ -26,14 +26,20 @@ package net.fabricmc.loom.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
@@ -98,6 +104,55 @@ public class ZipReprocessorUtil {
 
 		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
 
+		try (RawZipFile zipFile = RawZipFile.open(file)) {
+			if (zipFile != null) {
+				reprocessRawZip(zipFile, tempFile, reproducibleFileOrder, preserveFileTimestamps, zipEntryCompression);
+			} else {
+				// Split, encrypted and other formats that cannot be copied without being inflated
+				reprocessZipEntries(file, tempFile, reproducibleFileOrder, preserveFileTimestamps, zipEntryCompression);
+			}
+		}
+
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void reprocessRawZip(RawZipFile zipFile, Path tempFile, boolean reproducibleFileOrder, boolean preserveFileTimestamps, ZipEntryCompression zipEntryCompression) throws IOException {
+		List<RawZipFile.Entry> entries = zipFile.entries();
+
+		if (reproducibleFileOrder) {
+			entries = entries.stream()
+					.sorted(Comparator.comparing(RawZipFile.Entry::name, ZipReprocessorUtil::specialOrdering))
+					.toList();
+		}
+
+		final int method = zipEntryCompressionMethod(zipEntryCompression);
+		final Set<String> names = new HashSet<>();
+
+		try (var writer = new RawZipFile.Writer(FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+			for (RawZipFile.Entry entry : entries) {
+				if (!names.add(entry.name())) {
+					throw new ZipException("duplicate entry: " + entry.name());
+				}
+
+				final int dosTime = preserveFileTimestamps ? entry.dosTime() : RawZipFile.Writer.CONSTANT_DOS_TIME;
+
+				// The extra fields may contain extended timestamps, so are only kept when preserving them.
+				final byte[] localExtra = preserveFileTimestamps ? zipFile.readLocalExtra(entry) : new byte[0];
+				final byte[] centralExtra = preserveFileTimestamps ? entry.extra() : new byte[0];
+
+				if (entry.method() == method) {
+					// The compressed data is already in the requested format, only the headers need to be rewritten.
+					writer.copy(zipFile, entry, dosTime, localExtra, centralExtra);
+				} else {
+					writer.write(entry.name(), method, dosTime, zipFile.readAllBytes(entry), localExtra, centralExtra);
+				}
+			}
+
+			writer.finish();
+		}
+	}
+
+	private static void reprocessZipEntries(Path file, Path tempFile, boolean reproducibleFileOrder, boolean preserveFileTimestamps, ZipEntryCompression zipEntryCompression) throws IOException {
 		try (var zipFile = new ZipFile(file.toFile());
 				var fileOutputStream = Files.newOutputStream(tempFile)) {
 			ZipEntry[] entries;
@@ -132,18 +187,54 @@ public class ZipReprocessorUtil {
 				}
 			}
 		}
-
-		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
 	}
 
 	/**
 	 * Appends an entry to a zip file, persevering the existing entry order and time stamps.
 	 * The new entry is added with a constant time stamp to ensure reproducibility.
+	 * The existing entries are copied unchanged into a new file, which then replaces the zip.
 	 * This method should only be used when a reproducible output is required, use {@link ZipUtils#add(Path, String, byte[])} normally.
 	 */
 	public static void appendZipEntry(Path file, String path, byte[] data) throws IOException {
 		final Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
 
+		try {
+			if (!appendRawZipEntry(file, tempFile, path, data)) {
+				appendZipEntryRecompressed(file, tempFile, path, data);
+			}
+
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * @return false if the zip uses a format that cannot be copied without being inflated
+	 */
+	private static boolean appendRawZipEntry(Path file, Path tempFile, String path, byte[] data) throws IOException {
+		try (RawZipFile zipFile = RawZipFile.open(file)) {
+			if (zipFile == null) {
+				return false;
+			}
+
+			for (RawZipFile.Entry entry : zipFile.entries()) {
+				if (entry.name().equals(path)) {
+					throw new IllegalArgumentException("Zip file (%s) already contains entry (%s)".formatted(file.getFileName().toString(), path));
+				}
+			}
+
+			try (var writer = new RawZipFile.Writer(FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+				writer.copyAll(zipFile);
+				writer.write(path, ZipEntry.DEFLATED, RawZipFile.Writer.CONSTANT_DOS_TIME, data);
+				writer.finish();
+			}
+
+			return true;
+		}
+	}
+
+	private static void appendZipEntryRecompressed(Path file, Path tempFile, String path, byte[] data) throws IOException {
 		try (var zipFile = new ZipFile(file.toFile());
 				var fileOutputStream = Files.newOutputStream(tempFile)) {
 			ZipEntry[] entries = zipFile.stream().toArray(ZipEntry[]::new);
@@ -166,8 +257,6 @@ public class ZipReprocessorUtil {
 				zipOutputStream.closeEntry();
 			}
 		}
-
-		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
 	}
 
 	private static void copyZipEntry(ZipOutputStream zipOutputStream, ZipEntry entry, InputStream inputStream) throws IOException {
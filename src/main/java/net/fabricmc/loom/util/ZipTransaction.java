@@ -0,0 +1,404 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.loom.LoomGradlePlugin;
+
+/**
+ * Makes a number of changes to a zip file, rewriting it only once.
+ *
+ * <p>Reads are made against the zip as it would be after the changes queued so far. Additions, replacements,
+ * deletions and transforms are queued, and then written in a single pass over the zip by {@link #commit()}.
+ * Transforms are run lazily, at most once per entry. Changes that have not been committed when the transaction is
+ * closed are discarded.
+ *
+ * <p>The zip must not be modified by anything else while the transaction is open.
+ */
+public final class ZipTransaction implements Closeable {
+	private final Path zip;
+	private final @Nullable ZipFile zipFile;
+	// Entry name -> the pending change to that entry, in the order they were first changed.
+	private final Map<String, Change> changes = new LinkedHashMap<>();
+	private boolean closed;
+
+	private ZipTransaction(Path zip, @Nullable ZipFile zipFile) {
+		this.zip = zip;
+		this.zipFile = zipFile;
+	}
+
+	/**
+	 * Open a transaction on the zip, the zip will be created on commit if it does not exist.
+	 */
+	public static ZipTransaction open(Path zip) throws IOException {
+		return new ZipTransaction(zip, Files.exists(zip) ? new ZipFile(zip.toFile()) : null);
+	}
+
+	public boolean contains(String path) {
+		final String name = toEntryName(path);
+		final Change change = changes.get(name);
+
+		if (change != null) {
+			return change.exists();
+		}
+
+		return getOriginalEntry(name) != null;
+	}
+
+	public byte[] read(String path) throws IOException {
+		final byte[] bytes = readNullable(path);
+
+		if (bytes == null) {
+			throw new NoSuchFileException(path);
+		}
+
+		return bytes;
+	}
+
+	public byte @Nullable [] readNullable(String path) throws IOException {
+		ensureOpen();
+		final String name = toEntryName(path);
+		final Change change = changes.get(name);
+
+		if (change == null) {
+			return readOriginal(name);
+		}
+
+		if (!change.exists()) {
+			return null;
+		}
+
+		// Apply the queued transforms now, and keep the result so that they are not run again on commit.
+		final byte[] bytes = change.apply(readOriginal(name));
+		changes.put(name, Change.write(bytes));
+		return bytes;
+	}
+
+	public <T> T readJson(String path, Class<T> clazz) throws IOException {
+		return fromJson(read(path), clazz);
+	}
+
+	/**
+	 * Add an entry, replacing it if it already exists.
+	 */
+	public void add(String path, byte[] bytes) {
+		ensureOpen();
+		changes.put(toEntryName(path), Change.write(bytes));
+	}
+
+	public void add(String path, String str) {
+		add(path, str.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Add an entry with the contents of a file, replacing it if it already exists.
+	 *
+	 * <p>The file is streamed into the zip as a stored entry on commit, so it is never held in memory. This suits
+	 * files that are already compressed, such as nested jars. The file must not change until the transaction has been
+	 * committed.
+	 */
+	public void add(String path, Path file) {
+		ensureOpen();
+		changes.put(toEntryName(path), Change.copy(file));
+	}
+
+	/**
+	 * Replace an existing entry.
+	 *
+	 * @throws NoSuchFileException if the entry does not exist
+	 */
+	public void replace(String path, byte[] bytes) throws NoSuchFileException {
+		if (!contains(path)) {
+			throw new NoSuchFileException(path);
+		}
+
+		add(path, bytes);
+	}
+
+	public void deleteIfExists(String path) {
+		ensureOpen();
+		changes.put(toEntryName(path), Change.DELETE);
+	}
+
+	/**
+	 * Queue a transform of an entry, the transformer is not called if the entry does not exist.
+	 *
+	 * @return true if the entry exists and will be transformed
+	 */
+	public boolean transform(String path, ZipUtils.UnsafeUnaryOperator<byte[]> transformer) {
+		if (!contains(path)) {
+			return false;
+		}
+
+		final String name = toEntryName(path);
+		final Change change = changes.get(name);
+		changes.put(name, change != null ? change.andThen(transformer) : new Change(true, transformer, null));
+		return true;
+	}
+
+	/**
+	 * @return The number of entries that exist and will be transformed
+	 */
+	public int transform(Map<String, ZipUtils.UnsafeUnaryOperator<byte[]>> transforms) {
+		int count = 0;
+
+		for (Map.Entry<String, ZipUtils.UnsafeUnaryOperator<byte[]>> entry : transforms.entrySet()) {
+			if (entry.getValue() != null && transform(entry.getKey(), entry.getValue())) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	public <T> boolean transformJson(Class<T> typeOfT, String path, ZipUtils.UnsafeUnaryOperator<T> transformer) {
+		return transform(path, bytes -> LoomGradlePlugin.GSON.toJson(transformer.apply(fromJson(bytes, typeOfT)), typeOfT).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Write the queued changes to the zip, the zip is left untouched when there is nothing to change.
+	 * The transaction is closed once the changes have been written.
+	 *
+	 * <p>Unchanged entries are copied without being inflated and deflated again, when the zip's format allows it.
+	 */
+	public void commit() throws IOException {
+		ensureOpen();
+
+		if (changes.isEmpty()) {
+			close();
+			return;
+		}
+
+		final Path tempFile = zip.resolveSibling(zip.getFileName() + ".tmp-" + UUID.randomUUID());
+
+		try {
+			try (RawZipFile source = zipFile != null ? RawZipFile.open(zip) : null;
+					FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				final RawZipFile.Writer writer = new RawZipFile.Writer(channel);
+				final Set<String> written = new HashSet<>();
+
+				if (source != null) {
+					writeRawEntries(writer, source, written);
+				} else if (zipFile != null) {
+					writeEntries(writer, written);
+				}
+
+				// Entries that did not exist before are appended, in the order that they were added.
+				final int dosTime = RawZipFile.Writer.toDosTime(FileTime.fromMillis(System.currentTimeMillis()));
+
+				for (Map.Entry<String, Change> entry : changes.entrySet()) {
+					if (!entry.getValue().exists() || written.contains(entry.getKey())) {
+						continue;
+					}
+
+					addParentDirectories(writer, entry.getKey(), dosTime, written);
+					written.add(entry.getKey());
+
+					if (entry.getValue().source() != null) {
+						writer.writeStored(entry.getKey(), dosTime, entry.getValue().source());
+					} else {
+						writer.write(entry.getKey(), ZipEntry.DEFLATED, dosTime, entry.getValue().apply(null));
+					}
+				}
+
+				writer.finish();
+			}
+
+			// The zip file must be closed before it can be replaced on Windows.
+			close();
+			Files.move(tempFile, zip, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private void writeRawEntries(RawZipFile.Writer writer, RawZipFile source, Set<String> written) throws IOException {
+		for (RawZipFile.Entry entry : source.entries()) {
+			if (!written.add(entry.name())) {
+				continue;
+			}
+
+			final Change change = changes.get(entry.name());
+
+			if (change == null) {
+				writer.copy(source, entry, entry.dosTime(), source.readLocalExtra(entry), entry.extra());
+			} else if (change.source() != null) {
+				writer.writeStored(entry.name(), entry.dosTime(), change.source());
+			} else if (change.exists()) {
+				writer.write(entry.name(), getMethod(entry.method()), entry.dosTime(), change.apply(source.readAllBytes(entry)));
+			}
+		}
+	}
+
+	/**
+	 * Used for zips that {@link RawZipFile} cannot read, every entry is inflated and deflated again.
+	 */
+	private void writeEntries(RawZipFile.Writer writer, Set<String> written) throws IOException {
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+		while (entries.hasMoreElements()) {
+			final ZipEntry entry = entries.nextElement();
+
+			if (!written.add(entry.getName())) {
+				continue;
+			}
+
+			final Change change = changes.get(entry.getName());
+			final int dosTime = RawZipFile.Writer.toDosTime(FileTime.fromMillis(entry.getTime()));
+
+			if (change == null) {
+				try (InputStream inputStream = zipFile.getInputStream(entry)) {
+					writer.write(entry.getName(), getMethod(entry.getMethod()), dosTime, inputStream.readAllBytes());
+				}
+			} else if (change.source() != null) {
+				writer.writeStored(entry.getName(), dosTime, change.source());
+			} else if (change.exists()) {
+				writer.write(entry.getName(), getMethod(entry.getMethod()), dosTime, change.apply(readOriginal(entry.getName())));
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		changes.clear();
+
+		if (zipFile != null) {
+			zipFile.close();
+		}
+	}
+
+	@Nullable
+	private ZipEntry getOriginalEntry(String name) {
+		if (zipFile == null) {
+			return null;
+		}
+
+		// ZipFile.getEntry also matches directories when given their name without a trailing slash
+		final ZipEntry entry = zipFile.getEntry(name);
+		return entry != null && !entry.isDirectory() ? entry : null;
+	}
+
+	private byte @Nullable [] readOriginal(String name) throws IOException {
+		final ZipEntry entry = getOriginalEntry(name);
+
+		if (entry == null) {
+			return null;
+		}
+
+		try (InputStream inputStream = zipFile.getInputStream(entry)) {
+			return inputStream.readAllBytes();
+		}
+	}
+
+	private static int getMethod(int method) {
+		return method == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+	}
+
+	private static void addParentDirectories(RawZipFile.Writer writer, String name, int dosTime, Set<String> written) throws IOException {
+		int index = name.indexOf('/');
+
+		while (index != -1) {
+			final String directory = name.substring(0, index + 1);
+
+			if (written.add(directory)) {
+				writer.write(directory, ZipEntry.STORED, dosTime, new byte[0]);
+			}
+
+			index = name.indexOf('/', index + 1);
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("Zip transaction for %s has already been closed".formatted(zip));
+		}
+	}
+
+	private static String toEntryName(String path) {
+		return path.startsWith("/") ? path.substring(1) : path;
+	}
+
+	private static <T> T fromJson(byte[] bytes, Class<T> typeOfT) {
+		return LoomGradlePlugin.GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), typeOfT);
+	}
+
+	/**
+	 * @param exists Whether the entry exists once the change has been applied
+	 * @param operation Produces the new content of the entry from its original content, null when the entry is deleted
+	 * @param source The file to stream the content of the entry from on commit, null when it is produced by the operation
+	 */
+	private record Change(boolean exists, ZipUtils.@Nullable UnsafeUnaryOperator<byte[]> operation, @Nullable Path source) {
+		private static final Change DELETE = new Change(false, null, null);
+
+		static Change write(byte[] bytes) {
+			return new Change(true, original -> bytes, null);
+		}
+
+		static Change copy(Path file) {
+			return new Change(true, original -> Files.readAllBytes(file), file);
+		}
+
+		Change andThen(ZipUtils.UnsafeUnaryOperator<byte[]> transformer) {
+			final ZipUtils.UnsafeUnaryOperator<byte[]> previous = operation;
+			return new Change(true, original -> transformer.apply(previous != null ? previous.apply(original) : original), null);
+		}
+
+		byte[] apply(byte @Nullable [] original) throws IOException {
+			if (operation == null) {
+				throw new IllegalStateException("Cannot read a deleted entry");
+			}
+
+			return operation.apply(original);
+		}
+	}
+}
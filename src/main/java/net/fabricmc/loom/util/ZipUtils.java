@@ -27,21 +27,34 @@ package net.fabricmc.loom.util;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
@@ -51,6 +64,9 @@ import org.objectweb.asm.ClassWriter;
 import net.fabricmc.loom.LoomGradlePlugin;
 
 public class ZipUtils {
+	// The number of files per thread that may be compressed ahead of being written
+	private static final int PACK_QUEUE_PER_THREAD = 4;
+
 	public static boolean isZip(Path zip) throws IOException {
 		if (Files.notExists(zip)) {
 			throw new NoSuchFileException("Cannot check if '" + zip + "' is a zip because it doesn't exist!");
@@ -77,19 +93,95 @@ public class ZipUtils {
 		}
 	}
 
+	/**
+	 * Check which of the given files exist in the zip, reading its central directory once.
+	 *
+	 * @return The names of the files that exist
+	 */
+	public static Set<String> findFiles(Path zip, Collection<String> names) throws IOException {
+		final Set<String> found = new HashSet<>();
+
+		try (RawZipFile zipFile = RawZipFile.open(zip)) {
+			if (zipFile != null) {
+				for (RawZipFile.Entry entry : zipFile.entries()) {
+					if (names.contains(entry.name())) {
+						found.add(entry.name());
+					}
+				}
+
+				return found;
+			}
+		}
+
+		try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+			for (String name : names) {
+				if (zipFile.getEntry(name) != null) {
+					found.add(name);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Extract all files from the zip, writing them in parallel.
+	 */
 	public static void unpackAll(Path zip, Path output) throws IOException {
-		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(zip, false);
-				Stream<Path> walk = Files.walk(fs.getRoot())) {
-			Iterator<Path> iterator = walk.iterator();
-
-			while (iterator.hasNext()) {
-				Path fsPath = iterator.next();
-				if (!Files.isRegularFile(fsPath)) continue;
-				Path dstPath = output.resolve(fs.getRoot().relativize(fsPath).toString());
-				Path dstPathParent = dstPath.getParent();
-				if (dstPathParent != null) Files.createDirectories(dstPathParent);
-				Files.copy(fsPath, dstPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		final Path root = output.toAbsolutePath().normalize();
+
+		try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+			final Map<Path, ZipEntry> files = new LinkedHashMap<>();
+
+			for (ZipEntry entry : Collections.list(zipFile.entries())) {
+				if (entry.isDirectory()) continue;
+				files.putIfAbsent(resolveEntry(root, entry.getName()), entry);
+			}
+
+			// Create the directories up front, so that the files can be written in any order.
+			final Set<Path> directories = new HashSet<>();
+
+			for (Path file : files.keySet()) {
+				if (directories.add(file.getParent())) {
+					Files.createDirectories(file.getParent());
+				}
+			}
+
+			final ThreadingUtils.TaskCompleter completer = ThreadingUtils.taskCompleter();
+
+			for (Map.Entry<Path, ZipEntry> file : files.entrySet()) {
+				completer.add(() -> {
+					try (InputStream inputStream = zipFile.getInputStream(file.getValue())) {
+						Files.copy(inputStream, file.getKey(), StandardCopyOption.REPLACE_EXISTING);
+					}
+
+					Files.setLastModifiedTime(file.getKey(), file.getValue().getLastModifiedTime());
+				});
+			}
+
+			complete(completer);
+		}
+	}
+
+	private static Path resolveEntry(Path root, String name) throws IOException {
+		final Path path = root.resolve(name.startsWith("/") ? name.substring(1) : name).normalize();
+
+		if (!path.startsWith(root) || path.equals(root)) {
+			throw new IOException("Zip entry '%s' is outside of the output directory".formatted(name));
+		}
+
+		return path;
+	}
+
+	private static void complete(ThreadingUtils.TaskCompleter completer) throws IOException {
+		try {
+			completer.complete();
+		} catch (RuntimeException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
 			}
+
+			throw e;
 		}
 	}
 
@@ -126,33 +218,88 @@ public class ZipUtils {
 		return LoomGradlePlugin.GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), clazz);
 	}
 
+	/**
+	 * Create a zip containing the files in a directory, in a deterministic order.
+	 * The files are compressed in parallel, with a bounded number of them held in memory at once.
+	 */
 	public static void pack(Path from, Path zip) throws IOException {
 		Files.deleteIfExists(zip);
 
 		if (!Files.isDirectory(from)) throw new IllegalArgumentException(from + " is not a directory!");
 
-		int count = 0;
+		final List<Path> files;
 
-		try (FileSystemUtil.Delegate fs = FileSystemUtil.getJarFileSystem(zip, true);
-				Stream<Path> walk = Files.walk(from)) {
-			Iterator<Path> iterator = walk.iterator();
+		try (Stream<Path> walk = Files.walk(from)) {
+			files = walk.filter(Files::isRegularFile).sorted().toList();
+		}
 
-			while (iterator.hasNext()) {
-				Path fromPath = iterator.next();
-				if (!Files.isRegularFile(fromPath)) continue;
-				Path fsPath = fs.get().getPath(from.relativize(fromPath).toString());
-				Path fsPathParent = fsPath.getParent();
-				if (fsPathParent != null) Files.createDirectories(fsPathParent);
-				Files.copy(fromPath, fsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
-				count++;
+		if (files.isEmpty()) {
+			throw new IOException("Noting packed into %s from %s".formatted(zip, from));
+		}
+
+		final int maxPending = SharedExecutors.parallelism() * PACK_QUEUE_PER_THREAD;
+		final Deque<CompletableFuture<PackedFile>> pending = new ArrayDeque<>();
+		final Set<String> directories = new HashSet<>();
+		final Iterator<Path> iterator = files.iterator();
+
+		try (var writer = new RawZipFile.Writer(FileChannel.open(zip, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+			while (iterator.hasNext() || !pending.isEmpty()) {
+				while (iterator.hasNext() && pending.size() < maxPending) {
+					final Path file = iterator.next();
+					pending.add(CompletableFuture.supplyAsync(() -> packFile(from, file), SharedExecutors.cpu()));
+				}
+
+				final PackedFile packed = join(pending.remove());
+				final byte[] empty = new byte[0];
+
+				// Add the directory entries before their first file
+				for (int i = packed.name().indexOf('/'); i != -1; i = packed.name().indexOf('/', i + 1)) {
+					final String directory = packed.name().substring(0, i + 1);
+
+					if (directories.add(directory)) {
+						final int dosTime = RawZipFile.Writer.toDosTime(Files.getLastModifiedTime(from.resolve(directory)));
+						writer.write(directory, ZipEntry.DEFLATED, dosTime, empty);
+					}
+				}
+
+				writer.write(packed.name(), packed.dosTime(), packed.data(), empty, empty);
 			}
+
+			writer.finish();
+		} catch (IOException | RuntimeException e) {
+			pending.forEach(future -> future.cancel(false));
+			Files.deleteIfExists(zip);
+			throw e;
 		}
+	}
 
-		if (count == 0) {
-			throw new IOException("Noting packed into %s from %s".formatted(zip, from));
+	private static PackedFile packFile(Path from, Path file) {
+		try {
+			final StringJoiner name = new StringJoiner("/");
+			from.relativize(file).forEach(element -> name.add(element.toString()));
+
+			final int dosTime = RawZipFile.Writer.toDosTime(Files.getLastModifiedTime(file));
+			return new PackedFile(name.toString(), dosTime, RawZipFile.Writer.compress(ZipEntry.DEFLATED, Files.readAllBytes(file)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 
+	private static <T> T join(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException uioe) {
+				throw uioe.getCause();
+			}
+
+			throw e;
+		}
+	}
+
+	private record PackedFile(String name, int dosTime, RawZipFile.Writer.Compressed data) {
+	}
+
 	public static void add(Path zip, String path, String str) throws IOException {
 		add(zip, path, str.getBytes(StandardCharsets.UTF_8));
 	}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The decoders for the HTTP content encodings that downloads accept.
+ *
+ * <p>gzip and deflate are supported out of the box. Decoders for other encodings, such as zstd or br, can be registered
+ * when a library that implements them is available. Every registered encoding is advertised to the server when
+ * downloading a string. Files are requested unencoded so that their downloads can be resumed, but an encoded response is
+ * still decoded.
+ */
+public final class ContentDecoders {
+	private static final Map<String, ContentDecoder> DECODERS = new ConcurrentHashMap<>();
+
+	static {
+		register("gzip", GZIPInputStream::new);
+		register("x-gzip", GZIPInputStream::new);
+		register("deflate", InflaterInputStream::new);
+	}
+
+	private ContentDecoders() {
+	}
+
+	/**
+	 * Register a decoder for a content encoding, replacing any existing decoder for it.
+	 */
+	public static void register(String encoding, ContentDecoder decoder) {
+		DECODERS.put(encoding.toLowerCase(Locale.ROOT), decoder);
+	}
+
+	/**
+	 * @return The value of the Accept-Encoding header, listing every supported encoding
+	 */
+	static String acceptEncoding() {
+		return DECODERS.keySet().stream().sorted().collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Decode a response body with the given Content-Encoding header value.
+	 */
+	static InputStream decode(String contentEncoding, InputStream inputStream) throws IOException {
+		final List<String> encodings = new ArrayList<>();
+
+		for (String encoding : contentEncoding.split(",")) {
+			encoding = encoding.trim().toLowerCase(Locale.ROOT);
+
+			if (!encoding.isEmpty() && !encoding.equals("identity")) {
+				encodings.add(encoding);
+			}
+		}
+
+		// The encodings are listed in the order that they were applied, so are decoded in reverse
+		for (int i = encodings.size() - 1; i >= 0; i--) {
+			final ContentDecoder decoder = DECODERS.get(encodings.get(i));
+
+			if (decoder == null) {
+				throw new DownloadException("Unsupported encoding: " + encodings.get(i));
+			}
+
+			inputStream = decoder.decode(inputStream);
+		}
+
+		return inputStream;
+	}
+
+	@FunctionalInterface
+	public interface ContentDecoder {
+		InputStream decode(InputStream inputStream) throws IOException;
+	}
+}
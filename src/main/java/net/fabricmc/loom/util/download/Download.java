@@ -47,21 +47,40 @@ import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.IntConsumer;
-import java.util.zip.GZIPInputStream;
-
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.util.AttributeHelper;
-import net.fabricmc.loom.util.Checksum;
+import net.fabricmc.loom.util.FileHashCache;
 
 public final class Download {
 	private static final String E_TAG = "ETag";
+	// The ETag of the response that a .part file was downloaded from, used to resume the download
+	private static final String PART_E_TAG = "LoomPartETag";
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(?:\\d+|\\*)");
 	private static final Logger LOGGER = LoggerFactory.getLogger(Download.class);
 	private static final Duration TIMEOUT = Duration.ofMinutes(1);
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// Algorithm name, as used in the expected hash -> the function to compute it
+	private static final Map<String, HashFunction> HASH_FUNCTIONS = Map.of(
+			"sha1", Hashing.sha1(),
+			"sha256", Hashing.sha256(),
+			"sha512", Hashing.sha512()
+	);
 	private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
 			.followRedirects(HttpClient.Redirect.ALWAYS)
 			.proxy(ProxySelector.getDefault())
@@ -81,8 +100,9 @@ public final class Download {
 	private final DownloadProgressListener progressListener;
 	private final HttpClient.Version httpVersion;
 	private final int downloadAttempt;
+	private final @Nullable DownloadStatistics statistics;
 
-	Download(URI url, String expectedHash, boolean useEtag, boolean forceDownload, boolean offline, Duration maxAge, DownloadProgressListener progressListener, HttpClient.Version httpVersion, int downloadAttempt) {
+	Download(URI url, String expectedHash, boolean useEtag, boolean forceDownload, boolean offline, Duration maxAge, DownloadProgressListener progressListener, HttpClient.Version httpVersion, int downloadAttempt, @Nullable DownloadStatistics statistics) {
 		this.url = url;
 		this.expectedHash = expectedHash;
 		this.useEtag = useEtag;
@@ -92,6 +112,7 @@ public final class Download {
 		this.progressListener = progressListener;
 		this.httpVersion = httpVersion;
 		this.downloadAttempt = downloadAttempt;
+		this.statistics = statistics;
 	}
 
 	private HttpRequest.Builder requestBuilder() {
@@ -103,13 +124,23 @@ public final class Download {
 
 	private HttpRequest getRequest() {
 		return requestBuilder()
+				.header("Accept-Encoding", ContentDecoders.acceptEncoding())
 				.build();
 	}
 
-	private HttpRequest getETagRequest(String etag) {
-		return requestBuilder()
-				.header("If-None-Match", etag)
-				.build();
+	private HttpRequest getFileRequest(Optional<String> eTag, @Nullable PartialDownload partialDownload) {
+		// Files are requested unencoded, an encoded response cannot be resumed and its length and progress are unknown
+		final HttpRequest.Builder builder = requestBuilder()
+				.header("Accept-Encoding", "identity");
+		eTag.ifPresent(value -> builder.header("If-None-Match", value));
+
+		if (partialDownload != null) {
+			// The server only sends the requested range if the file has not changed since the partial download, otherwise the whole file is sent.
+			builder.header("Range", "bytes=%d-".formatted(partialDownload.size()));
+			builder.header("If-Range", partialDownload.eTag());
+		}
+
+		return builder.build();
 	}
 
 	private <T> HttpResponse<T> send(HttpRequest httpRequest, HttpResponse.BodyHandler<T> bodyHandler) throws DownloadException {
@@ -177,9 +208,11 @@ public final class Download {
 			throw error(e, "Failed to create parent directories");
 		}
 
-		final HttpRequest httpRequest = eTag
-				.map(this::getETagRequest)
-				.orElseGet(this::getRequest);
+		// Continue from where a previous attempt stopped, if it was interrupted part way through.
+		final PartialDownload partialDownload = readPartialDownload(output);
+		final HttpRequest httpRequest = getFileRequest(eTag, partialDownload);
+
+		final long startTime = System.nanoTime();
 
 		// Create a .lock file, this allows us to re-download if the download was forcefully aborted part way through.
 		createLock(output);
@@ -202,10 +235,19 @@ public final class Download {
 		}
 
 		if (!success) {
+			if (partialDownload != null && statusCode == HTTP_RANGE_NOT_SATISFIABLE) {
+				// The partial file cannot be resumed, start again from the beginning on the next attempt.
+				tryDeletePartFile(output);
+			}
+
 			throw statusError("HTTP request returned unsuccessful status (%d)", statusCode);
 		}
 
-		downloadToPath(output, response);
+		final long bytes = downloadToPath(output, response, partialDownload);
+
+		if (statistics != null) {
+			statistics.recordTransfer(url, bytes, System.nanoTime() - startTime);
+		}
 
 		if (useEtag) {
 			final HttpHeaders headers = response.headers();
@@ -217,46 +259,64 @@ public final class Download {
 		}
 
 		if (expectedHash != null) {
-			// Ensure we downloaded the expected hash.
-			if (!isHashValid(output)) {
-				String downloadedHash;
-
-				try {
-					downloadedHash = Checksum.sha1Hex(output);
-					Files.deleteIfExists(output);
-				} catch (IOException e) {
-					downloadedHash = "unknown hash";
-				}
-
-				throw error("Failed to download (%s) with expected hash: %s got %s", url, expectedHash, downloadedHash);
-			}
-
-			// Write the hash to the file attribute, saves a lot of time trying to re-compute the hash when re-visiting this file.
+			// The hash was verified while downloading, write it to the file attribute, saves a lot of time trying to re-compute the hash when re-visiting this file.
 			writeHash(output, expectedHash);
 		}
 	}
 
-	private void downloadToPath(Path output, HttpResponse<InputStream> response) throws DownloadException {
+	/**
+	 * @return The number of bytes downloaded, excluding those resumed from a partial download
+	 */
+	private long downloadToPath(Path output, HttpResponse<InputStream> response, @Nullable PartialDownload partialDownload) throws DownloadException {
 		// Download the file initially to a .part file
 		final Path partFile = getPartFile(output);
+		final boolean resume = partialDownload != null && response.statusCode() == HttpURLConnection.HTTP_PARTIAL;
 
 		try {
 			Files.deleteIfExists(output);
-			Files.deleteIfExists(partFile);
+
+			if (!resume) {
+				deletePartFile(output);
+			}
 		} catch (IOException e) {
 			throw error(e, "Failed to delete existing file");
 		}
 
-		final long length = Long.parseLong(response.headers().firstValue("Content-Length").orElse("-1"));
-		AtomicLong totalBytes = new AtomicLong(0);
+		final long offset = resume ? partialDownload.size() : 0;
 
-		try (OutputStream outputStream = Files.newOutputStream(partFile, StandardOpenOption.CREATE_NEW)) {
-			copyWithCallback(decodeOutput(response), outputStream, value -> {
-				if (length < 0) {
-					return;
-				}
+		if (resume) {
+			final String contentRange = response.headers().firstValue("Content-Range").orElse("");
+			final Matcher matcher = CONTENT_RANGE.matcher(contentRange);
 
-				progressListener.onProgress(totalBytes.addAndGet(value), length);
+			if (!matcher.matches() || Long.parseLong(matcher.group(1)) != offset || !getContentEncoding(response).isEmpty()) {
+				tryDeletePartFile(output);
+				throw error("Unexpected partial response (%s), expected the range to start at %d bytes", contentRange, offset);
+			}
+
+			LOGGER.info("Resuming download of {} from {} bytes", url, offset);
+		}
+
+		// The length of an encoded response does not match the length of the decoded file
+		final long contentLength = getContentEncoding(response).isEmpty() ? Long.parseLong(response.headers().firstValue("Content-Length").orElse("-1")) : -1;
+		final long length = contentLength < 0 ? -1 : offset + contentLength;
+		AtomicLong totalBytes = new AtomicLong(offset);
+		// Hash the file as it is written, rather than reading it again once it has been downloaded
+		final Hasher hasher = expectedHash != null ? getHashFunction().newHasher() : null;
+
+		try (OutputStream outputStream = resume ? Files.newOutputStream(partFile, StandardOpenOption.APPEND) : Files.newOutputStream(partFile, StandardOpenOption.CREATE_NEW)) {
+			if (!resume) {
+				writePartEtag(partFile, response);
+			} else if (hasher != null) {
+				// Only the resumed part of the file needs to be read again
+				MoreFiles.asByteSource(partFile).copyTo(Funnels.asOutputStream(hasher));
+			}
+
+			copyWithCallback(decodeOutput(response), outputStream, hasher, value -> {
+				final long total = totalBytes.addAndGet(value);
+
+				if (length >= 0) {
+					progressListener.onProgress(total, length);
+				}
 			});
 		} catch (IOException e) {
 			throw error(e, "Failed to decode and write download output");
@@ -266,45 +326,98 @@ public final class Download {
 			throw error("No file was downloaded");
 		}
 
-		if (length > 0) {
-			try {
-				final long actualLength = Files.size(partFile);
+		if (length > 0 && totalBytes.get() != length) {
+			tryDeletePartFile(output);
+			throw error("Unexpected file length of %d bytes, expected %d bytes".formatted(totalBytes.get(), length));
+		}
 
-				if (actualLength != length) {
-					throw error("Unexpected file length of %d bytes, expected %d bytes".formatted(actualLength, length));
-				}
-			} catch (IOException e) {
-				throw error(e);
+		if (hasher != null) {
+			final String downloadedHash = hasher.hash().toString();
+
+			if (!downloadedHash.equalsIgnoreCase(expectedHash.substring(expectedHash.indexOf(':') + 1))) {
+				// Ensure that a file with the wrong hash is never moved to the output
+				tryDeletePartFile(output);
+				throw error("Failed to download (%s) with expected hash: %s got %s", url, expectedHash, downloadedHash);
 			}
 		}
 
 		try {
 			// Once the file has been fully read, move it to the destination file.
 			// This ensures that the output file only exists in fully populated state.
+			AttributeHelper.deleteAttribute(partFile, PART_E_TAG);
 			Files.move(partFile, output);
 		} catch (IOException e) {
 			throw error(e, "Failed to complete download");
 		}
+
+		return totalBytes.get() - offset;
 	}
 
-	private void copyWithCallback(InputStream is, OutputStream os, IntConsumer consumer) throws IOException {
-		byte[] buffer = new byte[1024];
+	private void copyWithCallback(InputStream is, OutputStream os, @Nullable Hasher hasher, IntConsumer consumer) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
 		int length;
 
 		while ((length = is.read(buffer)) > 0) {
 			os.write(buffer, 0, length);
+
+			if (hasher != null) {
+				hasher.putBytes(buffer, 0, length);
+			}
+
 			consumer.accept(length);
 		}
 	}
 
-	private InputStream decodeOutput(HttpResponse<InputStream> response) throws IOException {
-		final String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+	/**
+	 * Store the ETag of the response on the .part file, so that the download can be resumed if it is interrupted.
+	 */
+	private void writePartEtag(Path partFile, HttpResponse<InputStream> response) {
+		final String eTag = response.headers().firstValue(E_TAG.toLowerCase(Locale.ROOT)).orElse(null);
 
-		return switch (encoding) {
-		case "gzip" -> new GZIPInputStream(response.body());
-		case "" -> response.body();
-		default -> throw error("Unsupported encoding: %s", encoding);
-		};
+		// A range of an encoded response cannot be appended to the decoded file, and weak ETags cannot be used with If-Range.
+		if (eTag == null || eTag.startsWith("W/") || !getContentEncoding(response).isEmpty()) {
+			return;
+		}
+
+		try {
+			AttributeHelper.writeAttribute(partFile, PART_E_TAG, eTag);
+		} catch (IOException e) {
+			LOGGER.debug("Failed to write part etag to {}", partFile, e);
+		}
+	}
+
+	@Nullable
+	private PartialDownload readPartialDownload(Path output) {
+		final Path partFile = getPartFile(output);
+
+		if (!exists(partFile)) {
+			return null;
+		}
+
+		try {
+			final Optional<String> eTag = AttributeHelper.readAttribute(partFile, PART_E_TAG);
+			final long size = Files.size(partFile);
+
+			if (eTag.isEmpty() || size == 0) {
+				return null;
+			}
+
+			return new PartialDownload(eTag.get(), size);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return The content encoding of the response, or an empty string when it is not encoded
+	 */
+	private static String getContentEncoding(HttpResponse<?> response) {
+		final String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim();
+		return encoding.equalsIgnoreCase("identity") ? "" : encoding;
+	}
+
+	private InputStream decodeOutput(HttpResponse<InputStream> response) throws IOException {
+		return ContentDecoders.decode(getContentEncoding(response), response.body());
 	}
 
 	private boolean requiresDownload(Path output) throws DownloadException {
@@ -352,22 +465,32 @@ public final class Download {
 	}
 
 	private boolean isHashValid(Path path) {
-		int i = expectedHash.indexOf(':');
-		String algorithm = expectedHash.substring(0, i);
-		String hash = expectedHash.substring(i + 1);
+		String hash = expectedHash.substring(expectedHash.indexOf(':') + 1);
 
 		try {
-			String computedHash = switch (algorithm) {
-			case "sha1" -> Checksum.sha1Hex(path);
-			default -> throw error("Unsupported hash algorithm (%s)", algorithm);
-			};
-
+			String computedHash = FileHashCache.hash(path, getHashFunction()).toString();
 			return computedHash.equalsIgnoreCase(hash);
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
+	private HashFunction getHashFunction() throws DownloadException {
+		final String algorithm = expectedHash.substring(0, expectedHash.indexOf(':'));
+		final HashFunction hashFunction = getHashFunction(algorithm);
+
+		if (hashFunction == null) {
+			throw error("Unsupported hash algorithm (%s)", algorithm);
+		}
+
+		return hashFunction;
+	}
+
+	@Nullable
+	static HashFunction getHashFunction(String algorithm) {
+		return HASH_FUNCTIONS.get(algorithm);
+	}
+
 	private boolean isOutdated(Path path) throws DownloadException {
 		try {
 			final FileTime lastModified = Files.getLastModifiedTime(path);
@@ -423,13 +546,26 @@ public final class Download {
 			// ignored
 		}
 
+		if (readPartialDownload(output) == null) {
+			// Keep a partial file that can be resumed by the next attempt.
+			tryDeletePartFile(output);
+		}
+	}
+
+	private void tryDeletePartFile(Path output) {
 		try {
-			Files.deleteIfExists(getPartFile(output));
+			deletePartFile(output);
 		} catch (IOException ignored) {
 			// ignored
 		}
 	}
 
+	private void deletePartFile(Path output) throws IOException {
+		final Path partFile = getPartFile(output);
+		AttributeHelper.deleteAttribute(partFile, PART_E_TAG);
+		Files.deleteIfExists(partFile);
+	}
+
 	// A faster exists check
 	private static boolean exists(Path path) {
 		return path.getFileSystem() == FileSystems.getDefault() ? path.toFile().exists() : Files.exists(path);
@@ -483,4 +619,11 @@ public final class Download {
 	private DownloadException error(Throwable throwable, String message, Object... args) {
 		return new DownloadException(message.formatted(args), throwable);
 	}
+
+	/**
+	 * @param eTag The ETag of the response that the partial file was downloaded from
+	 * @param size The number of bytes that have already been downloaded
+	 */
+	private record PartialDownload(String eTag, long size) {
+	}
 }
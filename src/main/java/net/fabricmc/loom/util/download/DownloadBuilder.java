@@ -34,6 +34,8 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Locale;
 
+import org.jetbrains.annotations.Nullable;
+
 @SuppressWarnings("UnusedReturnValue")
 public class DownloadBuilder {
 	private static final Duration ONE_DAY = Duration.ofDays(1);
@@ -58,7 +60,28 @@ public class DownloadBuilder {
 	}
 
 	public DownloadBuilder sha1(String sha1) {
-		this.expectedHash = "sha1:" + sha1;
+		return hash("sha1", sha1);
+	}
+
+	public DownloadBuilder sha256(String sha256) {
+		return hash("sha256", sha256);
+	}
+
+	public DownloadBuilder sha512(String sha512) {
+		return hash("sha512", sha512);
+	}
+
+	/**
+	 * Verify the download against the expected hash, computed with the given algorithm.
+	 *
+	 * @param algorithm One of sha1, sha256 or sha512
+	 */
+	public DownloadBuilder hash(String algorithm, String hash) {
+		if (Download.getHashFunction(algorithm) == null) {
+			throw new IllegalArgumentException("Unsupported hash algorithm (%s)".formatted(algorithm));
+		}
+
+		this.expectedHash = algorithm + ":" + hash;
 		return this;
 	}
 
@@ -107,27 +130,32 @@ public class DownloadBuilder {
 		return this;
 	}
 
-	private Download build(int downloadAttempt) {
+	private Download build(int downloadAttempt, @Nullable DownloadStatistics statistics) {
 		if (!allowInsecureProtocol && !isSecureUrl(url)) {
 			throw new IllegalArgumentException("Cannot create download for url (%s) with insecure protocol".formatted(url.toString()));
 		}
 
-		return new Download(this.url, this.expectedHash, this.useEtag, this.forceDownload, this.offline, maxAge, progressListener, httpVersion, downloadAttempt);
+		return new Download(this.url, this.expectedHash, this.useEtag, this.forceDownload, this.offline, maxAge, progressListener, httpVersion, downloadAttempt, statistics);
 	}
 
 	public void downloadPathAsync(Path path, DownloadExecutor executor) {
-		executor.runAsync(() -> downloadPath(path));
+		final DownloadStatistics statistics = executor.getStatistics();
+		executor.runAsync(() -> downloadPath(path, statistics));
 	}
 
 	public void downloadPath(Path path) throws DownloadException {
+		downloadPath(path, null);
+	}
+
+	private void downloadPath(Path path, @Nullable DownloadStatistics statistics) throws DownloadException {
 		withRetries((download) -> {
 			download.downloadPath(path);
 			return null;
-		});
+		}, statistics);
 	}
 
 	public String downloadString() throws DownloadException {
-		return withRetries(Download::downloadString);
+		return withRetries(Download::downloadString, null);
 	}
 
 	public String downloadString(Path cache) throws DownloadException {
@@ -145,10 +173,10 @@ public class DownloadBuilder {
 
 				throw new DownloadException("Failed to download and read string", e);
 			}
-		});
+		}, null);
 	}
 
-	private <T> T withRetries(DownloadFunction<T> supplier) throws DownloadException {
+	private <T> T withRetries(DownloadFunction<T> supplier, @Nullable DownloadStatistics statistics) throws DownloadException {
 		for (int i = 1; i <= maxRetries; i++) {
 			try {
 				if (i == maxRetries) {
@@ -156,22 +184,34 @@ public class DownloadBuilder {
 					httpVersion(HttpClient.Version.HTTP_1_1);
 				}
 
-				return supplier.get(build(i));
+				return supplier.get(build(i, statistics));
 			} catch (DownloadException e) {
 				if (e.getStatusCode() == 404) {
 					// Don't retry on 404's
+					recordFailure(statistics);
 					throw e;
 				}
 
 				if (i == maxRetries) {
+					recordFailure(statistics);
 					throw new DownloadException(String.format(Locale.ENGLISH, "Failed download after %d attempts", maxRetries), e);
 				}
+
+				if (statistics != null) {
+					statistics.recordRetry(url);
+				}
 			}
 		}
 
 		throw new IllegalStateException();
 	}
 
+	private void recordFailure(@Nullable DownloadStatistics statistics) {
+		if (statistics != null) {
+			statistics.recordFailure(url);
+		}
+	}
+
 	// See comment on org.gradle.util.internal.GUtil.isSecureUrl
 	private static boolean isSecureUrl(URI url) {
 		if ("127.0.0.1".equals(url.getHost())) {
@@ -24,46 +24,176 @@
 
 package net.fabricmc.loom.util.download;
 
-import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.util.SharedExecutors;
+
+/**
+ * Runs downloads on the shared download executor, adjusting the number that run at once to what the network can sustain.
+ *
+ * <p>Downloads start at the requested concurrency, which then grows while doing so increases the throughput, and
+ * shrinks when the latency of each download grows without any gain in throughput, or when downloads need to be
+ * retried. The requests are multiplexed over the shared HTTP/2 connections, so more downloads do not mean more
+ * connections. The concurrency never exceeds {@link SharedExecutors#DOWNLOAD_THREADS}, the size of the download executor.
+ *
+ * <p>A failed download does not stop the others, unless {@link #MAX_FAILURES} have failed. All of the failures are
+ * reported when the executor is closed.
+ */
 public class DownloadExecutor implements AutoCloseable {
-	private final ExecutorService executorService;
+	private static final Logger LOGGER = LoggerFactory.getLogger(DownloadExecutor.class);
+	private static final int MAX_CONCURRENCY = SharedExecutors.DOWNLOAD_THREADS;
+	// Skip the queued downloads once this many have failed, as the rest are likely to fail in the same way
+	private static final int MAX_FAILURES = 10;
+	private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private final Executor executor;
+	private final DownloadStatistics statistics = new DownloadStatistics();
+	private final ConcurrencyLimit limit;
+	private final List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
 	private final List<DownloadException> downloadExceptions = Collections.synchronizedList(new ArrayList<>());
 
+	// Guarded by queue
+	private final Queue<Runnable> queue = new ArrayDeque<>();
+	private int running;
+	private int peakConcurrency;
+	private Sample sample;
+
+	/**
+	 * @param threads The number of downloads to run at once to start with, at most {@link SharedExecutors#DOWNLOAD_THREADS}
+	 */
 	public DownloadExecutor(int threads) {
-		executorService = Executors.newFixedThreadPool(threads);
+		executor = SharedExecutors.downloads();
+		limit = new ConcurrencyLimit(Math.min(threads, MAX_CONCURRENCY), MAX_CONCURRENCY);
+		sample = new Sample(System.nanoTime(), 0, 0);
+	}
+
+	public DownloadStatistics getStatistics() {
+		return statistics;
 	}
 
 	void runAsync(DownloadRunner downloadRunner) {
-		if (!downloadExceptions.isEmpty()) {
+		if (downloadExceptions.size() >= MAX_FAILURES) {
 			return;
 		}
 
-		executorService.execute(() -> {
+		futures.add(CompletableFuture.runAsync(() -> {
+			if (downloadExceptions.size() >= MAX_FAILURES) {
+				// Skip the queued downloads once too many have failed
+				return;
+			}
+
+			final long startTime = System.nanoTime();
+
 			try {
 				downloadRunner.run();
 			} catch (DownloadException e) {
-				executorService.shutdownNow();
 				downloadExceptions.add(e);
-				throw new UncheckedIOException(e);
+			} finally {
+				onDownloadComplete(System.nanoTime() - startTime);
 			}
-		});
+		}, this::execute));
+	}
+
+	private void execute(Runnable command) {
+		synchronized (queue) {
+			queue.add(command);
+
+			if (running >= limit.get()) {
+				return;
+			}
+
+			running++;
+			peakConcurrency = Math.max(peakConcurrency, running);
+		}
+
+		try {
+			executor.execute(this::drain);
+		} catch (RejectedExecutionException e) {
+			synchronized (queue) {
+				running--;
+				queue.remove(command);
+			}
+
+			throw e;
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			final Runnable next;
+
+			synchronized (queue) {
+				// Stop this thread if the limit has been lowered
+				next = running > limit.get() ? null : queue.poll();
+
+				if (next == null) {
+					running--;
+					return;
+				}
+			}
+
+			// The runnable completes its future with any exception, so it never throws
+			next.run();
+		}
+	}
+
+	private void onDownloadComplete(long latency) {
+		synchronized (queue) {
+			sample.completed++;
+			sample.latency += latency;
+
+			final long now = System.nanoTime();
+
+			if (now - sample.startTime < SAMPLE_INTERVAL) {
+				return;
+			}
+
+			final long bytes = statistics.totalBytes();
+			final long retries = statistics.totalRetries();
+			// Only a sample taken while downloads were waiting for the limit says anything about raising it
+			limit.update(now - sample.startTime, bytes - sample.bytes, sample.completed, sample.latency, retries - sample.retries, !queue.isEmpty());
+			sample = new Sample(now, bytes, retries);
+
+			// Start more threads if the limit has been raised
+			while (running < limit.get() && running < queue.size()) {
+				try {
+					executor.execute(this::drain);
+				} catch (RejectedExecutionException e) {
+					break;
+				}
+
+				running++;
+				peakConcurrency = Math.max(peakConcurrency, running);
+			}
+		}
 	}
 
 	@Override
 	public void close() throws DownloadException {
-		executorService.shutdown();
+		final CompletableFuture<?>[] pending;
 
-		try {
-			executorService.awaitTermination(1, TimeUnit.DAYS);
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+		synchronized (futures) {
+			pending = futures.toArray(CompletableFuture[]::new);
+		}
+
+		// Wait for every download, including those that completed exceptionally
+		CompletableFuture.allOf(pending).handle((result, throwable) -> null).join();
+
+		for (DownloadStatistics.Host host : statistics.getHosts()) {
+			LOGGER.info("Downloaded {} files ({} KiB) from {} at {} KiB/s per file, {} retries, {} failures, up to {} at once",
+					host.downloads(), host.bytes() / 1024, host.host(), String.format(Locale.ROOT, "%.0f", host.bytesPerSecond() / 1024), host.retries(), host.failures(), peakConcurrency);
 		}
 
 		if (!downloadExceptions.isEmpty()) {
@@ -81,4 +211,67 @@ public class DownloadExecutor implements AutoCloseable {
 	public interface DownloadRunner {
 		void run() throws DownloadException;
 	}
+
+	private static final class Sample {
+		private final long startTime;
+		// The statistics totals at the start of the sample
+		private final long bytes;
+		private final long retries;
+		private int completed;
+		private long latency;
+
+		private Sample(long startTime, long bytes, long retries) {
+			this.startTime = startTime;
+			this.bytes = bytes;
+			this.retries = retries;
+		}
+	}
+
+	/**
+	 * Adjusts the concurrency by hill climbing on the throughput of each sample.
+	 */
+	private static final class ConcurrencyLimit {
+		// A change in throughput or latency smaller than this is treated as noise
+		private static final double THRESHOLD = 0.1;
+
+		private final int max;
+		private int limit;
+		private double lastThroughput;
+		private double lastLatency;
+
+		private ConcurrencyLimit(int initial, int max) {
+			this.limit = Math.max(1, initial);
+			this.max = max;
+		}
+
+		int get() {
+			return limit;
+		}
+
+		void update(long nanos, long bytes, int completed, long latency, long retries, boolean saturated) {
+			if (retries > 0) {
+				// Back off quickly when the server or network is struggling
+				limit = Math.max(1, limit / 2);
+				lastThroughput = 0;
+				return;
+			}
+
+			if (!saturated || completed == 0) {
+				return;
+			}
+
+			final double throughput = bytes / (nanos / 1e9);
+			final double averageLatency = (double) latency / completed;
+			final int step = Math.max(1, limit / 4);
+
+			if (throughput > lastThroughput * (1 + THRESHOLD)) {
+				limit = Math.min(max, limit + step);
+			} else if (throughput < lastThroughput * (1 - THRESHOLD) && averageLatency > lastLatency * (1 + THRESHOLD)) {
+				limit = Math.max(1, limit - step);
+			}
+
+			lastThroughput = throughput;
+			lastLatency = averageLatency;
+		}
+	}
 }
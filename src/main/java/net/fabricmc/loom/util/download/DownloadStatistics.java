@@ -0,0 +1,113 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.download;
+
+import java.net.URI;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per host statistics for the downloads run by a {@link DownloadExecutor}.
+ */
+public final class DownloadStatistics {
+	private final Map<String, Counters> hosts = new ConcurrentHashMap<>();
+	private final LongAdder totalBytes = new LongAdder();
+	private final LongAdder totalRetries = new LongAdder();
+
+	/**
+	 * @param bytes The number of bytes written to the output
+	 * @param nanos The time from sending the request to the download completing
+	 */
+	void recordTransfer(URI url, long bytes, long nanos) {
+		final Counters counters = getCounters(url);
+		counters.downloads.increment();
+		counters.bytes.add(bytes);
+		counters.nanos.add(nanos);
+		totalBytes.add(bytes);
+	}
+
+	void recordRetry(URI url) {
+		getCounters(url).retries.increment();
+		totalRetries.increment();
+	}
+
+	void recordFailure(URI url) {
+		getCounters(url).failures.increment();
+	}
+
+	long totalBytes() {
+		return totalBytes.sum();
+	}
+
+	long totalRetries() {
+		return totalRetries.sum();
+	}
+
+	/**
+	 * @return The statistics for each host, ordered by the number of bytes downloaded from it
+	 */
+	public List<Host> getHosts() {
+		return hosts.entrySet().stream()
+				.map(entry -> entry.getValue().toHost(entry.getKey()))
+				.sorted(Comparator.comparingLong(Host::bytes).reversed())
+				.toList();
+	}
+
+	private Counters getCounters(URI url) {
+		return hosts.computeIfAbsent(Objects.requireNonNullElse(url.getHost(), "unknown"), host -> new Counters());
+	}
+
+	/**
+	 * @param downloads The number of files downloaded, excluding those that were already up to date
+	 * @param bytes The number of bytes downloaded
+	 * @param nanos The total time spent downloading, summed over the downloads that ran at the same time
+	 * @param retries The number of failed attempts that were retried
+	 * @param failures The number of downloads that failed after all of their attempts
+	 */
+	public record Host(String host, long downloads, long bytes, long nanos, long retries, long failures) {
+		/**
+		 * @return The average throughput of a single download from this host
+		 */
+		public double bytesPerSecond() {
+			return nanos == 0 ? 0 : bytes / (nanos / 1e9);
+		}
+	}
+
+	private static final class Counters {
+		private final LongAdder downloads = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+		private final LongAdder retries = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+
+		private Host toHost(String host) {
+			return new Host(host, downloads.sum(), bytes.sum(), nanos.sum(), retries.sum(), failures.sum());
+		}
+	}
+}
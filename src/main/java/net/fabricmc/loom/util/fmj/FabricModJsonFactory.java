@@ -34,6 +34,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.Set;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
@@ -47,6 +48,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.LoomGradlePlugin;
+import net.fabricmc.loom.util.FileStampCache;
 import net.fabricmc.loom.util.FileSystemUtil;
 import net.fabricmc.loom.util.ModPlatform;
 import net.fabricmc.loom.util.ZipUtils;
@@ -55,8 +57,16 @@ import net.fabricmc.loom.util.gradle.SourceSetHelper;
 public final class FabricModJsonFactory {
 	public static final String FABRIC_MOD_JSON = "fabric.mod.json";
 
+	private static final String QUILT_MOD_JSON = "quilt.mod.json";
+	private static final String MODS_TOML = "META-INF/mods.toml";
+	private static final String NEOFORGE_MODS_TOML = "META-INF/neoforge.mods.toml";
+	private static final Set<String> MOD_MARKERS = Set.of(FABRIC_MOD_JSON, QUILT_MOD_JSON, MODS_TOML, NEOFORGE_MODS_TOML);
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(FabricModJsonFactory.class);
 
+	private static final int MAX_MOD_MARKERS_CACHE_ENTRIES = 4096;
+	private static final FileStampCache<Path, Set<String>> MOD_MARKERS_CACHE = new FileStampCache<>(MAX_MOD_MARKERS_CACHE_ENTRIES);
+
 	private FabricModJsonFactory() {
 	}
 
@@ -164,13 +174,27 @@ public final class FabricModJsonFactory {
 	}
 
 	public static boolean isModJar(Path input, ModPlatform platform) {
+		final Set<String> markers = getModMarkers(input);
+
 		if (platform.isForgeLike()) {
-			return ZipUtils.contains(input, "META-INF/mods.toml") || (platform == ModPlatform.NEOFORGE && ZipUtils.contains(input, "META-INF/neoforge.mods.toml"));
+			return markers.contains(MODS_TOML) || (platform == ModPlatform.NEOFORGE && markers.contains(NEOFORGE_MODS_TOML));
 		} else if (platform == ModPlatform.QUILT) {
-			return ZipUtils.contains(input, "quilt.mod.json") || isModJar(input, ModPlatform.FABRIC);
+			return markers.contains(QUILT_MOD_JSON) || markers.contains(FABRIC_MOD_JSON);
 		}
 
-		return ZipUtils.contains(input, FABRIC_MOD_JSON);
+		return markers.contains(FABRIC_MOD_JSON);
+	}
+
+	/**
+	 * @return The mod metadata files in the jar, this is remembered for as long as the jar is unchanged
+	 */
+	private static Set<String> getModMarkers(Path input) {
+		try {
+			final Path path = input.toAbsolutePath().normalize();
+			return MOD_MARKERS_CACHE.get(path, path, jar -> Set.copyOf(ZipUtils.findFiles(jar, MOD_MARKERS)));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to check file from zip", e);
+		}
 	}
 
 	public static boolean isNestableModJar(File file, ModPlatform platform) {
@@ -189,9 +213,9 @@ public final class FabricModJsonFactory {
 		}
 
 		if (platform.isForgeLike()) {
-			return Files.exists(fs.getPath("META-INF/mods.toml")) || (platform == ModPlatform.NEOFORGE && Files.exists(fs.getPath("META-INF/neoforge.mods.toml")));
+			return Files.exists(fs.getPath(MODS_TOML)) || (platform == ModPlatform.NEOFORGE && Files.exists(fs.getPath(NEOFORGE_MODS_TOML)));
 		} else if (platform == ModPlatform.QUILT) {
-			return Files.exists(fs.getPath("quilt.mod.json")) || containsMod(fs, ModPlatform.FABRIC);
+			return Files.exists(fs.getPath(QUILT_MOD_JSON)) || containsMod(fs, ModPlatform.FABRIC);
 		}
 
 		return Files.exists(fs.getPath(FABRIC_MOD_JSON));
@@ -0,0 +1,57 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.gradle;
+
+import org.gradle.api.Project;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.JarFileSystemPool;
+
+/**
+ * Enables the {@link JarFileSystemPool} for the duration of the build, when opted into with {@link Constants.Properties#JAR_FILE_SYSTEM_POOL}.
+ */
+public abstract class JarFileSystemPoolBuildService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+	public static final String NAME = "loomJarFileSystemPool";
+
+	public static void register(Project project) {
+		if (!GradleUtils.getBooleanProperty(project, Constants.Properties.JAR_FILE_SYSTEM_POOL)) {
+			return;
+		}
+
+		// Created eagerly, as the jars are read while configuring.
+		project.getGradle().getSharedServices().registerIfAbsent(NAME, JarFileSystemPoolBuildService.class, spec -> { }).get();
+	}
+
+	public JarFileSystemPoolBuildService() {
+		JarFileSystemPool.enable();
+	}
+
+	@Override
+	public void close() {
+		JarFileSystemPool.disable();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.util.gradle;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+
+/**
+ * Decides when a long-lived worker JVM should be recycled instead of being reused for the next job.
+ *
+ * <p>{@link #jobCompleted(Path)} is called within the worker once it has finished a job, and writes the reason the
+ * worker should be stopped to a status file. {@link #readRecycleReason(Path)} is then used by the task to check it.
+ */
+public final class WorkerHealth {
+	// Recycle the worker once this fraction of the heap is still in use after the post job garbage collection
+	private static final double MAX_RETAINED_HEAP = 0.6;
+	// Recycle the worker after this many jobs, to limit the impact of any slow leaks
+	@VisibleForTesting
+	public static final int MAX_JOBS = 20;
+
+	private static final AtomicInteger COMPLETED_JOBS = new AtomicInteger();
+
+	private WorkerHealth() {
+	}
+
+	/**
+	 * Check the health of the current worker JVM, writing the reason it should be recycled to the status file.
+	 */
+	public static void jobCompleted(Path statusFile) throws IOException {
+		final String reason = getRecycleReason(COMPLETED_JOBS.incrementAndGet());
+		Files.writeString(statusFile, reason != null ? reason : "", StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return The reason the worker should be stopped, or null when it is healthy and can be reused
+	 */
+	@Nullable
+	public static String readRecycleReason(Path statusFile) throws IOException {
+		if (Files.notExists(statusFile)) {
+			// The worker did not complete the job
+			return "the job did not complete";
+		}
+
+		final String reason = Files.readString(statusFile, StandardCharsets.UTF_8);
+		return reason.isEmpty() ? null : reason;
+	}
+
+	@Nullable
+	private static String getRecycleReason(int completedJobs) {
+		return getRecycleReason(completedJobs, getRetainedHeap(), Runtime.getRuntime().maxMemory());
+	}
+
+	@VisibleForTesting
+	@Nullable
+	public static String getRecycleReason(int completedJobs, long retainedHeap, long maxHeap) {
+		if (completedJobs >= MAX_JOBS) {
+			return "it has completed %d jobs".formatted(completedJobs);
+		}
+
+		if (maxHeap == Long.MAX_VALUE) {
+			return null;
+		}
+
+		final double retained = (double) retainedHeap / maxHeap;
+
+		if (retained > MAX_RETAINED_HEAP) {
+			return String.format(Locale.ROOT, "%.0f%% of its heap is still in use after garbage collection", retained * 100);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Run a garbage collection and measure what is left, so that the heap in use by the job that just completed, or
+	 * the state of a collection that ran part way through the job, is not mistaken for a leak.
+	 *
+	 * <p>The collection is also worthwhile on its own, as the worker then sits idle with a small heap. When explicit
+	 * collections are disabled the usage after the most recent collection is used instead, which may overestimate it.
+	 *
+	 * @return The heap usage after the garbage collection
+	 */
+	private static long getRetainedHeap() {
+		ManagementFactory.getMemoryMXBean().gc();
+		long retained = 0;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP) {
+				continue;
+			}
+
+			final MemoryUsage usage = pool.getCollectionUsage();
+
+			if (usage != null) {
+				retained += usage.getUsed();
+			}
+		}
+
+		return retained;
+	}
+}
@@ -25,7 +25,7 @@
 package net.fabricmc.loom.test.unit
 
 import java.nio.file.Files
-import java.nio.file.Path
+import java.util.zip.ZipFile
 
 import spock.lang.Specification
 
@@ -42,9 +42,8 @@ class AsyncZipProcessorTest extends Specification {
 
 		when:
 		// Process the input zip asynchronously, converting all entries to uppercase
-		AsyncZipProcessor.processEntries(inputZip, outputZip) { Path inputEntry, Path outputEntry ->
-			def str = Files.readString(inputEntry)
-			Files.writeString(outputEntry, str.toUpperCase())
+		AsyncZipProcessor.processEntries(inputZip, outputZip) { String name, AsyncZipProcessor.EntryContents contents ->
+			return new String(contents.read()).toUpperCase().bytes
 		}
 
 		then:
@@ -60,12 +59,32 @@ class AsyncZipProcessorTest extends Specification {
 		Files.delete(outputZip)
 
 		when:
-		AsyncZipProcessor.processEntries(inputZip, outputZip) { Path inputEntry, Path outputEntry ->
+		AsyncZipProcessor.processEntries(inputZip, outputZip) { String name, AsyncZipProcessor.EntryContents contents ->
 			throw new IOException("Test exception")
 		}
 
 		then:
 		thrown(IOException)
+		Files.notExists(outputZip)
+	}
+
+	def "copy unchanged"() {
+		given:
+		def inputZip = ZipTestUtils.createZip(createEntries())
+		def outputZip = ZipTestUtils.createZip(Collections.emptyMap())
+		Files.delete(outputZip)
+
+		when:
+		// Only change the entries with an even number
+		AsyncZipProcessor.processEntries(inputZip, outputZip) { String name, AsyncZipProcessor.EntryContents contents ->
+			return name.replaceAll("[^0-9]", "").toInteger() % 2 == 0 ? "changed".bytes : null
+		}
+
+		then:
+		ZipUtils.unpack(outputZip, "file0.txt") == "changed".bytes
+		ZipUtils.unpack(outputZip, "file1.txt") == "file1".bytes
+		ZipUtils.unpack(outputZip, "file9999.txt") == "file9999".bytes
+		new ZipFile(outputZip.toFile()).withCloseable { it.size() } == 10000
 	}
 
 	Map<String, String> createEntries(int count = 10000) {
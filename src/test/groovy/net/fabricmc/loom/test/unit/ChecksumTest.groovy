@@ -24,10 +24,18 @@
 
 package net.fabricmc.loom.test.unit
 
+import java.nio.file.FileSystems
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Instant
+
 import org.gradle.api.Project
 import spock.lang.Specification
+import spock.lang.TempDir
 
 import net.fabricmc.loom.util.Checksum
+import net.fabricmc.loom.util.FileHashCache
 
 class ChecksumTest extends Specification {
 	def "project hash"() {
@@ -47,4 +55,45 @@ class ChecksumTest extends Specification {
 		":"    | "C://mod"
 		":sub" | "/Users/test/Documents/modding/fabric-loom"
 	}
+
+	@TempDir
+	Path tempDir
+
+	def "file hash"() {
+		given:
+		def file = tempDir.resolve("test.txt")
+		Files.writeString(file, "Hello world")
+		// Old enough to be cached
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(60)))
+
+		when:
+		def hash = Checksum.sha256Hex(file)
+		def cachedHash = Checksum.sha256Hex(file)
+		Files.writeString(file, "Hello world!")
+		def newHash = Checksum.sha256Hex(file)
+
+		then:
+		hash == "64ec88ca00b268e5ba1a35678a1b5316d212f4f366b2477232534a8aeca37f3c"
+		cachedHash == hash
+		newHash == Checksum.sha256Hex("Hello world!".bytes)
+	}
+
+	def "zip file system paths are not cached"() {
+		given:
+		def zip = tempDir.resolve("test.zip")
+		def zipFs = FileSystems.newFileSystem(zip, [create: true])
+		def file = zipFs.getPath("test.txt")
+		Files.writeString(file, "Hello world")
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(60)))
+
+		when:
+		def hash = Checksum.sha256Hex(file)
+
+		then:
+		hash == "64ec88ca00b268e5ba1a35678a1b5316d212f4f366b2477232534a8aeca37f3c"
+		!FileHashCache.isCached(file)
+
+		cleanup:
+		zipFs.close()
+	}
 }
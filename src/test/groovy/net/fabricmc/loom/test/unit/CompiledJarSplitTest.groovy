@@ -0,0 +1,91 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.api.decompilers.ClassTransformer
+import net.fabricmc.loom.decompilers.CompiledJarSplit
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.ZipUtils
+
+class CompiledJarSplitTest extends Specification {
+	static Map<String, String> jarEntries = [
+		"net/fabricmc/Example.class": "Example",
+		"net/fabricmc/other/Test.class": "Test",
+		"net/fabricmc/other/Test\$Inner.class": "Inner",
+		"META-INF/MANIFEST.MF": "Manifest-Version: 1.0",
+	]
+
+	def "split classes"() {
+		given:
+		def jar = ZipTestUtils.createZip(jarEntries, ".jar")
+
+		when:
+		def split = CompiledJarSplit.create(jar, ["net/fabricmc/other/Test", "net/fabricmc/other/Test\$Inner"] as Set, null)
+
+		then:
+		ZipUtils.unpackNullable(split.classesJar(), "net/fabricmc/other/Test.class") == "Test".bytes
+		ZipUtils.unpackNullable(split.classesJar(), "net/fabricmc/other/Test\$Inner.class") == "Inner".bytes
+		ZipUtils.unpackNullable(split.classesJar(), "net/fabricmc/Example.class") == null
+		ZipUtils.unpackNullable(split.librariesJar(), "net/fabricmc/Example.class") == "Example".bytes
+		ZipUtils.unpackNullable(split.librariesJar(), "net/fabricmc/other/Test.class") == null
+
+		// Only classes are copied
+		ZipUtils.unpackNullable(split.classesJar(), "META-INF/MANIFEST.MF") == null
+		ZipUtils.unpackNullable(split.librariesJar(), "META-INF/MANIFEST.MF") == null
+
+		when:
+		split.close()
+
+		then:
+		Files.notExists(split.classesJar())
+		Files.notExists(split.librariesJar())
+	}
+
+	def "transform classes"() {
+		given:
+		def jar = ZipTestUtils.createZip(jarEntries, ".jar")
+		def transformer = { String className, byte[] bytes -> (className + ":" + new String(bytes)).bytes } as ClassTransformer
+
+		when:
+		def split = CompiledJarSplit.create(jar, classes as Set, transformer)
+
+		then:
+		ZipUtils.unpackNullable(split.classesJar(), "net/fabricmc/other/Test.class") == "net/fabricmc/other/Test:Test".bytes
+		ZipUtils.unpackNullable(split.classesJar(), "net/fabricmc/Example.class") == example?.bytes
+		ZipUtils.unpackNullable(split.librariesJar(), "net/fabricmc/Example.class") == library?.bytes
+
+		cleanup:
+		split?.close()
+
+		where:
+		classes                       | example                        | library
+		null                          | "net/fabricmc/Example:Example" | null
+		["net/fabricmc/other/Test"]   | null                           | "Example"
+	}
+}
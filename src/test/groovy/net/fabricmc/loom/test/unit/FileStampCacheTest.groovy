@@ -0,0 +1,94 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Instant
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.util.FileStamp
+import net.fabricmc.loom.util.FileStampCache
+
+class FileStampCacheTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "value is remembered while the file is unchanged"() {
+		given:
+		def file = tempDir.resolve("test.txt")
+		Files.writeString(file, "Hello")
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(60)))
+		def cache = new FileStampCache<Path, String>(16)
+		def loads = 0
+
+		when:
+		def first = cache.get(file, file) { loads++; Files.readString(it) }
+		def second = cache.get(file, file) { loads++; Files.readString(it) }
+		Files.writeString(file, "Hello world")
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(30)))
+		def changed = cache.get(file, file) { loads++; Files.readString(it) }
+
+		then:
+		first == "Hello"
+		second == "Hello"
+		changed == "Hello world"
+		loads == 2
+	}
+
+	def "value of a racy file is not remembered"() {
+		given:
+		def file = tempDir.resolve("test.txt")
+		Files.writeString(file, "Hello")
+		def cache = new FileStampCache<Path, String>(16)
+
+		when:
+		cache.get(file, file) { Files.readString(it) }
+
+		then:
+		FileStamp.read(file).racy
+		cache.keys().isEmpty()
+	}
+
+	def "cache is cleared when full"() {
+		given:
+		def cache = new FileStampCache<Path, String>(2)
+		def files = (0..<3).collect {
+			def file = tempDir.resolve("test${it}.txt")
+			Files.writeString(file, "Hello")
+			Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(60)))
+			file
+		}
+
+		when:
+		files.each { file -> cache.get(file, file) { Files.readString(it) } }
+
+		then:
+		cache.keys() == [files[2]] as Set
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+import java.time.Instant
+
+import spock.lang.Specification
+
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.FileSystemUtil
+import net.fabricmc.loom.util.JarFileSystemPool
+import net.fabricmc.loom.util.ZipUtils
+
+class JarFileSystemPoolTest extends Specification {
+	def cleanup() {
+		JarFileSystemPool.disable()
+	}
+
+	def "reuses open jar"() {
+		given:
+		def jar = ZipTestUtils.createZip(["test.txt": "Hello"], ".jar")
+		Files.setLastModifiedTime(jar, FileTime.from(Instant.now().minusSeconds(60)))
+		JarFileSystemPool.enable()
+
+		when:
+		def first = FileSystemUtil.getReadOnlyJarFileSystem(jar).withCloseable { it.get() }
+		def second = FileSystemUtil.getReadOnlyJarFileSystem(jar).withCloseable { it.readString("test.txt"); it.get() }
+
+		then:
+		first.is(second)
+		first.isOpen()
+	}
+
+	def "reopens changed jar"() {
+		given:
+		def jar = ZipTestUtils.createZip(["test.txt": "Hello"], ".jar")
+		Files.setLastModifiedTime(jar, FileTime.from(Instant.now().minusSeconds(60)))
+		JarFileSystemPool.enable()
+		def first = FileSystemUtil.getReadOnlyJarFileSystem(jar).withCloseable { it.get() }
+
+		when:
+		ZipUtils.replace(jar, "test.txt", "World".bytes)
+		Files.setLastModifiedTime(jar, FileTime.from(Instant.now().minusSeconds(30)))
+		def content = FileSystemUtil.getReadOnlyJarFileSystem(jar).withCloseable { it.readString("test.txt") }
+
+		then:
+		content == "World"
+		!first.isOpen()
+	}
+
+	def "closes jars once disabled"() {
+		given:
+		def jar = ZipTestUtils.createZip(["test.txt": "Hello"], ".jar")
+		Files.setLastModifiedTime(jar, FileTime.from(Instant.now().minusSeconds(60)))
+		JarFileSystemPool.enable()
+		def delegate = FileSystemUtil.getReadOnlyJarFileSystem(jar)
+
+		when:
+		JarFileSystemPool.disable()
+		def openWhileInUse = delegate.get().isOpen()
+		delegate.close()
+
+		then:
+		openWhileInUse
+		!delegate.get().isOpen()
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+import com.google.gson.JsonObject
+import org.slf4j.Logger
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.build.nesting.JarNester
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.ModPlatform
+import net.fabricmc.loom.util.ZipUtils
+
+class JarNesterTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "nest jars"() {
+		given:
+		def modJar = createJar("mod.jar", ["fabric.mod.json": '{"id": "mod"}', "mod/Test.class": "class"])
+		def nestedB = createJar("b.jar", ["fabric.mod.json": '{"id": "b"}'])
+		def nestedA = createJar("a.jar", ["fabric.mod.json": '{"id": "a"}'])
+
+		when:
+		JarNester.nestJars([nestedB.toFile(), nestedA.toFile()], modJar.toFile(), ModPlatform.FABRIC, Mock(Logger))
+		def json = ZipUtils.unpackJson(modJar, "fabric.mod.json", JsonObject.class)
+
+		then:
+		json.get("id").asString == "mod"
+		json.getAsJsonArray("jars").collect { it.asJsonObject.get("file").asString } == ["META-INF/jars/a.jar", "META-INF/jars/b.jar"]
+		ZipUtils.unpack(modJar, "META-INF/jars/a.jar") == Files.readAllBytes(nestedA)
+		ZipUtils.unpack(modJar, "META-INF/jars/b.jar") == Files.readAllBytes(nestedB)
+		ZipUtils.unpack(modJar, "mod/Test.class") == "class".bytes
+		new ZipFile(modJar.toFile()).withCloseable { it.getEntry("META-INF/jars/a.jar").method } == ZipEntry.STORED
+	}
+
+	def "nest into jar with existing nested jars"() {
+		given:
+		def modJar = createJar("mod.jar", ["fabric.mod.json": '{"id": "mod", "jars": [{"file": "META-INF/jars/a.jar"}]}'])
+		def nested = createJar("a.jar", ["fabric.mod.json": '{"id": "a"}'])
+
+		when:
+		JarNester.nestJars([nested.toFile()], modJar.toFile(), ModPlatform.FABRIC, Mock(Logger))
+
+		then:
+		def e = thrown(IllegalStateException)
+		e.message == "Cannot nest 2 jars at the same path: META-INF/jars/a.jar"
+		// The mod jar is left untouched
+		!ZipUtils.contains(modJar, "META-INF/jars/a.jar")
+	}
+
+	def "nest non mod jar"() {
+		given:
+		def modJar = createJar("mod.jar", ["fabric.mod.json": '{"id": "mod"}'])
+		def nested = createJar("library.jar", ["library/Test.class": "class"])
+
+		when:
+		JarNester.nestJars([nested.toFile()], modJar.toFile(), ModPlatform.FABRIC, Mock(Logger))
+
+		then:
+		thrown(IllegalArgumentException)
+		!ZipUtils.contains(modJar, "META-INF/jars/library.jar")
+	}
+
+	// The nested jars are named after their file, so the zip is moved to a known name
+	private Path createJar(String name, Map<String, String> entries) {
+		return Files.move(ZipTestUtils.createZip(entries, ".jar"), tempDir.resolve(name))
+	}
+}
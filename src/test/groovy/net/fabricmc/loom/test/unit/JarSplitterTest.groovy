@@ -24,6 +24,12 @@
 
 package net.fabricmc.loom.test.unit
 
+import java.util.jar.Attributes
+import java.util.jar.JarFile
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+import java.util.zip.ZipEntry
+
 import spock.lang.Specification
 
 import net.fabricmc.loom.configuration.mods.JarSplitter
@@ -87,6 +93,79 @@ class JarSplitterTest extends Specification {
 		clientOutputJar.exists()
 	}
 
+	def "analyse and split jar"() {
+		given:
+		def inputJar = downloadJarIfNotExists(SPLIT_INPUT_JAR_URL, "split.jar")
+		def commonOutputJar = getFile("common-out.jar")
+		def clientOutputJar = getFile("client-out.jar")
+
+		def jarSplitter = new JarSplitter(inputJar.toPath())
+		when:
+		def target = jarSplitter.analyseAndSplit(commonOutputJar.toPath(), clientOutputJar.toPath())
+
+		then:
+		target == JarSplitter.Target.SPLIT
+		new JarFile(commonOutputJar).withCloseable { it.manifest.mainAttributes.getValue("Fabric-Loom-Split-Environment-Name") } == "common"
+		new JarFile(clientOutputJar).withCloseable { it.manifest.mainAttributes.getValue("Fabric-Loom-Split-Environment-Name") } == "client"
+	}
+
+	def "analyse and split normal jar"() {
+		given:
+		def inputJar = downloadJarIfNotExists(NORMAL_INPUT_JAR_URL, "normal.jar")
+		def commonOutputJar = getFile("common-out.jar")
+		def clientOutputJar = getFile("client-out.jar")
+
+		when:
+		def target = new JarSplitter(inputJar.toPath()).analyseAndSplit(commonOutputJar.toPath(), clientOutputJar.toPath())
+
+		then:
+		target == null
+		!commonOutputJar.exists()
+		!clientOutputJar.exists()
+	}
+
+	def "analyse and split zip64 jar"() {
+		given:
+		// More than 65535 entries makes ZipOutputStream write a Zip64 end header
+		def entryCount = 70000
+		def inputJar = getFile("zip64.jar")
+		def commonOutputJar = getFile("common-out.jar")
+		def clientOutputJar = getFile("client-out.jar")
+
+		def manifest = new Manifest()
+		manifest.mainAttributes.put(Attributes.Name.MANIFEST_VERSION, "1.0")
+		manifest.mainAttributes.putValue("Fabric-Loom-Split-Environment", "true")
+		manifest.mainAttributes.putValue("Fabric-Loom-Client-Only-Entries", "client/Client.class")
+
+		inputJar.parentFile.mkdirs()
+		new JarOutputStream(new FileOutputStream(inputJar), manifest).withCloseable { out ->
+			out.putNextEntry(new ZipEntry("client/Client.class"))
+			out.write("client".bytes)
+
+			for (int i = 0; i < entryCount; i++) {
+				out.putNextEntry(new ZipEntry("common/" + i + ".txt"))
+				out.write(i.toString().bytes)
+			}
+		}
+
+		when:
+		def target = new JarSplitter(inputJar.toPath()).analyseAndSplit(commonOutputJar.toPath(), clientOutputJar.toPath())
+
+		then:
+		target == JarSplitter.Target.SPLIT
+		new JarFile(commonOutputJar).withCloseable { jar ->
+			jar.manifest.mainAttributes.getValue("Fabric-Loom-Split-Environment-Name") == "common"
+					&& jar.getEntry("client/Client.class") == null
+					&& jar.getInputStream(jar.getEntry("common/69999.txt")).text == "69999"
+					&& jar.stream().filter { !it.directory }.count() == entryCount + 1
+		}
+		new JarFile(clientOutputJar).withCloseable { jar ->
+			jar.manifest.mainAttributes.getValue("Fabric-Loom-Split-Environment-Name") == "client"
+					&& jar.getInputStream(jar.getEntry("client/Client.class")).text == "client"
+					&& jar.stream().filter { !it.directory }.count() == 2
+		}
+	}
+
 	File downloadJarIfNotExists(String url, String name) {
 		File dst = new File(workingDir, name)
 
@@ -25,6 +25,9 @@
 package net.fabricmc.loom.test.unit
 
 import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.time.Instant
 
 import org.objectweb.asm.ClassReader
 import org.objectweb.asm.ClassVisitor
@@ -33,6 +36,7 @@ import org.objectweb.asm.MethodVisitor
 import spock.lang.Specification
 
 import net.fabricmc.loom.decompilers.ClassLineNumbers
+import net.fabricmc.loom.decompilers.LineNumberRemapState
 import net.fabricmc.loom.decompilers.LineNumberRemapper
 import net.fabricmc.loom.test.util.ZipTestUtils
 import net.fabricmc.loom.util.Constants
@@ -65,6 +69,84 @@ class LineNumberRemapperTests extends Specification {
 		readLineNumbers(unpacked) == [37, 39, 40]
 	}
 
+	def "remapLinenumbers incrementally"() {
+		given:
+		def className = LineNumberSource.class.name.replace('.', '/')
+		def input = ZipTestUtils.createZipFromBytes([(className + ".class"): getClassBytes(LineNumberSource.class)])
+		def dir = Files.createTempDirectory("loom")
+
+		def previousLineNumbers = new ClassLineNumbers([(className): new ClassLineNumbers.Entry(className, 30, 40, [27: 37, 29: 39, 30: 40])])
+		def lineNumbers = new ClassLineNumbers([(className): new ClassLineNumbers.Entry(className, 30, 50, [27: 47, 29: 49, 30: 50])])
+
+		new LineNumberRemapper(previousLineNumbers).process(input, dir.resolve("unchanged.jar"))
+		new LineNumberRemapper(previousLineNumbers).process(input, dir.resolve("changed.jar"))
+
+		when:
+		def unchanged = new LineNumberRemapper(previousLineNumbers).processIncremental(input, dir.resolve("unchanged.jar"), previousLineNumbers)
+		def changed = new LineNumberRemapper(lineNumbers).processIncremental(input, dir.resolve("changed.jar"), previousLineNumbers)
+
+		then:
+		unchanged
+		readLineNumbers(ZipUtils.unpack(dir.resolve("unchanged.jar"), className + ".class")) == [37, 39, 40]
+		// All classes changed, so the whole jar must be remapped instead
+		!changed
+		readLineNumbers(ZipUtils.unpack(dir.resolve("changed.jar"), className + ".class")) == [37, 39, 40]
+	}
+
+	def "remapLinenumbers incrementally only rewrites changed classes"() {
+		given:
+		def classBytes = getClassBytes(LineNumberSource.class)
+		def classNames = ["test/One", "test/Two", "test/Three"]
+		def input = ZipTestUtils.createZipFromBytes(classNames.collectEntries { [(it + ".class"): classBytes] })
+		def dir = Files.createTempDirectory("loom")
+
+		def previousLineNumbers = new ClassLineNumbers(classNames.collectEntries {
+			[(it): new ClassLineNumbers.Entry(it, 30, 40, [27: 37, 29: 39, 30: 40])]
+		})
+		// Only the line numbers of test/Two have changed
+		def lineNumbers = new ClassLineNumbers(previousLineNumbers.lineMap() + [
+			"test/Two": new ClassLineNumbers.Entry("test/Two", 30, 50, [27: 47, 29: 49, 30: 50])
+		])
+
+		new LineNumberRemapper(previousLineNumbers).process(input, dir.resolve("previous.jar"))
+		// Mark the unchanged classes in the previous output, to show that they are copied rather than remapped again
+		def marker = "unchanged".bytes
+		ZipUtils.replace(dir.resolve("previous.jar"), "test/One.class", marker)
+		ZipUtils.replace(dir.resolve("previous.jar"), "test/Three.class", marker)
+
+		when:
+		def incremental = new LineNumberRemapper(lineNumbers).processIncremental(input, dir.resolve("previous.jar"), previousLineNumbers)
+
+		then:
+		incremental
+		readLineNumbers(ZipUtils.unpack(dir.resolve("previous.jar"), "test/Two.class")) == [47, 49, 50]
+		ZipUtils.unpack(dir.resolve("previous.jar"), "test/One.class") == marker
+		ZipUtils.unpack(dir.resolve("previous.jar"), "test/Three.class") == marker
+	}
+
+	def "remap state is discarded when the output jar is regenerated"() {
+		given:
+		def className = LineNumberSource.class.name.replace('.', '/')
+		def input = ZipTestUtils.createZipFromBytes([(className + ".class"): getClassBytes(LineNumberSource.class)])
+		def output = Files.createTempDirectory("loom").resolve("output.jar")
+		def lineNumbers = new ClassLineNumbers([(className): new ClassLineNumbers.Entry(className, 30, 40, [27: 37, 29: 39, 30: 40])])
+
+		new LineNumberRemapper(lineNumbers).process(input, output)
+		// The state is keyed on the jars' modified times, so make sure that recreating the output jar changes it
+		Files.setLastModifiedTime(output, FileTime.from(Instant.now().minusSeconds(60)))
+		LineNumberRemapState.write(input, output, lineNumbers)
+
+		when:
+		def previousLineNumbers = LineNumberRemapState.read(input, output)
+		// Such as when the output jar is remapped from scratch, with the original line numbers
+		Files.copy(input, output, StandardCopyOption.REPLACE_EXISTING)
+		def regeneratedLineNumbers = LineNumberRemapState.read(input, output)
+
+		then:
+		previousLineNumbers == lineNumbers
+		regeneratedLineNumbers == null
+	}
+
 	static byte[] getClassBytes(Class<?> clazz) {
 		return clazz.classLoader.getResourceAsStream(clazz.name.replace('.', '/') + ".class").withCloseable {
 			it.bytes
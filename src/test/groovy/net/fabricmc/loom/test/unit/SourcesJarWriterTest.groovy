@@ -0,0 +1,81 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.decompilers.ClassLineNumbers
+import net.fabricmc.loom.decompilers.SourcesJarWriter
+import net.fabricmc.loom.test.util.ZipTestUtils
+import net.fabricmc.loom.util.ZipUtils
+
+class SourcesJarWriterTest extends Specification {
+	@TempDir
+	Path tempDir
+
+	def "write sources after existing sources"() {
+		given:
+		def existingSources = ZipTestUtils.createZip(["net/fabricmc/Example.java": "Example sources"], ".jar")
+		def outputJar = tempDir.resolve("sources.jar")
+		def linemap = tempDir.resolve("linemap.txt")
+
+		when:
+		def writer = SourcesJarWriter.create(outputJar, existingSources)
+		writer.accept("net/fabricmc/other/Test", "Test sources", [1, 2, 5, 6] as int[])
+		writer.accept("net/fabricmc/other/NoLines", "NoLines sources", null)
+		writer.writeLineNumbers(linemap)
+		writer.close()
+
+		def lineNumbers = ClassLineNumbers.readMappings(linemap)
+
+		then:
+		ZipUtils.unpackNullable(outputJar, "net/fabricmc/Example.java") == "Example sources".bytes
+		ZipUtils.unpackNullable(outputJar, "net/fabricmc/other/Test.java") == "Test sources".bytes
+		ZipUtils.unpackNullable(outputJar, "net/fabricmc/other/NoLines.java") == "NoLines sources".bytes
+
+		lineNumbers.lineMap().keySet() == ["net/fabricmc/other/Test"] as Set
+		lineNumbers.lineMap()["net/fabricmc/other/Test"].lineMap() == [1: 2, 5: 6]
+	}
+
+	def "no line numbers"() {
+		given:
+		def outputJar = tempDir.resolve("sources.jar")
+		def linemap = tempDir.resolve("linemap.txt")
+
+		when:
+		def writer = SourcesJarWriter.create(outputJar, null)
+		writer.accept("net/fabricmc/Example", "Example sources", null)
+		writer.writeLineNumbers(linemap)
+		writer.close()
+
+		then:
+		ZipUtils.unpackNullable(outputJar, "net/fabricmc/Example.java") == "Example sources".bytes
+		Files.notExists(linemap)
+	}
+}
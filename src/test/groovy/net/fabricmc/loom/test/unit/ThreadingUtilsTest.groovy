@@ -0,0 +1,180 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import net.fabricmc.loom.util.SharedExecutors
+import net.fabricmc.loom.util.ThreadingUtils
+
+class ThreadingUtilsTest extends Specification {
+	def "task completer runs all jobs"() {
+		given:
+		def count = new AtomicInteger()
+		def completer = ThreadingUtils.taskCompleter()
+
+		when:
+		1000.times {
+			completer.add { count.incrementAndGet() }
+		}
+		completer.complete()
+
+		then:
+		count.get() == 1000
+	}
+
+	@Timeout(60)
+	def "task completer fails fast"() {
+		given:
+		def failure = new IOException("First")
+		def completer = ThreadingUtils.taskCompleter()
+		def skipped = false
+
+		when:
+		completer.add { throw failure }
+
+		// Jobs run until the failure has been recorded, after which they are skipped
+		while (!skipped) {
+			def ran = new CountDownLatch(1)
+			completer.add { ran.countDown() }
+			skipped = !ran.await(1, TimeUnit.SECONDS)
+		}
+
+		completer.complete()
+
+		then:
+		def e = thrown(RuntimeException)
+		e.cause.is(failure)
+		e.suppressed.length == 0
+	}
+
+	def "task completer suppresses later failures"() {
+		given:
+		def first = new IOException("First")
+		def second = new IOException("Second")
+		def completer = ThreadingUtils.taskCompleter()
+
+		when:
+		completer.apply(first)
+		completer.apply(second)
+		completer.add { throw new IOException("Skipped") }
+		completer.complete()
+
+		then:
+		def e = thrown(RuntimeException)
+		e.cause.is(first)
+		e.suppressed.toList() == [second]
+	}
+
+	def "task completer throws completion listener failures"() {
+		given:
+		def jobFailure = new IOException("Job")
+		def listenerFailure = new IOException("Listener")
+		def ranSecondListener = false
+		def completer = ThreadingUtils.taskCompleter()
+
+		when:
+		completer.onComplete { throw listenerFailure }
+		completer.onComplete { ranSecondListener = true }
+		completer.add { throw jobFailure }
+		completer.complete()
+
+		then:
+		def e = thrown(RuntimeException)
+		e.cause.is(jobFailure)
+		e.suppressed.toList() == [listenerFailure]
+		ranSecondListener
+	}
+
+	def "task completer throws a completion listener failure"() {
+		given:
+		def failure = new IOException("Listener")
+		def completer = ThreadingUtils.taskCompleter()
+
+		when:
+		completer.add {}
+		completer.onComplete { throw failure }
+		completer.complete()
+
+		then:
+		def e = thrown(RuntimeException)
+		e.cause.is(failure)
+	}
+
+	@Timeout(60)
+	def "task completer runs jobs on the calling thread when the queue is full"() {
+		given:
+		def latch = new CountDownLatch(1)
+		def ranOn = null
+		def completer = ThreadingUtils.taskCompleter()
+
+		when:
+		// Fill the queue with jobs that cannot finish until the next job has run
+		(SharedExecutors.parallelism() * 16).times {
+			completer.add { latch.await() }
+		}
+		completer.add {
+			ranOn = Thread.currentThread()
+			latch.countDown()
+		}
+		completer.complete()
+
+		then:
+		ranOn == Thread.currentThread()
+	}
+
+	@Timeout(60)
+	def "nested task completers do not starve the pool"() {
+		given:
+		def count = new AtomicInteger()
+		def completer = ThreadingUtils.taskCompleter()
+
+		when:
+		// Every thread of the pool waits on an inner completer, whose jobs need threads of the same pool
+		(SharedExecutors.parallelism() * 4).times {
+			completer.add {
+				def inner = ThreadingUtils.taskCompleter()
+
+				8.times {
+					inner.add {
+						Thread.sleep(5)
+						count.incrementAndGet()
+					}
+				}
+
+				inner.complete()
+			}
+		}
+		completer.complete()
+
+		then:
+		count.get() == SharedExecutors.parallelism() * 4 * 8
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.util.gradle.WorkerHealth
+
+class WorkerHealthTest extends Specification {
+	private static final long MAX_HEAP = 1024 * 1024 * 1024
+
+	@TempDir
+	Path tempDir
+
+	def "missing status file"() {
+		when:
+		def reason = WorkerHealth.readRecycleReason(tempDir.resolve("status.txt"))
+
+		then:
+		reason == "the job did not complete"
+	}
+
+	def "empty status file"() {
+		given:
+		def statusFile = tempDir.resolve("status.txt")
+		Files.writeString(statusFile, "")
+
+		when:
+		def reason = WorkerHealth.readRecycleReason(statusFile)
+
+		then:
+		reason == null
+	}
+
+	def "status file with reason"() {
+		given:
+		def statusFile = tempDir.resolve("status.txt")
+		Files.writeString(statusFile, "it has completed 20 jobs")
+
+		when:
+		def reason = WorkerHealth.readRecycleReason(statusFile)
+
+		then:
+		reason == "it has completed 20 jobs"
+	}
+
+	def "recycle reason"() {
+		when:
+		def reason = WorkerHealth.getRecycleReason(completedJobs, retainedHeap, maxHeap)
+
+		then:
+		reason == expected
+
+		where:
+		completedJobs              | retainedHeap          | maxHeap        || expected
+		1                          | 0                     | MAX_HEAP       || null
+		WorkerHealth.MAX_JOBS - 1  | 0                     | MAX_HEAP       || null
+		WorkerHealth.MAX_JOBS      | 0                     | MAX_HEAP       || "it has completed 20 jobs"
+		WorkerHealth.MAX_JOBS + 5  | 0                     | MAX_HEAP       || "it has completed 25 jobs"
+		1                          | MAX_HEAP * 6 / 10     | MAX_HEAP       || null
+		1                          | MAX_HEAP * 7 / 10     | MAX_HEAP       || "70% of its heap is still in use after garbage collection"
+		1                          | MAX_HEAP              | Long.MAX_VALUE || null
+	}
+
+	def "job completed writes status file"() {
+		given:
+		def statusFile = tempDir.resolve("status.txt")
+
+		when:
+		def reasons = (1..WorkerHealth.MAX_JOBS).collect {
+			WorkerHealth.jobCompleted(statusFile)
+			return WorkerHealth.readRecycleReason(statusFile)
+		}
+
+		then:
+		Files.exists(statusFile)
+		// The worker is recycled once it has completed the maximum number of jobs
+		reasons.last().startsWith("it has completed")
+		// Any earlier reason is from the state of the heap, never from the job count
+		reasons.init().every { it == null || it.contains("heap") }
+	}
+}
@@ -26,7 +26,11 @@ package net.fabricmc.loom.test.unit
 
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
+import java.time.LocalDateTime
 import java.time.ZoneId
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
 
 import com.google.gson.JsonObject
 import org.gradle.api.tasks.bundling.ZipEntryCompression
@@ -36,6 +40,7 @@ import net.fabricmc.loom.util.Checksum
 import net.fabricmc.loom.util.FileSystemUtil
 import net.fabricmc.loom.util.Pair
 import net.fabricmc.loom.util.ZipReprocessorUtil
+import net.fabricmc.loom.util.ZipTransaction
 import net.fabricmc.loom.util.ZipUtils
 
 class ZipUtilsTest extends Specification {
@@ -129,6 +134,63 @@ class ZipUtilsTest extends Specification {
 		outputFile.text == "This is a test of unpacking all"
 	}
 
+	def "pack and unpack all many files"() {
+		given:
+		def input = File.createTempDir()
+		def output = File.createTempDir()
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+
+		for (i in 0..<500) {
+			def file = new File(input, "dir${i % 7}/nested/test${i}.txt")
+			file.parentFile.mkdirs()
+			file.text = "Test ${i}"
+		}
+
+		when:
+		ZipUtils.pack(input.toPath(), zip)
+		ZipUtils.unpackAll(zip, output.toPath())
+
+		then:
+		(0..<500).every { new File(output, "dir${it % 7}/nested/test${it}.txt").text == "Test ${it}" }
+		ZipUtils.contains(zip, "dir0/")
+		ZipUtils.contains(zip, "dir0/nested/")
+	}
+
+	def "unpack all outside of output"() {
+		given:
+		def output = File.createTempDir()
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+
+		new ZipOutputStream(Files.newOutputStream(zip)).withCloseable {
+			it.putNextEntry(new ZipEntry("../test.txt"))
+			it.write("Hello".bytes)
+			it.closeEntry()
+		}
+
+		when:
+		ZipUtils.unpackAll(zip, output.toPath())
+
+		then:
+		def e = thrown(IOException)
+		e.message == "Zip entry '../test.txt' is outside of the output directory"
+	}
+
+	def "find files"() {
+		given:
+		def dir = File.createTempDir()
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+		new File(dir, "fabric.mod.json").text = "{}"
+		new File(dir, "META-INF").mkdirs()
+		new File(dir, "META-INF/mods.toml").text = ""
+
+		when:
+		ZipUtils.pack(dir.toPath(), zip)
+		def found = ZipUtils.findFiles(zip, ["fabric.mod.json", "quilt.mod.json", "META-INF/mods.toml"])
+
+		then:
+		found == ["fabric.mod.json", "META-INF/mods.toml"] as Set
+	}
+
 	def "is zip"() {
 		setup:
 		// Create zip
@@ -216,6 +278,95 @@ class ZipUtilsTest extends Specification {
 		transformed.get("test").asString == "THIS IS A TEST OF TRANSFORMING"
 	}
 
+	def "transaction"() {
+		given:
+		def dir = File.createTempDir()
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+		new File(dir, "test.json").text = """
+		{
+			"test": "This is a test of transforming"
+		}
+		"""
+		new File(dir, "test.txt").text = "hello"
+		new File(dir, "delete.txt").text = "delete me"
+		ZipUtils.pack(dir.toPath(), zip)
+
+		when:
+		def transaction = ZipTransaction.open(zip)
+		transaction.transformJson(JsonObject.class, "test.json") { json ->
+			json.addProperty("test", json.get("test").asString.toUpperCase())
+			json
+		}
+		transaction.transform("test.txt") { (new String(it, StandardCharsets.UTF_8) + " world").bytes }
+		def read = new String(transaction.read("test.txt"), StandardCharsets.UTF_8)
+		transaction.transform("test.txt") { new String(it, StandardCharsets.UTF_8).toUpperCase().bytes }
+		transaction.deleteIfExists("delete.txt")
+		transaction.add("nested/new.txt", "new file")
+		def missingTransformed = transaction.transform("missing.txt") { it }
+		// Nothing is written until the transaction is committed
+		def containsBeforeCommit = ZipUtils.contains(zip, "nested/new.txt")
+		transaction.commit()
+
+		then:
+		read == "hello world"
+		!missingTransformed
+		!containsBeforeCommit
+		ZipUtils.unpackJson(zip, "test.json", JsonObject.class).get("test").asString == "THIS IS A TEST OF TRANSFORMING"
+		new String(ZipUtils.unpack(zip, "test.txt"), StandardCharsets.UTF_8) == "HELLO WORLD"
+		new String(ZipUtils.unpack(zip, "nested/new.txt"), StandardCharsets.UTF_8) == "new file"
+		!ZipUtils.contains(zip, "delete.txt")
+		!ZipUtils.contains(zip, "missing.txt")
+	}
+
+	def "transaction add file"() {
+		given:
+		def dir = File.createTempDir()
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+		new File(dir, "test.txt").text = "hello"
+		ZipUtils.pack(dir.toPath(), zip)
+
+		def file = File.createTempFile("loom-zip-test", ".jar")
+		file.bytes = new byte[1024 * 1024].tap { new Random(42).nextBytes(it) }
+
+		when:
+		def transaction = ZipTransaction.open(zip)
+		transaction.add("META-INF/jars/nested.jar", file.toPath())
+		transaction.add("test.txt", file.toPath())
+		transaction.commit()
+
+		then:
+		ZipUtils.unpack(zip, "META-INF/jars/nested.jar") == file.bytes
+		ZipUtils.unpack(zip, "test.txt") == file.bytes
+		new ZipFile(zip.toFile()).withCloseable { it.getEntry("META-INF/jars/nested.jar").method } == ZipEntry.STORED
+	}
+
+	def "transaction copies unchanged entries"() {
+		given:
+		def zip = File.createTempFile("loom-zip-test", ".zip").toPath()
+		def text = "hello world ".repeat(5000).bytes
+		new ZipOutputStream(Files.newOutputStream(zip)).withCloseable {
+			// Compressed at a lower level than is used when recompressing
+			it.level = 1
+			it.putNextEntry(new ZipEntry("unchanged.txt"))
+			it.write(text)
+			it.closeEntry()
+			it.putNextEntry(new ZipEntry("changed.txt"))
+			it.write("hello".bytes)
+			it.closeEntry()
+		}
+		def compressedSize = new ZipFile(zip.toFile()).withCloseable { it.getEntry("unchanged.txt").compressedSize }
+
+		when:
+		def transaction = ZipTransaction.open(zip)
+		transaction.transform("changed.txt") { new String(it, StandardCharsets.UTF_8).toUpperCase().bytes }
+		transaction.commit()
+
+		then:
+		new ZipFile(zip.toFile()).withCloseable { it.getEntry("unchanged.txt").compressedSize } == compressedSize
+		ZipUtils.unpack(zip, "unchanged.txt") == text
+		ZipUtils.unpack(zip, "changed.txt") == "HELLO".bytes
+	}
+
 	// Also see: ClosedZipFSReproducer
 	def "unrecoverable error"() {
 		given:
@@ -242,6 +393,61 @@ class ZipUtilsTest extends Specification {
 		thrown FileSystemUtil.UnrecoverableZipException
 	}
 
+	def "reprocess preserving timestamps and append"() {
+		given:
+		// Create a reproducible input zip, with times that do not depend on the timezone
+		def zip = Files.createTempFile("loom-zip-test", ".zip")
+		new ZipOutputStream(Files.newOutputStream(zip)).withCloseable {
+			def entry = new ZipEntry("z.txt")
+			entry.timeLocal = LocalDateTime.of(2024, 6, 1, 12, 30, 10)
+			it.putNextEntry(entry)
+			it.write("hello world".repeat(10).bytes)
+			it.closeEntry()
+
+			entry = new ZipEntry("a.txt")
+			entry.timeLocal = LocalDateTime.of(2023, 1, 2, 3, 4, 6)
+			it.putNextEntry(entry)
+			it.write("second".bytes)
+			it.closeEntry()
+		}
+
+		when:
+		ZipReprocessorUtil.reprocessZip(zip, true, true)
+		def reprocessedHash = Checksum.sha1Hex(zip)
+		ZipReprocessorUtil.appendZipEntry(zip, "fabric.mod.json", "Some text".getBytes(StandardCharsets.UTF_8))
+
+		then:
+		new ZipFile(zip.toFile()).withCloseable { zipFile ->
+			zipFile.entries().collect { [it.name, it.method, it.timeLocal] }
+		} == [
+			["a.txt", ZipEntry.DEFLATED, LocalDateTime.of(2023, 1, 2, 3, 4, 6)],
+			["z.txt", ZipEntry.DEFLATED, LocalDateTime.of(2024, 6, 1, 12, 30, 10)],
+			["fabric.mod.json", ZipEntry.DEFLATED, LocalDateTime.of(1980, 1, 1, 0, 0, 0)]
+		]
+		ZipUtils.unpack(zip, "z.txt") == "hello world".repeat(10).bytes
+		reprocessedHash == "13fd6497411419bbed5aae44aa17ab4b5d7e9704"
+		Checksum.sha1Hex(zip) == "e5af18edcae7a6dcba6a7aeacd4bfd0e01d0a578"
+		!Files.exists(zip.resolveSibling(zip.fileName.toString() + ".tmp"))
+	}
+
+	def "append existing entry"() {
+		given:
+		def dir = Files.createTempDirectory("loom-zip-test")
+		def zip = Files.createTempFile("loom-zip-test", ".zip")
+		Files.writeString(dir.resolve("text.txt"), "hello world")
+		ZipUtils.pack(dir, zip)
+		def hash = Checksum.sha1Hex(zip)
+
+		when:
+		ZipReprocessorUtil.appendZipEntry(zip, "text.txt", "Some text".getBytes(StandardCharsets.UTF_8))
+
+		then:
+		thrown IllegalArgumentException
+		// The zip is left untouched
+		Checksum.sha1Hex(zip) == hash
+		!Files.exists(zip.resolveSibling(zip.fileName.toString() + ".tmp"))
+	}
+
 	def "reprocess uncompressed"() {
 		given:
 		// Create a reproducible input zip
@@ -36,8 +36,8 @@ import spock.lang.TempDir
 import net.fabricmc.loom.decompilers.ClassLineNumbers
 import net.fabricmc.loom.decompilers.cache.CachedData
 import net.fabricmc.loom.decompilers.cache.CachedFileStore
-import net.fabricmc.loom.decompilers.cache.CachedFileStoreImpl
 import net.fabricmc.loom.decompilers.cache.CachedJarProcessor
+import net.fabricmc.loom.decompilers.cache.ShardedCachedFileStore
 import net.fabricmc.loom.test.util.ZipTestUtils
 import net.fabricmc.loom.util.ZipUtils
 
@@ -95,7 +95,8 @@ class CachedJarProcessorTest extends Specification {
 
 		workJob.outputNameMap().size() == 1
 		ZipUtils.unpackNullable(workJob.existingSources(), "net/fabricmc/Example.java") == "Example sources".bytes
-		ZipUtils.unpackNullable(workJob.existingClasses(), "net/fabricmc/Example.class") == newClass("net/fabricmc/Example")
+		workJob.input() == jar
+		workJob.classes() == ["net/fabricmc/other/Test", "net/fabricmc/other/Test\$Inner", "net/fabricmc/other/Test\$1"] as Set
 
 		// Provide one cached entry
 		// And then one call not finding the entry in the cache
@@ -211,6 +212,35 @@ class CachedJarProcessorTest extends Specification {
 		0 * _ // Strict mock
 	}
 
+	def "complete streamed partial work job"() {
+		given:
+		def jar = ZipTestUtils.createZipFromBytes(jarEntries)
+		def cache = Mock(CachedFileStore)
+		def processor = new CachedJarProcessor(cache, "abc123")
+
+		when:
+		def workRequest = processor.prepareJob(jar)
+		def workJob = workRequest.job() as CachedJarProcessor.PartialWorkJob
+
+		// The decompiler has written the sources and the cache entries itself
+		def outputJar = ZipTestUtils.createZip(["net/fabricmc/Example.java": "Example sources", "net/fabricmc/other/Test.java": "Test sources"], ".jar")
+
+		processor.completeJob(outputJar, workJob, null, true)
+
+		then:
+		ZipUtils.unpackNullable(outputJar, "net/fabricmc/Example.java") == "Example sources".bytes
+		ZipUtils.unpackNullable(outputJar, "net/fabricmc/other/Test.java") == "Test sources".bytes
+
+		// The temporary jar is removed
+		Files.notExists(workJob.existingSources())
+
+		1 * cache.getEntry(ExampleHash) >> ExampleCachedData
+		1 * cache.getEntry(TestHash) >> null
+
+		// Nothing is read back into the cache
+		0 * _ // Strict mock
+	}
+
 	def "complete completed work job"() {
 		given:
 		def jar = ZipTestUtils.createZipFromBytes(jarEntries)
@@ -261,7 +291,7 @@ class CachedJarProcessorTest extends Specification {
 				]
 				)
 
-		def cache = new CachedFileStoreImpl<>(testPath.resolve("cache"), CachedData.SERIALIZER, new CachedFileStoreImpl.CacheRules(50_000, Duration.ofDays(90)))
+		def cache = new ShardedCachedFileStore<>(testPath.resolve("cache"), CachedData.SERIALIZER, new ShardedCachedFileStore.CacheRules(50_000, Duration.ofDays(90)))
 		def processor = new CachedJarProcessor(cache, "abc123")
 
 		when:
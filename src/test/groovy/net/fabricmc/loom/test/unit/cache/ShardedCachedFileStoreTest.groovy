@@ -0,0 +1,185 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.cache
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.decompilers.cache.CachedFileStore
+import net.fabricmc.loom.decompilers.cache.ShardedCachedFileStore
+
+class ShardedCachedFileStoreTest extends Specification {
+	@TempDir
+	Path root
+
+	def "putEntry and getEntry"() {
+		given:
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, new ShardedCachedFileStore.CacheRules(100, Duration.ofDays(7)))
+		when:
+		store.putEntry("base/abc", "Hello world".bytes)
+		def entry = store.getEntry("base/abc")
+		def unknownEntry = store.getEntry("base/123")
+		then:
+		entry == "Hello world".bytes
+		unknownEntry == null
+		// No temp files left behind
+		Files.walk(root).filter { it.fileName.toString().startsWith(".tmp-") }.count() == 0
+	}
+
+	def "putEntry replaces existing"() {
+		given:
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, new ShardedCachedFileStore.CacheRules(100, Duration.ofDays(7)))
+		when:
+		store.putEntry("abc", "Hello".bytes)
+		store.putEntry("abc", "World".bytes)
+		then:
+		store.getEntry("abc") == "World".bytes
+	}
+
+	def "concurrent writers"() {
+		given:
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, new ShardedCachedFileStore.CacheRules(10_000, Duration.ofDays(7)))
+		def executor = Executors.newFixedThreadPool(8)
+		when:
+		def futures = (0..<1000).collect { i ->
+			executor.submit {
+				// Many threads writing the same keys
+				store.putEntry("test_" + (i % 100), ("Hello " + (i % 100)).bytes)
+			}
+		}
+		futures.each { it.get() }
+		executor.shutdown()
+		executor.awaitTermination(1, TimeUnit.MINUTES)
+		then:
+		(0..<100).every { store.getEntry("test_" + it) == ("Hello " + it).bytes }
+	}
+
+	def "pruneManyFiles"() {
+		given:
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, new ShardedCachedFileStore.CacheRules(250, Duration.ofDays(7)))
+		when:
+		for (i in 0..<500) {
+			def key = "test_" + i
+			store.putEntry(key, "Hello world".bytes)
+			// Higher files are older and should be removed.
+			Files.setLastModifiedTime(store.resolve(key), FileTime.from(Instant.now().minusSeconds(i)))
+		}
+
+		store.prune()
+
+		then:
+		Files.exists(store.resolve("test_0"))
+		Files.exists(store.resolve("test_100"))
+		Files.exists(store.resolve("test_249"))
+		Files.notExists(store.resolve("test_250"))
+		Files.notExists(store.resolve("test_300"))
+	}
+
+	def "pruneOldFiles"() {
+		given:
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, new ShardedCachedFileStore.CacheRules(1000, Duration.ofSeconds(250)))
+		when:
+		for (i in 0..<500) {
+			def key = "test_" + i
+			store.putEntry(key, "Hello world".bytes)
+			// Higher files are older and should be removed.
+			Files.setLastModifiedTime(store.resolve(key), FileTime.from(Instant.now().minusSeconds(i)))
+		}
+
+		store.prune()
+
+		then:
+		Files.exists(store.resolve("test_0"))
+		Files.exists(store.resolve("test_100"))
+		Files.notExists(store.resolve("test_300"))
+	}
+
+	def "pruneLargeFiles"() {
+		given:
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, new ShardedCachedFileStore.CacheRules(1000, Duration.ofDays(7), 100 * 11))
+		when:
+		for (i in 0..<500) {
+			def key = "test_" + i
+			store.putEntry(key, "Hello world".bytes)
+			Files.setLastModifiedTime(store.resolve(key), FileTime.from(Instant.now().minusSeconds(i)))
+		}
+
+		store.prune()
+
+		then:
+		Files.exists(store.resolve("test_0"))
+		Files.exists(store.resolve("test_99"))
+		Files.notExists(store.resolve("test_100"))
+	}
+
+	def "prune keeps recently read entries"() {
+		given:
+		def cacheRules = new ShardedCachedFileStore.CacheRules(250, Duration.ofDays(7))
+		def store = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, cacheRules)
+
+		for (i in 0..<250) {
+			def key = "test_" + i
+			store.putEntry(key, "Hello world".bytes)
+			Files.setLastModifiedTime(store.resolve(key), FileTime.from(Instant.now().minusSeconds(i + 10)))
+		}
+
+		store.prune()
+		def lastModified = Files.getLastModifiedTime(store.resolve("test_249"))
+
+		when:
+		// A new store, as if used by another build
+		def newStore = new ShardedCachedFileStore(root, BYTE_ARRAY_SERIALIZER, cacheRules)
+		newStore.getEntry("test_249")
+		newStore.putEntry("new", "Hello world".bytes)
+		newStore.prune()
+
+		then:
+		// Reads are tracked in the index, not by touching the entry
+		Files.getLastModifiedTime(store.resolve("test_249")) == lastModified
+		Files.exists(store.resolve("test_249"))
+		Files.exists(store.resolve("new"))
+		Files.notExists(store.resolve("test_248"))
+	}
+
+	private static CachedFileStore.EntrySerializer<byte[]> BYTE_ARRAY_SERIALIZER = new CachedFileStore.EntrySerializer<byte[]>() {
+		@Override
+		byte[] read(Path path) throws IOException {
+			return Files.readAllBytes(path)
+		}
+
+		@Override
+		void write(byte[] entry, Path path) throws IOException {
+			Files.write(path, entry)
+		}
+	}
+}
@@ -33,6 +33,7 @@ import java.time.Instant
 import io.javalin.http.HttpStatus
 import spock.lang.IgnoreIf
 
+import net.fabricmc.loom.util.AttributeHelper
 import net.fabricmc.loom.util.Checksum
 import net.fabricmc.loom.util.download.Download
 import net.fabricmc.loom.util.download.DownloadException
@@ -127,6 +128,28 @@ class DownloadFileTest extends DownloadTest {
 		requestCount == 1
 	}
 
+	def "Cache: Sha256"() {
+		setup:
+		int requestCount = 0
+
+		server.get("/sha256.txt") {
+			it.result("Hello World")
+			requestCount ++
+		}
+
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+
+		when:
+		for (i in 0..<2) {
+			Download.create("$PATH/sha256.txt")
+					.sha256("a591a6d40bf420404a011733cfb7b190d62c65bf0bcda32b57b277d9ad9f146e")
+					.downloadPath(output)
+		}
+
+		then:
+		requestCount == 1
+	}
+
 	def "Invalid Sha1"() {
 		setup:
 		server.get("/sha1.invalid") {
@@ -388,6 +411,33 @@ class DownloadFileTest extends DownloadTest {
 		thrown DownloadException
 	}
 
+	def "File: Async continues after error"() {
+		setup:
+		server.get("/async3") {
+			it.result("Hello World")
+		}
+
+		def dir = File.createTempDir().toPath()
+		def executor = new DownloadExecutor(1)
+
+		when:
+		executor.withCloseable {
+			Download.create("$PATH/asyncError3").downloadPathAsync(dir.resolve("1.txt"), it)
+
+			for (i in 2..10) {
+				Download.create("$PATH/async3").downloadPathAsync(dir.resolve("${i}.txt"), it)
+			}
+		}
+
+		then:
+		thrown DownloadException
+		Files.notExists(dir.resolve("1.txt"))
+		Files.readString(dir.resolve("10.txt")) == "Hello World"
+		executor.statistics.hosts.size() == 1
+		executor.statistics.hosts[0].downloads() == 9
+		executor.statistics.hosts[0].failures() == 1
+	}
+
 	def "File: Large"() {
 		setup:
 		byte[] data = new byte[1024 * 1024 * 10] // 10MB
@@ -406,6 +456,62 @@ class DownloadFileTest extends DownloadTest {
 		Files.readAllBytes(output) == data
 	}
 
+	def "File: Requested unencoded"() {
+		setup:
+		def acceptEncoding = null
+		server.get("/unencodedFile") {
+			acceptEncoding = it.req.getHeader("Accept-Encoding")
+			it.result("Hello World! " * 1000)
+		}
+
+		def output = new File(File.createTempDir(), "file.txt").toPath()
+
+		when:
+		Download.create("$PATH/unencodedFile").downloadPath(output)
+
+		then:
+		acceptEncoding == "identity"
+		Files.readString(output) == "Hello World! " * 1000
+	}
+
+	def "File: Resume"() {
+		setup:
+		byte[] data = new byte[1024 * 1024]
+		new Random().nextBytes(data)
+		def etag = "\"resume\""
+		def ranges = []
+
+		server.get("/resumeFile") {
+			def range = it.req.getHeader("Range")
+			ranges << range
+			it.header("ETag", etag)
+
+			if (range != null && it.req.getHeader("If-Range") == etag) {
+				int start = range.substring("bytes=".length(), range.length() - 1) as int
+				it.status(HttpStatus.PARTIAL_CONTENT)
+				it.header("Content-Range", "bytes $start-${data.length - 1}/${data.length}")
+				it.result(Arrays.copyOfRange(data, start, data.length))
+				return
+			}
+
+			it.result(data)
+		}
+
+		def output = new File(File.createTempDir(), "file").toPath()
+		def partFile = output.resolveSibling("file.part")
+		// The first half of the file, left by an interrupted download
+		Files.write(partFile, Arrays.copyOf(data, data.length / 2 as int))
+		AttributeHelper.writeAttribute(partFile, "LoomPartETag", etag)
+
+		when:
+		Download.create("$PATH/resumeFile").downloadPath(output)
+
+		then:
+		ranges == ["bytes=524288-"]
+		Files.readAllBytes(output) == data
+		Files.notExists(partFile)
+	}
+
 	def "File: Insecure protocol"() {
 		setup:
 		def output = new File(File.createTempDir(), "file").toPath()
@@ -147,6 +147,24 @@ class DownloadStringTest extends DownloadTest {
 		result == "Hello World!"
 	}
 
+	def "String: Compressed"() {
+		setup:
+		def text = "Hello World! " * 1000
+		def acceptEncoding = null
+		server.get("/compressedString") {
+			acceptEncoding = it.req.getHeader("Accept-Encoding")
+			// Large enough for the server to compress it
+			it.result(text)
+		}
+
+		when:
+		def result = Download.create("$PATH/compressedString").downloadString()
+
+		then:
+		result == text
+		acceptEncoding.split(", ").toList().containsAll(["deflate", "gzip"])
+	}
+
 	def "String: Insecure protocol"() {
 		when:
 		def result = Download.create("http://fabricmc.net").downloadString()
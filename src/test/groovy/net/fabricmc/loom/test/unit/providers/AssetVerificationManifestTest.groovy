@@ -0,0 +1,111 @@
+/*
+ * This file is part of fabric-loom, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 FabricMC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package net.fabricmc.loom.test.unit.providers
+
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import net.fabricmc.loom.configuration.providers.minecraft.assets.AssetIndex
+import net.fabricmc.loom.configuration.providers.minecraft.assets.AssetVerificationManifest
+
+class AssetVerificationManifestTest extends Specification {
+	@TempDir
+	File tempDir
+
+	def "verified until changed"() {
+		given:
+		def manifestFile = tempDir.toPath().resolve("indexes/test.verified")
+		def file = tempDir.toPath().resolve("objects/ab/abc")
+		Files.createDirectories(file.parent)
+		Files.writeString(file, "hello")
+		def object = new AssetIndex.Object("test/hello.txt", "abc", 5)
+
+		when:
+		def manifest = AssetVerificationManifest.read(manifestFile)
+		def verifiedBefore = manifest.isVerified("abc", file, object)
+		manifest.markVerified("abc", file, object)
+		manifest.write()
+
+		def verified = AssetVerificationManifest.read(manifestFile).isVerified("abc", file, object)
+		def otherHash = AssetVerificationManifest.read(manifestFile).isVerified("abc", file, new AssetIndex.Object("test/hello.txt", "abd", 5))
+
+		Files.setLastModifiedTime(file, FileTime.fromMillis(0))
+		def verifiedAfterChange = AssetVerificationManifest.read(manifestFile).isVerified("abc", file, object)
+
+		then:
+		!verifiedBefore
+		verified
+		!otherHash
+		!verifiedAfterChange
+	}
+
+	def "unreadable manifest"() {
+		given:
+		def manifestFile = tempDir.toPath().resolve("test.verified")
+		Files.writeString(manifestFile, "not a manifest")
+		def file = tempDir.toPath().resolve("abc")
+		Files.writeString(file, "hello")
+
+		when:
+		def manifest = AssetVerificationManifest.read(manifestFile)
+
+		then:
+		!manifest.isVerified("abc", file, new AssetIndex.Object("test/hello.txt", "abc", 5))
+	}
+
+	def "drops entries that are not looked up"() {
+		given:
+		def manifestFile = tempDir.toPath().resolve("indexes/test.verified")
+		def hello = tempDir.toPath().resolve("objects/ab/abc")
+		def world = tempDir.toPath().resolve("objects/de/def")
+		Files.createDirectories(hello.parent)
+		Files.createDirectories(world.parent)
+		Files.writeString(hello, "hello")
+		Files.writeString(world, "world")
+		def helloObject = new AssetIndex.Object("test/hello.txt", "abc", 5)
+		def worldObject = new AssetIndex.Object("test/world.txt", "def", 5)
+
+		def manifest = AssetVerificationManifest.read(manifestFile)
+		manifest.markVerified("abc", hello, helloObject)
+		manifest.markVerified("def", world, worldObject)
+		manifest.write()
+
+		when:
+		// Only the hello object is part of the index in this run
+		def nextManifest = AssetVerificationManifest.read(manifestFile)
+		def helloVerified = nextManifest.isVerified("abc", hello, helloObject)
+		nextManifest.write()
+
+		def finalManifest = AssetVerificationManifest.read(manifestFile)
+
+		then:
+		helloVerified
+		finalManifest.isVerified("abc", hello, helloObject)
+		!finalManifest.isVerified("def", world, worldObject)
+	}
+}